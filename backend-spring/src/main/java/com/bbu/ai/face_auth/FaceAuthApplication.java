@@ -2,8 +2,10 @@ package com.bbu.ai.face_auth;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FaceAuthApplication {
 
 	public static void main(String[] args) {
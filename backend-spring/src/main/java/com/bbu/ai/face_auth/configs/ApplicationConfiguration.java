@@ -1,19 +1,27 @@
 package com.bbu.ai.face_auth.configs;
 
 
+import com.bbu.ai.face_auth.models.User;
 import com.bbu.ai.face_auth.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
 @Configuration
 public class ApplicationConfiguration {
+    private static final Logger logger = LogManager.getLogger(ApplicationConfiguration.class);
+
     private final UserRepository userRepository;
 
     public ApplicationConfiguration(UserRepository userRepository) {
@@ -22,13 +30,32 @@ public class ApplicationConfiguration {
 
     @Bean
     UserDetailsService userDetailsService() {
-        return username -> (org.springframework.security.core.userdetails.UserDetails) userRepository.findByUsername(username)
+        return username -> (UserDetails) userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
     }
 
+    @Bean(destroyMethod = "shutdown")
+    BoundedPasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${udemy.app.bcryptStrength:10}") int strength,
+            @Value("${udemy.app.passwordHashThreads:2}") int threads,
+            @Value("${udemy.app.passwordHashQueue:32}") int queueCapacity,
+            @Value("${udemy.app.passwordHashTimeoutMs:5000}") long timeoutMs
+    ) {
+        return new BoundedPasswordEncoder(meterRegistry, strength, threads, queueCapacity, timeoutMs);
+    }
+
+    // Stores the new hash when a login finds the old one was made with a different work factor
     @Bean
-    BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    UserDetailsPasswordService userDetailsPasswordService() {
+        return (user, newPassword) -> userRepository.findByUsername(user.getUsername())
+                .<UserDetails>map(stored -> {
+                    stored.setPassword(newPassword);
+                    User saved = userRepository.save(stored);
+                    logger.info("Rehashed password of {} with the current BCrypt cost", saved.getUsername());
+                    return saved;
+                })
+                .orElse(user);
     }
 
     @Bean
@@ -37,11 +64,13 @@ public class ApplicationConfiguration {
     }
 
     @Bean
-    AuthenticationProvider authenticationProvider() {
+    AuthenticationProvider authenticationProvider(BoundedPasswordEncoder passwordEncoder,
+                                                  UserDetailsPasswordService userDetailsPasswordService) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
 
         authProvider.setUserDetailsService(userDetailsService());
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
 
         return authProvider;
     }
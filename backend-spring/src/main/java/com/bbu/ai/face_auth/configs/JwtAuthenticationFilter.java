@@ -1,6 +1,8 @@
 package com.bbu.ai.face_auth.configs;
 
 import com.bbu.ai.face_auth.services.JwtCustomService;
+import com.bbu.ai.face_auth.services.TokenRevocationService;
+import com.bbu.ai.face_auth.services.UserInfoService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,7 +12,6 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -23,15 +24,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final HandlerExceptionResolver handlerExceptionResolver;
 
     private final JwtCustomService jwtService;
-    private final UserDetailsService userDetailsService;
+    // Caching resolver, so most requests do not query users/roles
+    private final UserInfoService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
 
     public JwtAuthenticationFilter(
             JwtCustomService jwtService,
-            UserDetailsService userDetailsService,
+            UserInfoService userDetailsService,
+            TokenRevocationService tokenRevocationService,
             HandlerExceptionResolver handlerExceptionResolver
     ) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.tokenRevocationService = tokenRevocationService;
         this.handlerExceptionResolver = handlerExceptionResolver;
     }
 
@@ -55,9 +60,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
             if (userEmail != null && authentication == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                // Claims-mode tokens carry their authorities, so no user lookup at all
+                UserDetails userDetails = jwtService.principalFromClaims(jwt);
+                if (userDetails == null) {
+                    userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                }
 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (jwtService.isTokenValid(jwt, userDetails)
+                        && !tokenRevocationService.isRevoked(jwtService.extractTokenId(jwt))) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
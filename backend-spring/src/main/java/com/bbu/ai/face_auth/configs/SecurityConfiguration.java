@@ -1,5 +1,6 @@
 package com.bbu.ai.face_auth.configs;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationProvider;
@@ -26,7 +27,10 @@ public class SecurityConfiguration {
             "/api/auth/welcome",
             "/api/auth/login",
             "/api/auth/signup",
+            "/api/auth/refresh",
             "/api/admin/attendance/mark/{employeeId}",
+            "/api/attendance/match",
+            "/api/attendance/recognize", // kiosk, same access as mark
             "/swagger-ui/**",
             "/v3/api-docs/**",
             "/v3/api-docs.yaml"
@@ -44,10 +48,14 @@ public class SecurityConfiguration {
                 .csrf(AbstractHttpConfigurer::disable) // Disable CSRF for stateless APIs
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .authorizeHttpRequests(auth -> auth
+                        // Streamed responses finish on an async dispatch that the JWT filter does not
+                        // run for; the request was already authorized when it started
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(AUTH_WHITELIST).permitAll() // Public endpoints
                         .requestMatchers("/api/auth/admin/**").hasRole("ADMIN")
                         .requestMatchers("/api/users/**").hasRole("ADMIN")
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/api/attendance/embeddings/**").hasRole("ADMIN")
                         .anyRequest().authenticated() // All other requests require authentication
                 )
                 .sessionManagement(sess -> sess
@@ -67,7 +75,7 @@ public class SecurityConfiguration {
                 "http://localhost"
         ));
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Idempotency-Key"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -2,17 +2,29 @@ package com.bbu.ai.face_auth.controllers;
 
 import com.bbu.ai.face_auth.dto.AttendanceRequest;
 import com.bbu.ai.face_auth.mapper.AttendanceResponse;
+import com.bbu.ai.face_auth.mapper.CursorSlice;
 import com.bbu.ai.face_auth.models.Attendance;
+import com.bbu.ai.face_auth.services.AttendanceExportService;
 import com.bbu.ai.face_auth.services.AttendanceService;
+import com.bbu.ai.face_auth.services.IdempotencyService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 
 @CrossOrigin(origins = "*", maxAge = 3600)
@@ -21,55 +33,137 @@ import java.util.Optional;
 public class AttendanceController {
 
     private final AttendanceService attendanceService;
+    private final IdempotencyService idempotencyService;
+    private final AttendanceExportService attendanceExportService;
 
-    public AttendanceController(AttendanceService attendanceService) {
+    public AttendanceController(AttendanceService attendanceService, IdempotencyService idempotencyService,
+                                AttendanceExportService attendanceExportService) {
         this.attendanceService = attendanceService;
+        this.idempotencyService = idempotencyService;
+        this.attendanceExportService = attendanceExportService;
     }
 
-    // Mark attendance via webcam (face recognition gives employeeId)
+    // Mark attendance via webcam (face recognition gives employeeId).
+    // Kiosk retries carrying the same Idempotency-Key get the first result back.
     @PostMapping("/mark/{employeeId}")
-    public ResponseEntity<AttendanceResponse> markAttendance(@PathVariable Long employeeId, @RequestParam(required = false) String note,
-                                                     HttpServletRequest request) {
+    public ResponseEntity<?> markAttendance(@PathVariable Long employeeId, @RequestParam(required = false) String note,
+                                            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                            HttpServletRequest request) {
         String location = getClientLocation(request);
-        AttendanceResponse response = attendanceService.markAttendance(employeeId, note, location);
-
-        return ResponseEntity.ok(response);
+        return idempotencyService.execute(idempotencyKey, "mark:" + employeeId, () -> {
+            AttendanceResponse response = attendanceService.markAttendance(employeeId, note, location);
+            return ResponseEntity.ok(response);
+        });
     }
 
     @PostMapping()
-    public ResponseEntity<?> create(@Valid @RequestBody AttendanceRequest attendanceRequest){
-        Attendance attendance = attendanceService.create(attendanceRequest);
-        return ResponseEntity.ok(attendance);
+    public ResponseEntity<?> create(@Valid @RequestBody AttendanceRequest attendanceRequest,
+                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey){
+        return idempotencyService.execute(idempotencyKey, "create", () -> {
+            return ResponseEntity.ok(attendanceService.create(attendanceRequest));
+        });
     }
 
+    // Page by default; slice=true skips the count query and only reports whether more follow.
+    // The note is left out unless includeNote=true.
     @GetMapping()
-    public ResponseEntity<Page<AttendanceResponse>> getAll(
+    public ResponseEntity<Slice<AttendanceResponse>> getAll(
             @RequestParam(value = "page", defaultValue = "0") int page,
-            @RequestParam(value = "size", defaultValue = "10") int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<AttendanceResponse> attendances = attendanceService.getAll(pageable);
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            @RequestParam(value = "includeNote", defaultValue = "false") boolean includeNote,
+            @RequestParam(value = "slice", defaultValue = "false") boolean slice) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id"));
+        Slice<AttendanceResponse> attendances = attendanceService.getAll(pageable, includeNote, !slice);
         return ResponseEntity.ok(attendances);
     }
 
     @GetMapping("/employees/{id}")
-    public ResponseEntity<Page<AttendanceResponse>> getByEmployeeId(
+    public ResponseEntity<Slice<AttendanceResponse>> getByEmployeeId(
             @PathVariable(value = "id") Long employeeId,
             @RequestParam(value = "page", defaultValue = "0") int page,
-            @RequestParam(value = "size", defaultValue = "10") int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        Page<AttendanceResponse> attendances = attendanceService.getByEmployeeId(employeeId, pageable);
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            @RequestParam(value = "includeNote", defaultValue = "false") boolean includeNote,
+            @RequestParam(value = "slice", defaultValue = "false") boolean slice) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id"));
+        Slice<AttendanceResponse> attendances =
+                attendanceService.getByEmployeeId(employeeId, pageable, includeNote, !slice);
         return ResponseEntity.ok(attendances);
     }
 
+    // Cursor paging, newest first by (checkIn, id), for walking deep into the history
+    // without OFFSET or counts; pass nextCursor back as cursor.
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorSlice<AttendanceResponse>> scroll(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            @RequestParam(value = "includeNote", defaultValue = "false") boolean includeNote) {
+        return ResponseEntity.ok(attendanceService.scroll(null, cursor, size, includeNote));
+    }
+
+    @GetMapping("/employees/{id}/scroll")
+    public ResponseEntity<CursorSlice<AttendanceResponse>> scrollByEmployeeId(
+            @PathVariable(value = "id") Long employeeId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size,
+            @RequestParam(value = "includeNote", defaultValue = "false") boolean includeNote) {
+        return ResponseEntity.ok(attendanceService.scroll(employeeId, cursor, size, includeNote));
+    }
+
+    // Payroll export: every row in [from, to] streamed as CSV (default) or NDJSON in one
+    // response, gzipped when the client accepts it. Days are inclusive.
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "department", required = false) String department,
+            @RequestParam(value = "employeeId", required = false) Long employeeId,
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        AttendanceExportService.Format exportFormat = switch (format.toLowerCase()) {
+            case "csv" -> AttendanceExportService.Format.CSV;
+            case "ndjson" -> AttendanceExportService.Format.NDJSON;
+            default -> throw new IllegalArgumentException("format must be csv or ndjson");
+        };
+        AttendanceExportService.Filter filter = new AttendanceExportService.Filter(
+                from, to, department == null || department.isBlank() ? null : department, employeeId);
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024)) {
+                    attendanceExportService.export(filter, exportFormat, compressed);
+                }
+            } else {
+                attendanceExportService.export(filter, exportFormat, out);
+            }
+        };
+
+        String extension = exportFormat == AttendanceExportService.Format.CSV ? "csv" : "ndjson";
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(exportFormat == AttendanceExportService.Format.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("attendance-" + from + "-" + to + "." + extension).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getById(@PathVariable(value = "id") Long id) {
         Optional<Attendance> attendance = attendanceService.getById(id);
-        return ResponseEntity.ok(attendance);
+        return ResponseEntity.ok(attendance.map(AttendanceResponse::from));
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<?> updateStudent(@PathVariable(value = "id") Long id, @Valid @RequestBody AttendanceRequest attendanceRequest){
-        Attendance attendance = attendanceService.update(id, attendanceRequest);
+        AttendanceResponse attendance = attendanceService.update(id, attendanceRequest);
         if(attendance != null){
             return ResponseEntity.ok(attendance);
         }else{
@@ -89,7 +183,7 @@ public class AttendanceController {
 
     }
 
-    public String getClientLocation(HttpServletRequest request) {
+    public static String getClientLocation(HttpServletRequest request) {
         String clientIp = request.getRemoteAddr();
         // You can integrate with a GeoIP service (e.g., MaxMind DB, or ip-api.com)
         // Example pseudo:
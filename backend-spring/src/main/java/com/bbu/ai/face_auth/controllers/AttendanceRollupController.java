@@ -0,0 +1,67 @@
+package com.bbu.ai.face_auth.controllers;
+
+import com.bbu.ai.face_auth.mapper.OvertimeRollup;
+import com.bbu.ai.face_auth.services.AttendanceMinutesBackfill;
+import com.bbu.ai.face_auth.services.AttendanceRollupService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Overtime totals over any date range, aggregated from the stored minute columns
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/attendance/overtime")
+public class AttendanceRollupController {
+
+    private final AttendanceRollupService attendanceRollupService;
+    private final AttendanceMinutesBackfill attendanceMinutesBackfill;
+
+    public AttendanceRollupController(AttendanceRollupService attendanceRollupService,
+                                      AttendanceMinutesBackfill attendanceMinutesBackfill) {
+        this.attendanceRollupService = attendanceRollupService;
+        this.attendanceMinutesBackfill = attendanceMinutesBackfill;
+    }
+
+    // from and to are inclusive
+    @GetMapping("/employees")
+    public ResponseEntity<List<OvertimeRollup>> byEmployee(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        checkRange(from, to);
+        return ResponseEntity.ok(attendanceRollupService.byEmployee(from, to));
+    }
+
+    @GetMapping("/departments")
+    public ResponseEntity<List<OvertimeRollup>> byDepartment(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        checkRange(from, to);
+        return ResponseEntity.ok(attendanceRollupService.byDepartment(from, to));
+    }
+
+    // At most AttendanceRollupService.MAX_TOP employees
+    @GetMapping("/top")
+    public ResponseEntity<List<OvertimeRollup>> top(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        checkRange(from, to);
+        return ResponseEntity.ok(attendanceRollupService.topOvertime(from, to, limit));
+    }
+
+    // Fills the minute columns on rows that predate them; also runs once at startup
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, Long>> backfill() {
+        return ResponseEntity.ok(Map.of("filled", attendanceMinutesBackfill.run()));
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.bbu.ai.face_auth.controllers;
+
+import com.bbu.ai.face_auth.mapper.AttendanceSummaryResponse;
+import com.bbu.ai.face_auth.services.AttendanceSummaryService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+// Dashboard totals served from the summary tables rather than raw attendance rows
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/attendance/summary")
+public class AttendanceSummaryController {
+
+    private final AttendanceSummaryService attendanceSummaryService;
+
+    public AttendanceSummaryController(AttendanceSummaryService attendanceSummaryService) {
+        this.attendanceSummaryService = attendanceSummaryService;
+    }
+
+    // Per employee and day; from and to are inclusive
+    @GetMapping("/daily")
+    public ResponseEntity<List<AttendanceSummaryResponse.Daily>> daily(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "employeeId", required = false) Long employeeId,
+            @RequestParam(value = "department", required = false) String department) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("'to' must not be before 'from'");
+        }
+        return ResponseEntity.ok(attendanceSummaryService.daily(from, to, employeeId, department));
+    }
+
+    // Per department for one month (yyyy-MM), plus the company total
+    @GetMapping("/monthly")
+    public ResponseEntity<AttendanceSummaryResponse.Monthly> monthly(
+            @RequestParam("month") @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        return ResponseEntity.ok(attendanceSummaryService.monthly(month));
+    }
+
+    // Recomputes every month touching [from, to] from the raw rows; both bounds optional
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuild(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(Map.of("dailyRows", attendanceSummaryService.rebuild(from, to)));
+    }
+}
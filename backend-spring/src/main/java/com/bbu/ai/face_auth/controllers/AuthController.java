@@ -1,8 +1,11 @@
 package com.bbu.ai.face_auth.controllers;
 
+import com.bbu.ai.face_auth.dto.RefreshTokenRequest;
+import com.bbu.ai.face_auth.dto.RevokeTokenRequest;
 import com.bbu.ai.face_auth.dto.UserLoginRequest;
 import com.bbu.ai.face_auth.dto.UserSignupRequest;
 import com.bbu.ai.face_auth.mapper.LoginResponse;
+import com.bbu.ai.face_auth.mapper.MessageResponse;
 import com.bbu.ai.face_auth.mapper.UserResponse;
 import com.bbu.ai.face_auth.models.User;
 import com.bbu.ai.face_auth.services.AuthenticationService;
@@ -39,12 +42,39 @@ public class AuthController {
         User authenticatedUser = authenticationService.authenticate(loginUserDto);
 
         String jwtToken = jwtService.generateToken(authenticatedUser);
+        String refreshToken = jwtService.generateRefreshToken(authenticatedUser);
 
-        LoginResponse loginResponse = new LoginResponse(jwtToken,jwtService.getExpirationTime());
+        LoginResponse loginResponse = new LoginResponse(jwtToken,jwtService.getExpirationTime(), refreshToken);
 
         return ResponseEntity.ok(loginResponse);
     }
 
+    // New access token for a still-valid refresh token; the refresh token itself is returned unchanged
+    @PostMapping("/refresh")
+    public ResponseEntity<LoginResponse> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        User user = authenticationService.refresh(request.getRefreshToken());
+
+        String jwtToken = jwtService.generateToken(user);
+
+        return ResponseEntity.ok(new LoginResponse(jwtToken, jwtService.getExpirationTime(), request.getRefreshToken()));
+    }
+
+
+    // Revokes the bearer token, plus the refresh token when the body carries it
+    @PostMapping("/logout")
+    public ResponseEntity<MessageResponse> logout(@RequestHeader("Authorization") String authorization,
+                                                  @RequestBody(required = false) RefreshTokenRequest request) {
+        authenticationService.logout(authorization.substring("Bearer ".length()),
+                request != null ? request.getRefreshToken() : null);
+        return ResponseEntity.ok(new MessageResponse("Logged out"));
+    }
+
+    @PostMapping("/admin/revoke")
+    public ResponseEntity<MessageResponse> revoke(@Valid @RequestBody RevokeTokenRequest request) {
+        authenticationService.revoke(request.getToken());
+        return ResponseEntity.ok(new MessageResponse("Token revoked"));
+    }
+
 
     @PostMapping("/signup")
     public ResponseEntity<UserResponse> register(@Valid @RequestBody UserSignupRequest registerUserDto) throws BadRequestException {
@@ -2,17 +2,22 @@ package com.bbu.ai.face_auth.controllers;
 
 import com.bbu.ai.face_auth.dto.EmployeeDTO;
 import com.bbu.ai.face_auth.dto.EmployeeRequest;
+import com.bbu.ai.face_auth.mapper.CursorSlice;
 import com.bbu.ai.face_auth.mapper.EmployeeMapper;
+import com.bbu.ai.face_auth.mapper.EmployeeSearchHit;
 import com.bbu.ai.face_auth.models.Employee;
+import com.bbu.ai.face_auth.services.EmployeeSearchService;
 import com.bbu.ai.face_auth.services.EmployeeService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/admin/employee")
 @CrossOrigin(origins = "*")
@@ -20,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 public class EmployeeController {
 
     private final EmployeeService employeeService;
+    private final EmployeeSearchService employeeSearchService;
 
     @PostMapping
     public ResponseEntity<EmployeeDTO> create(@Valid @RequestBody EmployeeRequest request) {
@@ -27,15 +33,35 @@ public class EmployeeController {
         return ResponseEntity.ok(EmployeeMapper.toDTO(employee));
     }
 
+    // Page (with its count) for the UI's first page; slice=true skips the count
     @GetMapping("/all")
-    public ResponseEntity<Page<EmployeeDTO>> getAll(
+    public ResponseEntity<Slice<EmployeeDTO>> getAll(
             @RequestParam(value = "name", defaultValue = "") String name,
             @RequestParam(value = "page", defaultValue = "0") int page,
-            @RequestParam(value = "size", defaultValue = "10") int size
+            @RequestParam(value = "size", defaultValue = "10") int size,
+            @RequestParam(value = "slice", defaultValue = "false") boolean slice
     ) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Employee> employees = employeeService.getAll(name, pageable);
-        return ResponseEntity.ok(employees.map(EmployeeMapper::toDTO));
+        return ResponseEntity.ok(employeeService.getAll(name, pageable, !slice));
+    }
+
+    // Typeahead: ranked prefix, substring and fuzzy matches on the name
+    @GetMapping("/search")
+    public ResponseEntity<List<EmployeeSearchHit>> search(
+            @RequestParam(value = "q", defaultValue = "") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(employeeSearchService.search(query, limit));
+    }
+
+    // Cursor paging by (name, id) for walking deep into the list; pass nextCursor back as cursor
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorSlice<EmployeeDTO>> scroll(
+            @RequestParam(value = "name", defaultValue = "") String name,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(employeeService.scroll(name, cursor, size));
     }
 
     @GetMapping("/{id}")
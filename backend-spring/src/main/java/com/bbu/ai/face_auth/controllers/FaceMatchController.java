@@ -0,0 +1,87 @@
+package com.bbu.ai.face_auth.controllers;
+
+import com.bbu.ai.face_auth.dto.FaceEnrollRequest;
+import com.bbu.ai.face_auth.dto.FaceMatchRequest;
+import com.bbu.ai.face_auth.mapper.FaceMatchResponse;
+import com.bbu.ai.face_auth.mapper.MessageResponse;
+import com.bbu.ai.face_auth.mapper.RecognizeResponse;
+import com.bbu.ai.face_auth.services.FaceMatcherService;
+import com.bbu.ai.face_auth.services.IdempotencyService;
+import com.bbu.ai.face_auth.services.RecognitionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/attendance")
+public class FaceMatchController {
+
+    private final FaceMatcherService faceMatcherService;
+    private final RecognitionService recognitionService;
+    private final IdempotencyService idempotencyService;
+
+    public FaceMatchController(FaceMatcherService faceMatcherService, RecognitionService recognitionService,
+                               IdempotencyService idempotencyService) {
+        this.faceMatcherService = faceMatcherService;
+        this.recognitionService = recognitionService;
+        this.idempotencyService = idempotencyService;
+    }
+
+    // Kiosk sends the camera frame; Spring calls the ML service and marks attendance in the same request
+    @PostMapping(value = "/recognize", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> recognize(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(required = false) Float threshold,
+                                       @RequestParam(required = false) String note,
+                                       @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                       HttpServletRequest request) throws IOException {
+        if (file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Frame is empty");
+        }
+        byte[] image = file.getBytes();
+        String location = AttendanceController.getClientLocation(request);
+        return idempotencyService.execute(idempotencyKey, "recognize", () -> {
+            RecognizeResponse response = recognitionService.recognizeAndMark(image, file.getOriginalFilename(),
+                    file.getContentType(), threshold, note, location);
+            RecognizeResponse.Timings timings = response.timings();
+            return ResponseEntity.ok()
+                    .header("Server-Timing", String.format(Locale.ROOT, "ml;dur=%.2f, mark;dur=%.2f, total;dur=%.2f",
+                            timings.mlMillis(), timings.markMillis(), timings.totalMillis()))
+                    .body(response);
+        });
+    }
+
+    // Kiosk / ML service sends the extracted embedding, gets the best matching employees back
+    @PostMapping("/match")
+    public ResponseEntity<FaceMatchResponse> match(@Valid @RequestBody FaceMatchRequest request) {
+        FaceMatchResponse response = faceMatcherService.match(request.getEmbedding(), request.getTopK(), request.getThreshold());
+        return ResponseEntity.ok(response);
+    }
+
+    @PutMapping("/embeddings/{employeeId}")
+    public ResponseEntity<MessageResponse> enroll(@PathVariable Long employeeId, @Valid @RequestBody FaceEnrollRequest request) {
+        faceMatcherService.enroll(employeeId, request.getEmbedding());
+        return ResponseEntity.ok(new MessageResponse("Face template saved"));
+    }
+
+    @DeleteMapping("/embeddings/{employeeId}")
+    public ResponseEntity<MessageResponse> remove(@PathVariable Long employeeId) {
+        faceMatcherService.remove(employeeId);
+        return ResponseEntity.ok(new MessageResponse("Face template deleted"));
+    }
+
+    @GetMapping("/embeddings/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(faceMatcherService.stats());
+    }
+}
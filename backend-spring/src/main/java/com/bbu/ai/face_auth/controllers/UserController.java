@@ -2,17 +2,29 @@ package com.bbu.ai.face_auth.controllers;
 
 import com.bbu.ai.face_auth.dto.UserDTO;
 import com.bbu.ai.face_auth.dto.UserRequest;
+import com.bbu.ai.face_auth.mapper.BulkUserResult;
+import com.bbu.ai.face_auth.mapper.BulkUserSummary;
 import com.bbu.ai.face_auth.mapper.UserMapper;
 import com.bbu.ai.face_auth.models.User;
+import com.bbu.ai.face_auth.services.UserBulkImportService;
 import com.bbu.ai.face_auth.services.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 
 
 @RestController
@@ -21,7 +33,11 @@ import java.util.List;
 @Tag(name = "User Management", description = "APIs for managing users in the HR Attendance system")
 public class UserController {
 
+    private static final String TEXT_CSV = "text/csv";
+
     private final UserService userService;
+    private final UserBulkImportService userBulkImportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/test")
     public ResponseEntity<String> test() {
@@ -57,6 +73,83 @@ public class UserController {
         return ResponseEntity.ok(UserMapper.toDTO(user));
     }
 
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, TEXT_CSV},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Create users in bulk from a JSON array or CSV file, returning every row's result")
+    public BulkUserSummary bulkCreateUsers(HttpServletRequest request) throws IOException {
+        return userBulkImportService.importUsers(request.getInputStream(), isCsv(request), true, result -> {});
+    }
+
+    /**
+     * Same import, but answered as NDJSON while it runs: one line per row, a progress line
+     * after every committed chunk and a summary line last. Meant for very large files.
+     * The import slot is taken before the response starts, so a concurrent import is
+     * refused with 409; it is released once the body has been streamed.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, TEXT_CSV},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Create users in bulk, streaming per-row results and progress as NDJSON")
+    public ResponseEntity<StreamingResponseBody> bulkCreateUsersStreaming(HttpServletRequest request) {
+        boolean csv = isCsv(request);
+        UserBulkImportService.ImportSlot slot;
+        try {
+            slot = userBulkImportService.reserve();
+        } catch (ResponseStatusException e) {
+            // Written here as NDJSON: the JSON error body could not be sent for this Accept
+            return ResponseEntity.status(e.getStatusCode())
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(out -> writeLine(out, Map.of("error", String.valueOf(e.getReason()))));
+        }
+        StreamingResponseBody body = out -> {
+            try (slot) {
+                BulkUserSummary summary = userBulkImportService.importUsers(slot, request.getInputStream(), csv, false,
+                        new UserBulkImportService.Listener() {
+                            @Override
+                            public void onRow(BulkUserResult result) {
+                                writeLine(out, result);
+                            }
+
+                            @Override
+                            public void onProgress(int processed, int created, int failed) {
+                                writeLine(out, Map.of("progress",
+                                        Map.of("processed", processed, "created", created, "failed", failed)));
+                                flush(out);
+                            }
+                        });
+                writeLine(out, Map.of("summary", summary));
+            } catch (ResponseStatusException | IllegalArgumentException e) {
+                // Headers are already sent, so the failure is reported in-band
+                String message = e instanceof ResponseStatusException status ? status.getReason() : e.getMessage();
+                writeLine(out, Map.of("error", String.valueOf(message)));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static boolean isCsv(HttpServletRequest request) {
+        String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+        return contentType != null && contentType.toLowerCase().startsWith(TEXT_CSV);
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update user")
     public ResponseEntity<UserDTO> updateUser(@PathVariable Long id, @RequestBody UserRequest request) {
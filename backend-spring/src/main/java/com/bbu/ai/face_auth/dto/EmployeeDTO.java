@@ -1,5 +1,6 @@
 package com.bbu.ai.face_auth.dto;
 
+import com.bbu.ai.face_auth.models.Gender;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,4 +21,9 @@ public class EmployeeDTO {
     private String department;
     private Long userId;
 
+    // For JPQL constructor expressions, which select the gender as its enum
+    public EmployeeDTO(Long id, String name, LocalDate dob, Gender gender, String imageUrl, String department,
+                       Long userId) {
+        this(id, name, dob, gender != null ? gender.name() : null, imageUrl, department, userId);
+    }
 }
@@ -0,0 +1,10 @@
+package com.bbu.ai.face_auth.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class FaceEnrollRequest {
+    @NotNull
+    private float[] embedding;
+}
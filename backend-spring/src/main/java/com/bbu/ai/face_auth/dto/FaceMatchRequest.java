@@ -0,0 +1,12 @@
+package com.bbu.ai.face_auth.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class FaceMatchRequest {
+    @NotNull
+    private float[] embedding;
+    private Integer topK;
+    private Float threshold;
+}
@@ -0,0 +1,18 @@
+package com.bbu.ai.face_auth.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokeTokenRequest {
+
+    @NotBlank
+    private String token;
+
+}
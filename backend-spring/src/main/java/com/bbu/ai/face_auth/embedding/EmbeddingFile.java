@@ -0,0 +1,522 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enrolled embeddings in one memory-mapped file, scanned in place: a restart maps
+ * the file and answers from the page cache instead of re-reading every template row.
+ * <p>
+ * Layout (little-endian), version 1:
+ * <pre>
+ *   0  int    magic "FEMB"
+ *   4  int    version
+ *   8  int    data type (0 = float32, 1 = float16)
+ *  12  int    dimension
+ *  16  int    capacity, in records
+ *  20  int    count of committed records
+ *  24  long   generation, bumped by every rewrite
+ *  64  long[capacity]  employee id column
+ *      byte[capacity]  tombstones (1 = deleted or replaced)
+ *      vector block, 64-byte aligned, capacity * dimension elements
+ * </pre>
+ * Records are only appended. The count is written and forced after the record
+ * itself, so a crash mid-append leaves the record invisible. Replacing an employee
+ * appends the new record before tombstoning the old one; if a crash lands in
+ * between, opening the file keeps the later record. Dead records are dropped by
+ * rewriting the live ones to a temp file and atomically moving it over the original.
+ * Every rewrite gets a temp file of its own, so a compaction prepared without the
+ * write lock never shares one with a growth rewrite that swaps its file in.
+ * <p>
+ * Writers must be serialised by the caller. Readers need no lock: everything they
+ * touch hangs off an immutable {@link View} that writers republish after each
+ * change, and an old view stays readable after a rewrite because its mapping
+ * still points at the replaced (unlinked) file.
+ */
+public class EmbeddingFile implements EmbeddingStore, Closeable {
+
+    public enum DataType {
+        F32(Float.BYTES), F16(Short.BYTES);
+
+        private final int bytes;
+
+        DataType(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static final int MAGIC = 0x424D4546; // "FEMB" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 20;
+
+    // Fills `row` (position 0, rowBytes long) with the vector of the i-th record being written
+    private interface RowWriter {
+        void write(int i, ByteBuffer row);
+    }
+
+    // One mapping of the file; only count changes between views of the same mapping
+    private record View(MappedByteBuffer buffer, DataType dataType, int rowBytes, int capacity, int count,
+                        long generation, int tombstoneOffset, int vectorOffset,
+                        ConcurrentHashMap<Long, Integer> recordById) {
+
+        View withCount(int newCount) {
+            return new View(buffer, dataType, rowBytes, capacity, newCount, generation, tombstoneOffset,
+                    vectorOffset, recordById);
+        }
+
+        boolean isDead(int record) {
+            return buffer.get(tombstoneOffset + record) != 0;
+        }
+
+        long idAt(int record) {
+            return buffer.getLong(HEADER_BYTES + record * Long.BYTES);
+        }
+
+        int rowOffset(int record) {
+            return vectorOffset + record * rowBytes;
+        }
+
+        float score(float[] unitQuery, int record) {
+            return dataType == DataType.F16
+                    ? VectorMath.dotHalf(unitQuery, buffer, rowOffset(record))
+                    : VectorMath.dot(unitQuery, buffer, rowOffset(record));
+        }
+
+        float[] decode(int record, int dimension) {
+            int offset = rowOffset(record);
+            float[] vector = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = dataType == DataType.F16
+                        ? VectorMath.fromHalf(buffer.getShort(offset + i * Short.BYTES))
+                        : buffer.getFloat(offset + i * Float.BYTES);
+            }
+            return vector;
+        }
+
+        int[] liveRecords() {
+            int[] records = new int[recordById.size()];
+            int i = 0;
+            for (int record = 0; record < count && i < records.length; record++) {
+                if (!isDead(record)) {
+                    records[i++] = record;
+                }
+            }
+            return i == records.length ? records : Arrays.copyOf(records, i);
+        }
+    }
+
+    private final Path path;
+    private final int dimension;
+    private final int minCapacity;
+
+    private FileChannel channel;
+    private volatile View view;
+    private volatile long modifications;
+
+    private EmbeddingFile(Path path, int dimension, int minCapacity) {
+        this.path = path;
+        this.dimension = dimension;
+        this.minCapacity = Math.max(16, minCapacity);
+    }
+
+    /**
+     * Maps the file, creating an empty one first if it does not exist. An existing
+     * file in another data type is converted to {@code dataType}.
+     *
+     * @throws IOException also when the file is not a valid embedding file of this dimension
+     */
+    public static EmbeddingFile open(Path path, int dimension, DataType dataType, int initialCapacity) throws IOException {
+        EmbeddingFile file = new EmbeddingFile(path, dimension, initialCapacity);
+        file.deleteLeftoverTempFiles();
+        if (!Files.exists(path)) {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            file.writeAndSwap(file.minCapacity, dataType, 0, new long[0], null);
+        } else {
+            file.load();
+            if (file.view.dataType() != dataType) {
+                file.rewrite(dataType);
+            }
+        }
+        return file;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return view.recordById().size();
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return view.buffer().capacity();
+    }
+
+    @Override
+    public boolean contains(long employeeId) {
+        return view.recordById().containsKey(employeeId);
+    }
+
+    public DataType dataType() {
+        return view.dataType();
+    }
+
+    public long generation() {
+        return view.generation();
+    }
+
+    public int tombstones() {
+        View v = view;
+        return v.count() - v.recordById().size();
+    }
+
+    // Bumped by every put/remove, so a rewrite prepared without the write lock can tell it went stale
+    public long modifications() {
+        return modifications;
+    }
+
+    public boolean needsCompaction(double ratio) {
+        return tombstones() > Math.max(16, (long) (view.count() * ratio));
+    }
+
+    @Override
+    public void put(long employeeId, float[] unitVector) {
+        checkDimension(unitVector);
+        try {
+            if (view.count() == view.capacity()) {
+                rewrite(view.dataType());
+            }
+            View v = view;
+            MappedByteBuffer buffer = v.buffer();
+            int record = v.count();
+            buffer.putLong(idOffset(record), employeeId);
+            buffer.put(v.tombstoneOffset() + record, (byte) 0);
+            encode(unitVector, buffer, v.rowOffset(record), v.dataType());
+            buffer.force(idOffset(record), Long.BYTES);
+            buffer.force(v.tombstoneOffset() + record, 1);
+            buffer.force(v.rowOffset(record), v.rowBytes());
+
+            // Commit point
+            buffer.putInt(COUNT_OFFSET, record + 1);
+            buffer.force(0, HEADER_BYTES);
+            view = v.withCount(record + 1);
+
+            Integer previous = v.recordById().put(employeeId, record);
+            if (previous != null) {
+                tombstone(v, previous);
+            }
+            modifications++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to " + path, e);
+        }
+    }
+
+    @Override
+    public boolean remove(long employeeId) {
+        View v = view;
+        Integer record = v.recordById().remove(employeeId);
+        if (record == null) {
+            return false;
+        }
+        tombstone(v, record);
+        // Republish so readers that start now are ordered after the tombstone write
+        view = v.withCount(v.count());
+        modifications++;
+        return true;
+    }
+
+    @Override
+    public long[] employeeIds() {
+        View v = view;
+        int[] records = v.liveRecords();
+        long[] ids = new long[records.length];
+        for (int i = 0; i < records.length; i++) {
+            ids[i] = v.idAt(records[i]);
+        }
+        return ids;
+    }
+
+    @Override
+    public float[] get(long employeeId) {
+        View v = view;
+        Integer record = v.recordById().get(employeeId);
+        return record == null ? null : v.decode(record, dimension);
+    }
+
+    @Override
+    public float score(float[] unitQuery, long employeeId) {
+        View v = view;
+        Integer record = v.recordById().get(employeeId);
+        return record == null ? Float.NaN : v.score(unitQuery, record);
+    }
+
+    @Override
+    public List<Match> topK(float[] unitQuery, int k) {
+        checkDimension(unitQuery);
+        View v = view;
+        int limit = Math.min(k, v.recordById().size());
+        if (limit <= 0) {
+            return List.of();
+        }
+        TopKHeap heap = new TopKHeap(limit);
+        for (int record = 0; record < v.count(); record++) {
+            if (!v.isDead(record)) {
+                heap.offer(record, v.score(unitQuery, record));
+            }
+        }
+        return heap.toMatches(v::idAt);
+    }
+
+    /**
+     * Replaces the whole content with the given embeddings in one atomic rewrite.
+     */
+    @Override
+    public void replaceAll(long[] employeeIds, List<float[]> unitVectors) {
+        View v = view;
+        int newCapacity = Math.max(minCapacity, employeeIds.length * 2);
+        try {
+            writeAndSwap(newCapacity, v.dataType(), v.generation() + 1, employeeIds,
+                    (i, row) -> encode(unitVectors.get(i), row, 0, v.dataType()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rewrite " + path, e);
+        }
+        modifications++;
+    }
+
+    /**
+     * First half of a compaction: writes the live records to a temp file. Only reads
+     * this file, so it can run alongside queries.
+     */
+    public Path writeCompacted() throws IOException {
+        View v = view;
+        int[] records = v.liveRecords();
+        long[] ids = idsOf(v, records);
+        Path temp = newTempPath();
+        try {
+            write(temp, Math.max(minCapacity, ids.length * 2), v.dataType(), v.generation() + 1, ids,
+                    (i, row) -> row.put(0, v.buffer(), v.rowOffset(records[i]), v.rowBytes()));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Second half of a compaction: atomically moves the rewritten file into place and maps it.
+     */
+    public void replaceWith(Path compacted) throws IOException {
+        Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // The old mapping stays valid (it points at the unlinked file) until it is collected
+        channel.close();
+        load();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void rewrite(DataType target) throws IOException {
+        View v = view;
+        int[] records = v.liveRecords();
+        long[] ids = idsOf(v, records);
+        int newCapacity = Math.max(minCapacity, Math.max(v.capacity(), ids.length) * 2);
+        RowWriter rows = target == v.dataType()
+                ? (i, row) -> row.put(0, v.buffer(), v.rowOffset(records[i]), v.rowBytes())
+                : (i, row) -> encode(v.decode(records[i], dimension), row, 0, target);
+        writeAndSwap(newCapacity, target, v.generation() + 1, ids, rows);
+    }
+
+    private static long[] idsOf(View v, int[] records) {
+        long[] ids = new long[records.length];
+        for (int i = 0; i < records.length; i++) {
+            ids[i] = v.idAt(records[i]);
+        }
+        return ids;
+    }
+
+    private void writeAndSwap(int newCapacity, DataType type, long newGeneration, long[] ids, RowWriter rows) throws IOException {
+        Path temp = newTempPath();
+        try {
+            write(temp, newCapacity, type, newGeneration, ids, rows);
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        close();
+        load();
+    }
+
+    private void write(Path target, int newCapacity, DataType type, long newGeneration, long[] ids, RowWriter rows) throws IOException {
+        int newTombstoneOffset = HEADER_BYTES + newCapacity * Long.BYTES;
+        int newVectorOffset = align(newTombstoneOffset + newCapacity);
+        int newRowBytes = dimension * type.bytes;
+        long fileBytes = newVectorOffset + (long) newCapacity * newRowBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IOException("Embedding file would exceed 2 GB at capacity " + newCapacity);
+        }
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(type.ordinal()).putInt(dimension)
+                    .putInt(newCapacity).putInt(ids.length).putLong(newGeneration);
+            header.clear();
+            writeFully(out, header, 0);
+
+            ByteBuffer idColumn = ByteBuffer.allocate(ids.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            idColumn.asLongBuffer().put(ids);
+            writeFully(out, idColumn, HEADER_BYTES);
+
+            // Tombstones stay zero; rows are written one at a time through a reused buffer
+            ByteBuffer row = ByteBuffer.allocateDirect(newRowBytes).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < ids.length; i++) {
+                rows.write(i, row);
+                row.clear();
+                writeFully(out, row, newVectorOffset + (long) i * newRowBytes);
+                row.clear();
+            }
+            // Extend to full size so the mapping never has to grow the file
+            writeFully(out, ByteBuffer.allocate(1), fileBytes - 1);
+            out.force(true);
+        }
+    }
+
+    private void load() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            view = map(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+    }
+
+    private View map(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // keep reading
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not an embedding file");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException(path + " has unsupported version " + header.getInt(4));
+        }
+        if (header.getInt(12) != dimension) {
+            throw new IOException(path + " holds " + header.getInt(12) + "-dimensional embeddings, expected " + dimension);
+        }
+        int dataTypeOrdinal = header.getInt(8);
+        if (dataTypeOrdinal < 0 || dataTypeOrdinal >= DataType.values().length) {
+            throw new IOException(path + " has unknown data type " + dataTypeOrdinal);
+        }
+        DataType dataType = DataType.values()[dataTypeOrdinal];
+        int capacity = header.getInt(16);
+        int count = header.getInt(COUNT_OFFSET);
+        int rowBytes = dimension * dataType.bytes;
+        int tombstoneOffset = HEADER_BYTES + capacity * Long.BYTES;
+        int vectorOffset = align(tombstoneOffset + capacity);
+
+        long fileBytes = vectorOffset + (long) capacity * rowBytes;
+        if (channel.size() < fileBytes || count > capacity) {
+            throw new IOException(path + " is truncated");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        View v = new View(buffer, dataType, rowBytes, capacity, count, header.getLong(24), tombstoneOffset,
+                vectorOffset, new ConcurrentHashMap<>());
+        for (int record = 0; record < count; record++) {
+            if (v.isDead(record)) {
+                continue;
+            }
+            Integer previous = v.recordById().put(v.idAt(record), record);
+            if (previous != null) {
+                tombstone(v, previous);
+            }
+        }
+        return v;
+    }
+
+    private static void tombstone(View v, int record) {
+        v.buffer().put(v.tombstoneOffset() + record, (byte) 1);
+        v.buffer().force(v.tombstoneOffset() + record, 1);
+    }
+
+    private static void encode(float[] vector, ByteBuffer target, int offset, DataType type) {
+        for (int i = 0; i < vector.length; i++) {
+            if (type == DataType.F16) {
+                target.putShort(offset + i * Short.BYTES, VectorMath.toHalf(vector[i]));
+            } else {
+                target.putFloat(offset + i * Float.BYTES, vector[i]);
+            }
+        }
+    }
+
+    private static int idOffset(int record) {
+        return HEADER_BYTES + record * Long.BYTES;
+    }
+
+    // Next to the file, so the move over it stays atomic
+    private Path newTempPath() throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, path.getFileName() + ".", ".tmp");
+    }
+
+    // Rewrites cut short by a crash; nothing else writes temp files for this path
+    private void deleteLeftoverTempFiles() throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        // Earlier versions used one fixed name
+        Files.deleteIfExists(dir.resolve(path.getFileName() + ".tmp"));
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(dir, path.getFileName() + ".*.tmp")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding must have " + dimension + " dimensions, got " + vector.length);
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + 63) & ~63;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+}
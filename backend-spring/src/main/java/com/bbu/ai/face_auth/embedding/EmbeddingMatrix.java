@@ -0,0 +1,189 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All enrolled embeddings in one contiguous off-heap float32 block, one row per
+ * employee, scanned with {@link VectorMath#dot}. Rows are kept dense: removing an
+ * employee moves the last row into the freed slot. Not thread-safe on its own, but a
+ * matrix that is no longer modified can be read from any number of threads once it
+ * has been safely published.
+ */
+public class EmbeddingMatrix implements EmbeddingStore {
+
+    private final int dimension;
+    private final int rowBytes;
+    private ByteBuffer vectors;
+    private long[] employeeIds;
+    private int size;
+    private final Map<Long, Integer> rowByEmployee = new HashMap<>();
+
+    public EmbeddingMatrix(int dimension, int initialCapacity) {
+        this.dimension = dimension;
+        this.rowBytes = dimension * Float.BYTES;
+        int capacity = Math.max(16, initialCapacity);
+        this.vectors = ByteBuffer.allocateDirect(capacity * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        this.employeeIds = new long[capacity];
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return vectors.capacity();
+    }
+
+    @Override
+    public boolean contains(long employeeId) {
+        return rowByEmployee.containsKey(employeeId);
+    }
+
+    @Override
+    public void put(long employeeId, float[] unitVector) {
+        checkDimension(unitVector);
+        Integer row = rowByEmployee.get(employeeId);
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rowByEmployee.put(employeeId, row);
+            employeeIds[row] = employeeId;
+        }
+        int offset = row * rowBytes;
+        for (int i = 0; i < dimension; i++) {
+            vectors.putFloat(offset + i * Float.BYTES, unitVector[i]);
+        }
+    }
+
+    @Override
+    public boolean remove(long employeeId) {
+        Integer row = rowByEmployee.remove(employeeId);
+        if (row == null) {
+            return false;
+        }
+        int last = --size;
+        if (row != last) {
+            vectors.put(row * rowBytes, vectors, last * rowBytes, rowBytes);
+            employeeIds[row] = employeeIds[last];
+            rowByEmployee.put(employeeIds[row], row);
+        }
+        return true;
+    }
+
+    @Override
+    public void replaceAll(long[] employeeIds, List<float[]> unitVectors) {
+        rowByEmployee.clear();
+        size = 0;
+        for (int i = 0; i < employeeIds.length; i++) {
+            put(employeeIds[i], unitVectors.get(i));
+        }
+    }
+
+    // Row of the employee, or -1
+    public int rowOf(long employeeId) {
+        Integer row = rowByEmployee.get(employeeId);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @return a copy with room for at least {@code capacity} rows
+     */
+    public EmbeddingMatrix copy(int capacity) {
+        EmbeddingMatrix copy = new EmbeddingMatrix(dimension, Math.max(capacity, size));
+        copy.vectors.put(0, vectors, 0, size * rowBytes);
+        System.arraycopy(employeeIds, 0, copy.employeeIds, 0, size);
+        copy.rowByEmployee.putAll(rowByEmployee);
+        copy.size = size;
+        return copy;
+    }
+
+    // Appends another matrix's row without decoding it to a float[]
+    public void putRow(long employeeId, EmbeddingMatrix source, int sourceRow) {
+        Integer row = rowByEmployee.get(employeeId);
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rowByEmployee.put(employeeId, row);
+            employeeIds[row] = employeeId;
+        }
+        vectors.put(row * rowBytes, source.vectors, sourceRow * rowBytes, rowBytes);
+    }
+
+    @Override
+    public long[] employeeIds() {
+        return Arrays.copyOf(employeeIds, size);
+    }
+
+    @Override
+    public float[] get(long employeeId) {
+        Integer row = rowByEmployee.get(employeeId);
+        if (row == null) {
+            return null;
+        }
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = vectors.getFloat(row * rowBytes + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    @Override
+    public float score(float[] unitQuery, long employeeId) {
+        Integer row = rowByEmployee.get(employeeId);
+        return row == null ? Float.NaN : VectorMath.dot(unitQuery, vectors, row * rowBytes);
+    }
+
+    @Override
+    public List<Match> topK(float[] unitQuery, int k) {
+        return topK(unitQuery, k, null);
+    }
+
+    /**
+     * Exact top-k, skipping rows whose bit is set in {@code deadRows} (may be null).
+     */
+    public List<Match> topK(float[] unitQuery, int k, long[] deadRows) {
+        checkDimension(unitQuery);
+        int limit = Math.min(k, size);
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        TopKHeap heap = new TopKHeap(limit);
+        for (int row = 0; row < size; row++) {
+            if (deadRows != null && (deadRows[row >>> 6] & (1L << row)) != 0) {
+                continue;
+            }
+            heap.offer(row, VectorMath.dot(unitQuery, vectors, row * rowBytes));
+        }
+        return heap.toMatches(row -> employeeIds[row]);
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding must have " + dimension + " dimensions, got " + vector.length);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= employeeIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, employeeIds.length * 2);
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+        grown.put(0, vectors, 0, size * rowBytes);
+        vectors = grown;
+        employeeIds = Arrays.copyOf(employeeIds, capacity);
+    }
+}
@@ -0,0 +1,47 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.util.List;
+
+/**
+ * Where the matcher keeps enrolled embeddings for exact search. Writers must be
+ * serialised by the caller; whether readers may run alongside them is up to the
+ * implementation.
+ */
+public interface EmbeddingStore {
+
+    record Match(long employeeId, float score) {}
+
+    int dimension();
+
+    int size();
+
+    long offHeapBytes();
+
+    boolean contains(long employeeId);
+
+    /**
+     * Inserts or replaces the employee's embedding. The vector must already be unit length.
+     */
+    void put(long employeeId, float[] unitVector);
+
+    boolean remove(long employeeId);
+
+    /**
+     * Replaces the whole content, for bulk loads where per-row puts would be wasteful.
+     */
+    void replaceAll(long[] employeeIds, List<float[]> unitVectors);
+
+    long[] employeeIds();
+
+    float[] get(long employeeId);
+
+    /**
+     * Exact dot product against one stored embedding, without copying it out; NaN when absent.
+     */
+    float score(float[] unitQuery, long employeeId);
+
+    /**
+     * Exact top-k by dot product (cosine, since stored rows and query are unit length).
+     */
+    List<Match> topK(float[] unitQuery, int k);
+}
@@ -0,0 +1,370 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hierarchical Navigable Small World graph (Malkov &amp; Yashunin) over unit-length
+ * embeddings, scored by dot product.
+ * <p>
+ * Searches take no locks: each node's per-layer neighbour list is an immutable int[]
+ * published through an AtomicReferenceArray, and the node table / entry point are
+ * volatile. Inserts may run concurrently with searches and with each other; they
+ * only lock the single neighbour list being rewritten, plus a short global lock to
+ * allocate a slot or raise the entry point. Removal is a tombstone: the node keeps
+ * routing traffic but is never returned.
+ */
+public class HnswIndex {
+
+    public record Result(long id, float score) {}
+
+    private static final class Node {
+        final long id;
+        final float[] vector;
+        final AtomicReferenceArray<int[]> neighbors;
+        volatile boolean deleted;
+
+        Node(long id, float[] vector, int level) {
+            this.id = id;
+            this.vector = vector;
+            this.neighbors = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                neighbors.set(l, new int[0]);
+            }
+        }
+
+        int level() {
+            return neighbors.length() - 1;
+        }
+    }
+
+    private record Candidate(int node, float score) {}
+
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> Float.compare(b.score(), a.score());
+    private static final Comparator<Candidate> WORST_FIRST = (a, b) -> Float.compare(a.score(), b.score());
+
+    private final int dimension;
+    private final int m;
+    private final int maxLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private volatile int efSearch;
+
+    private final Object structureLock = new Object();
+    private volatile Node[] nodes = new Node[1024];
+    private volatile int count;
+    private volatile int entryPoint = -1;
+    private volatile int deletedCount;
+    private final ConcurrentHashMap<Long, Integer> nodeById = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<int[]> visitedMarks = ThreadLocal.withInitial(() -> new int[0]);
+    private final ThreadLocal<int[]> visitedGeneration = ThreadLocal.withInitial(() -> new int[1]);
+
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW M must be at least 2");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxLayer0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public int size() {
+        return count - deletedCount;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    public int efSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    /**
+     * Adds (or replaces) the vector for an id. The vector must be unit length and is
+     * not copied.
+     */
+    public void insert(long id, float[] unitVector) {
+        if (unitVector.length != dimension) {
+            throw new IllegalArgumentException("Embedding must have " + dimension + " dimensions");
+        }
+        int level = randomLevel();
+        Node node = new Node(id, unitVector, level);
+
+        int index;
+        int entry;
+        synchronized (structureLock) {
+            Integer previous = nodeById.get(id);
+            if (previous != null) {
+                markDeleted(previous);
+            }
+            index = count;
+            if (index == nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+            }
+            nodes[index] = node;
+            count = index + 1;
+            nodeById.put(id, index);
+
+            entry = entryPoint;
+            if (entry < 0) {
+                entryPoint = index;
+                return;
+            }
+        }
+
+        Node[] table = nodes;
+        int entryLevel = table[entry].level();
+        int current = entry;
+        float currentScore = score(unitVector, table[current]);
+        for (int layer = entryLevel; layer > level; layer--) {
+            Candidate best = greedy(unitVector, current, currentScore, layer);
+            current = best.node();
+            currentScore = best.score();
+        }
+
+        List<Candidate> entryPoints = List.of(new Candidate(current, currentScore));
+        for (int layer = Math.min(level, entryLevel); layer >= 0; layer--) {
+            List<Candidate> nearest = drain(searchLayer(unitVector, entryPoints, efConstruction, layer));
+            int maxConnections = layer == 0 ? maxLayer0 : m;
+            List<Candidate> selected = selectNeighbors(unitVector, nearest, m);
+            node.neighbors.set(layer, toIds(selected));
+            for (Candidate neighbor : selected) {
+                link(neighbor.node(), index, layer, maxConnections);
+            }
+            entryPoints = nearest;
+        }
+
+        if (level > entryLevel) {
+            synchronized (structureLock) {
+                if (level > nodes[entryPoint].level()) {
+                    entryPoint = index;
+                }
+            }
+        }
+    }
+
+    public boolean remove(long id) {
+        synchronized (structureLock) {
+            Integer index = nodeById.remove(id);
+            if (index == null) {
+                return false;
+            }
+            markDeleted(index);
+            return true;
+        }
+    }
+
+    /**
+     * Approximate top-k by dot product, best first. Scores are exact for the returned ids.
+     */
+    public List<Result> search(float[] unitQuery, int k) {
+        return search(unitQuery, k, efSearch);
+    }
+
+    public List<Result> search(float[] unitQuery, int k, int ef) {
+        int entry = entryPoint;
+        if (entry < 0 || k <= 0) {
+            return List.of();
+        }
+        Node[] table = nodes;
+        int current = entry;
+        float currentScore = score(unitQuery, table[current]);
+        for (int layer = table[entry].level(); layer > 0; layer--) {
+            Candidate best = greedy(unitQuery, current, currentScore, layer);
+            current = best.node();
+            currentScore = best.score();
+        }
+
+        PriorityQueue<Candidate> found = searchLayer(unitQuery,
+                List.of(new Candidate(current, currentScore)), Math.max(ef, k), 0);
+        List<Candidate> ordered = drain(found);
+        List<Result> results = new ArrayList<>(k);
+        for (Candidate candidate : ordered) {
+            Node node = nodes[candidate.node()];
+            if (!node.deleted) {
+                results.add(new Result(node.id, candidate.score()));
+                if (results.size() == k) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    private Candidate greedy(float[] query, int start, float startScore, int layer) {
+        int current = start;
+        float currentScore = startScore;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : nodes[current].neighbors.get(layer)) {
+                float s = score(query, nodes[neighbor]);
+                if (s > currentScore) {
+                    currentScore = s;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return new Candidate(current, currentScore);
+    }
+
+    // Returns up to ef closest nodes as a worst-first heap
+    private PriorityQueue<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int layer) {
+        Node[] table = nodes;
+        int[] marks = visited(table.length);
+        int generation = visitedGeneration.get()[0];
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> found = new PriorityQueue<>(WORST_FIRST);
+        for (Candidate entry : entryPoints) {
+            marks[entry.node()] = generation;
+            candidates.add(entry);
+            found.add(entry);
+        }
+        while (found.size() > ef) {
+            found.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (found.size() >= ef && closest.score() < found.peek().score()) {
+                break;
+            }
+            Node node = table[closest.node()];
+            if (node.level() < layer) {
+                continue;
+            }
+            for (int neighbor : node.neighbors.get(layer)) {
+                // Nodes added after this search took its snapshot of the table are skipped
+                if (neighbor >= table.length || marks[neighbor] == generation) {
+                    continue;
+                }
+                marks[neighbor] = generation;
+                Node neighborNode = table[neighbor];
+                if (neighborNode == null) {
+                    continue;
+                }
+                float s = score(query, neighborNode);
+                if (found.size() < ef || s > found.peek().score()) {
+                    candidates.add(new Candidate(neighbor, s));
+                    found.add(new Candidate(neighbor, s));
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Neighbour selection heuristic: keep a candidate only if it is closer to the base
+     * than to every neighbour already kept, then top up with the best of the rest.
+     */
+    private List<Candidate> selectNeighbors(float[] base, List<Candidate> bestFirst, int max) {
+        if (bestFirst.size() <= max) {
+            return bestFirst;
+        }
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : bestFirst) {
+            if (selected.size() == max) {
+                break;
+            }
+            float[] candidateVector = nodes[candidate.node()].vector;
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (VectorMath.dot(candidateVector, nodes[kept.node()].vector) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : pruned).add(candidate);
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < max; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    private void link(int from, int to, int layer, int maxConnections) {
+        Node node = nodes[from];
+        synchronized (node) {
+            int[] current = node.neighbors.get(layer);
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = to;
+            if (grown.length <= maxConnections) {
+                node.neighbors.set(layer, grown);
+                return;
+            }
+            List<Candidate> scored = new ArrayList<>(grown.length);
+            for (int neighbor : grown) {
+                scored.add(new Candidate(neighbor, VectorMath.dot(node.vector, nodes[neighbor].vector)));
+            }
+            scored.sort(BEST_FIRST);
+            node.neighbors.set(layer, toIds(selectNeighbors(node.vector, scored, maxConnections)));
+        }
+    }
+
+    private void markDeleted(int index) {
+        Node node = nodes[index];
+        if (!node.deleted) {
+            node.deleted = true;
+            deletedCount++;
+        }
+    }
+
+    private int[] visited(int capacity) {
+        int[] marks = visitedMarks.get();
+        int[] generation = visitedGeneration.get();
+        if (marks.length < capacity) {
+            marks = new int[capacity];
+            visitedMarks.set(marks);
+            generation[0] = 0;
+        }
+        if (++generation[0] == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            generation[0] = 1;
+        }
+        return marks;
+    }
+
+    private int randomLevel() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(1 - r) * levelMultiplier);
+    }
+
+    private static float score(float[] query, Node node) {
+        return VectorMath.dot(query, node.vector);
+    }
+
+    private static List<Candidate> drain(PriorityQueue<Candidate> worstFirst) {
+        List<Candidate> bestFirst = new ArrayList<>(worstFirst);
+        bestFirst.sort(BEST_FIRST);
+        return bestFirst;
+    }
+
+    private static int[] toIds(List<Candidate> candidates) {
+        int[] ids = new int[candidates.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = candidates.get(i).node();
+        }
+        return ids;
+    }
+}
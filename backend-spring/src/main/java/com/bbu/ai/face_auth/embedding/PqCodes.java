@@ -0,0 +1,111 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Product-quantized codes of every enrolled embedding in one dense byte array, for a
+ * fast approximate first pass before the exact re-rank. Rows are kept dense like
+ * {@link EmbeddingMatrix}.
+ * <p>
+ * Writers must be serialised by the caller. Readers need no lock: the arrays and row
+ * count are published together in an immutable {@link Table}. A reader racing a
+ * write may score one row from a half-written or just-moved code; that only skews
+ * the shortlist, which the caller re-ranks exactly anyway.
+ */
+public class PqCodes {
+
+    private record Table(byte[] codes, long[] employeeIds, int size) {}
+
+    private final ProductQuantizer quantizer;
+    private final int codeBytes;
+    private final Map<Long, Integer> rowByEmployee = new HashMap<>();
+    private volatile Table table;
+
+    public PqCodes(ProductQuantizer quantizer, int initialCapacity) {
+        this.quantizer = quantizer;
+        this.codeBytes = quantizer.codeBytes();
+        int capacity = Math.max(16, initialCapacity);
+        this.table = new Table(new byte[capacity * codeBytes], new long[capacity], 0);
+    }
+
+    public ProductQuantizer quantizer() {
+        return quantizer;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public long memoryBytes() {
+        Table t = table;
+        return t.codes().length + (long) t.employeeIds().length * Long.BYTES + quantizer.codebookBytes();
+    }
+
+    public void put(long employeeId, float[] unitVector) {
+        byte[] code = new byte[codeBytes];
+        quantizer.encode(unitVector, code, 0);
+        putEncoded(employeeId, code, 0);
+    }
+
+    // For codes encoded in bulk elsewhere with the same quantizer
+    public void putEncoded(long employeeId, byte[] source, int offset) {
+        Table t = table;
+        Integer row = rowByEmployee.get(employeeId);
+        if (row != null) {
+            System.arraycopy(source, offset, t.codes(), row * codeBytes, codeBytes);
+            table = t;
+            return;
+        }
+        byte[] codes = t.codes();
+        long[] employeeIds = t.employeeIds();
+        if (t.size() == employeeIds.length) {
+            // Readers keep scanning the old arrays
+            codes = Arrays.copyOf(codes, employeeIds.length * 2 * codeBytes);
+            employeeIds = Arrays.copyOf(employeeIds, employeeIds.length * 2);
+        }
+        row = t.size();
+        System.arraycopy(source, offset, codes, row * codeBytes, codeBytes);
+        employeeIds[row] = employeeId;
+        rowByEmployee.put(employeeId, row);
+        table = new Table(codes, employeeIds, row + 1);
+    }
+
+    public boolean remove(long employeeId) {
+        Integer row = rowByEmployee.remove(employeeId);
+        if (row == null) {
+            return false;
+        }
+        Table t = table;
+        int last = t.size() - 1;
+        if (row != last) {
+            System.arraycopy(t.codes(), last * codeBytes, t.codes(), row * codeBytes, codeBytes);
+            t.employeeIds()[row] = t.employeeIds()[last];
+            rowByEmployee.put(t.employeeIds()[row], row);
+        }
+        table = new Table(t.codes(), t.employeeIds(), last);
+        return true;
+    }
+
+    /**
+     * Approximate top-k by asymmetric distance computation; scores are estimates and,
+     * while a removal is in flight, an id may appear twice.
+     */
+    public List<EmbeddingStore.Match> topK(float[] unitQuery, int k) {
+        Table t = table;
+        int limit = Math.min(k, t.size());
+        if (limit <= 0) {
+            return List.of();
+        }
+        float[] lookup = quantizer.lookupTable(unitQuery);
+        byte[] codes = t.codes();
+        long[] employeeIds = t.employeeIds();
+        TopKHeap heap = new TopKHeap(limit);
+        for (int row = 0; row < t.size(); row++) {
+            heap.offer(row, quantizer.score(lookup, codes, row * codeBytes));
+        }
+        return heap.toMatches(row -> employeeIds[row]);
+    }
+}
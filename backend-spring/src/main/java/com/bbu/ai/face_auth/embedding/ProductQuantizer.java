@@ -0,0 +1,166 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Product quantizer (Jégou et al.): the embedding is cut into equal sub-vectors and
+ * each one is replaced by the index of its nearest centroid in a per-subspace
+ * codebook of 256 entries, so a template shrinks to one byte per subspace.
+ * Queries are not quantized: {@link #lookupTable} precomputes the query's dot
+ * product with every centroid, and a stored code is scored with one table lookup
+ * per subspace (asymmetric distance computation).
+ * Immutable once trained.
+ */
+public class ProductQuantizer {
+
+    public static final int CENTROIDS = 256;
+
+    private final int dimension;
+    private final int subspaces;
+    private final int subDimension;
+    // [subspace][centroid][subDimension], flattened
+    private final float[] codebooks;
+
+    private ProductQuantizer(int dimension, int subspaces, float[] codebooks) {
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.subDimension = dimension / subspaces;
+        this.codebooks = codebooks;
+    }
+
+    /**
+     * Trains one k-means codebook per subspace (independently, in parallel) on the samples.
+     */
+    public static ProductQuantizer train(List<float[]> samples, int subspaces, int iterations, long seed) {
+        if (samples.size() < CENTROIDS) {
+            throw new IllegalArgumentException("Product quantization needs at least " + CENTROIDS + " training vectors");
+        }
+        int dimension = samples.get(0).length;
+        if (dimension % subspaces != 0) {
+            throw new IllegalArgumentException("Dimension " + dimension + " is not divisible into " + subspaces + " subspaces");
+        }
+        int subDimension = dimension / subspaces;
+        float[] codebooks = new float[subspaces * CENTROIDS * subDimension];
+        IntStream.range(0, subspaces).parallel().forEach(subspace ->
+                kMeans(samples, subspace * subDimension, subDimension, iterations, new Random(seed + subspace),
+                        codebooks, subspace * CENTROIDS * subDimension));
+        return new ProductQuantizer(dimension, subspaces, codebooks);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int codeBytes() {
+        return subspaces;
+    }
+
+    public long codebookBytes() {
+        return (long) codebooks.length * Float.BYTES;
+    }
+
+    public void encode(float[] vector, byte[] target, int offset) {
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            target[offset + subspace] = (byte) nearest(vector, subspace * subDimension, subDimension,
+                    codebooks, subspace * CENTROIDS * subDimension);
+        }
+    }
+
+    /**
+     * @return query · centroid for every (subspace, centroid), laid out as subspace * 256 + centroid
+     */
+    public float[] lookupTable(float[] query) {
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            int base = subspace * subDimension;
+            int codebook = subspace * CENTROIDS * subDimension;
+            for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+                int c = codebook + centroid * subDimension;
+                float sum = 0f;
+                for (int d = 0; d < subDimension; d++) {
+                    sum += query[base + d] * codebooks[c + d];
+                }
+                table[subspace * CENTROIDS + centroid] = sum;
+            }
+        }
+        return table;
+    }
+
+    // Approximate query · stored vector for the code at `offset`
+    public float score(float[] table, byte[] codes, int offset) {
+        float sum = 0f;
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            sum += table[(subspace << 8) | (codes[offset + subspace] & 0xff)];
+        }
+        return sum;
+    }
+
+    private static void kMeans(List<float[]> samples, int base, int subDimension, int iterations, Random random,
+                               float[] codebooks, int codebook) {
+        int n = samples.size();
+        // Start from distinct random samples
+        int[] order = IntStream.range(0, n).toArray();
+        for (int i = 0; i < CENTROIDS; i++) {
+            int j = i + random.nextInt(n - i);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+            System.arraycopy(samples.get(order[i]), base, codebooks, codebook + i * subDimension, subDimension);
+        }
+
+        int[] assignment = new int[n];
+        float[] sums = new float[CENTROIDS * subDimension];
+        int[] counts = new int[CENTROIDS];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Arrays.fill(sums, 0f);
+            Arrays.fill(counts, 0);
+            boolean changed = false;
+            for (int i = 0; i < n; i++) {
+                float[] sample = samples.get(i);
+                int centroid = nearest(sample, base, subDimension, codebooks, codebook);
+                changed |= iteration == 0 || assignment[i] != centroid;
+                assignment[i] = centroid;
+                counts[centroid]++;
+                for (int d = 0; d < subDimension; d++) {
+                    sums[centroid * subDimension + d] += sample[base + d];
+                }
+            }
+            if (!changed) {
+                break;
+            }
+            for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+                int c = codebook + centroid * subDimension;
+                if (counts[centroid] == 0) {
+                    // Re-seed empty clusters instead of leaving dead codes
+                    System.arraycopy(samples.get(random.nextInt(n)), base, codebooks, c, subDimension);
+                    continue;
+                }
+                for (int d = 0; d < subDimension; d++) {
+                    codebooks[c + d] = sums[centroid * subDimension + d] / counts[centroid];
+                }
+            }
+        }
+    }
+
+    // Nearest centroid by squared L2, which is what k-means minimises
+    private static int nearest(float[] vector, int base, int subDimension, float[] codebooks, int codebook) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+            int c = codebook + centroid * subDimension;
+            float distance = 0f;
+            for (int d = 0; d < subDimension; d++) {
+                float diff = vector[base + d] - codebooks[c + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = centroid;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,46 @@
+package com.bbu.ai.face_auth.embedding;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Only loaded by VectorMath when the incubator module is present
+final class SimdVectorMath {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private SimdVectorMath() {}
+
+    static float dot(float[] query, ByteBuffer rows, int byteOffset) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(query.length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+            FloatVector r = FloatVector.fromByteBuffer(SPECIES, rows, byteOffset + i * Float.BYTES, ByteOrder.LITTLE_ENDIAN);
+            acc = q.fma(r, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < query.length; i++) {
+            sum += query[i] * rows.getFloat(byteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    static float dot(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upper = SPECIES.loopBound(a.length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            acc = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
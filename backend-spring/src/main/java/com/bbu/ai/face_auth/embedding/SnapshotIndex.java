@@ -0,0 +1,356 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copy-on-write embedding index. Readers take the current {@link Snapshot} from an
+ * AtomicReference and scan it without any lock; writers (serialised among
+ * themselves) publish a new snapshot for every change and never touch one that
+ * has been published.
+ * <p>
+ * A snapshot is one large base segment plus a few small delta segments holding
+ * recent enrollments. An enrollment copies only the open tail delta (at most
+ * {@code deltaCapacity} rows); deleted or replaced rows in sealed segments are
+ * hidden by a per-segment dead-row bitset. {@link #mergeDeltas} folds everything
+ * into a new base off to the side and publishes it as the next generation.
+ */
+public class SnapshotIndex implements EmbeddingStore {
+
+    private static final class Segment {
+        final EmbeddingMatrix rows;
+        final long[] dead;
+        final int deadCount;
+        final boolean sealed;
+
+        Segment(EmbeddingMatrix rows, long[] dead, int deadCount, boolean sealed) {
+            this.rows = rows;
+            this.dead = dead;
+            this.deadCount = deadCount;
+            this.sealed = sealed;
+        }
+
+        boolean isDead(int row) {
+            return dead != null && (dead[row >>> 6] & (1L << row)) != 0;
+        }
+
+        int live() {
+            return rows.size() - deadCount;
+        }
+
+        Segment withDead(int row) {
+            long[] copy = dead == null ? new long[(rows.size() + 63) >>> 6] : Arrays.copyOf(dead, dead.length);
+            copy[row >>> 6] |= 1L << row;
+            return new Segment(rows, copy, deadCount + 1, sealed);
+        }
+
+        Segment sealed() {
+            return sealed ? this : new Segment(rows, dead, deadCount, true);
+        }
+    }
+
+    /**
+     * Immutable view of the index; {@code deltas} is oldest first, and only the last
+     * one can be open for appends.
+     */
+    public static final class Snapshot {
+        private final long generation;
+        private final Segment base;
+        private final List<Segment> deltas;
+
+        private Snapshot(long generation, Segment base, List<Segment> deltas) {
+            this.generation = generation;
+            this.base = base;
+            this.deltas = deltas;
+        }
+
+        public long generation() {
+            return generation;
+        }
+
+        public int baseSize() {
+            return base.live();
+        }
+
+        public int[] deltaSizes() {
+            return deltas.stream().mapToInt(Segment::live).toArray();
+        }
+
+        private Segment openTail() {
+            Segment last = deltas.isEmpty() ? null : deltas.get(deltas.size() - 1);
+            return last != null && !last.sealed ? last : null;
+        }
+    }
+
+    // Segment index -1 is the base
+    private record Location(int segment, int row) {}
+
+    private final int dimension;
+    private final int deltaCapacity;
+    private final AtomicReference<Snapshot> current;
+    private final Object writeLock = new Object();
+    private final Object mergeLock = new Object();
+    // Ids written while a merge is copying rows, guarded by writeLock
+    private Set<Long> mergeDirty;
+
+    public SnapshotIndex(int dimension, int deltaCapacity) {
+        this.dimension = dimension;
+        this.deltaCapacity = Math.max(1, deltaCapacity);
+        Segment empty = new Segment(new EmbeddingMatrix(dimension, 16), null, 0, true);
+        this.current = new AtomicReference<>(new Snapshot(0, empty, List.of()));
+    }
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return size(current.get());
+    }
+
+    @Override
+    public long offHeapBytes() {
+        Snapshot snapshot = current.get();
+        long bytes = snapshot.base.rows.offHeapBytes();
+        for (Segment delta : snapshot.deltas) {
+            bytes += delta.rows.offHeapBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean contains(long employeeId) {
+        return locate(current.get(), employeeId) != null;
+    }
+
+    @Override
+    public float[] get(long employeeId) {
+        Snapshot snapshot = current.get();
+        Location location = locate(snapshot, employeeId);
+        return location == null ? null : segment(snapshot, location.segment()).rows.get(employeeId);
+    }
+
+    @Override
+    public float score(float[] unitQuery, long employeeId) {
+        Snapshot snapshot = current.get();
+        Location location = locate(snapshot, employeeId);
+        return location == null ? Float.NaN : segment(snapshot, location.segment()).rows.score(unitQuery, employeeId);
+    }
+
+    @Override
+    public long[] employeeIds() {
+        Snapshot snapshot = current.get();
+        long[] ids = new long[size(snapshot)];
+        int i = 0;
+        for (Segment segment : segments(snapshot)) {
+            long[] rows = segment.rows.employeeIds();
+            for (int row = 0; row < rows.length; row++) {
+                if (!segment.isDead(row)) {
+                    ids[i++] = rows[row];
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Match> topK(float[] unitQuery, int k) {
+        Snapshot snapshot = current.get();
+        List<Match> matches = new ArrayList<>(snapshot.base.rows.topK(unitQuery, k, snapshot.base.dead));
+        for (Segment delta : snapshot.deltas) {
+            matches.addAll(delta.rows.topK(unitQuery, k, delta.dead));
+        }
+        matches.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return matches.size() > k ? List.copyOf(matches.subList(0, k)) : matches;
+    }
+
+    @Override
+    public void put(long employeeId, float[] unitVector) {
+        synchronized (writeLock) {
+            Snapshot snapshot = current.get();
+            Segment base = snapshot.base;
+            List<Segment> deltas = new ArrayList<>(snapshot.deltas);
+            Segment tail = snapshot.openTail();
+
+            Location location = locate(snapshot, employeeId);
+            if (location != null && segment(snapshot, location.segment()) != tail) {
+                if (location.segment() < 0) {
+                    base = base.withDead(location.row());
+                } else {
+                    deltas.set(location.segment(), deltas.get(location.segment()).withDead(location.row()));
+                }
+            }
+
+            EmbeddingMatrix rows = tail == null
+                    ? new EmbeddingMatrix(dimension, Math.min(deltaCapacity, 64))
+                    : tail.rows.copy(tail.rows.size() + 1);
+            rows.put(employeeId, unitVector);
+            Segment newTail = new Segment(rows, null, 0, rows.size() >= deltaCapacity);
+            if (tail == null) {
+                deltas.add(newTail);
+            } else {
+                deltas.set(deltas.size() - 1, newTail);
+            }
+
+            if (mergeDirty != null) {
+                mergeDirty.add(employeeId);
+            }
+            current.set(new Snapshot(snapshot.generation, base, List.copyOf(deltas)));
+        }
+    }
+
+    @Override
+    public boolean remove(long employeeId) {
+        synchronized (writeLock) {
+            Snapshot snapshot = current.get();
+            Location location = locate(snapshot, employeeId);
+            if (location == null) {
+                return false;
+            }
+            Segment base = snapshot.base;
+            List<Segment> deltas = new ArrayList<>(snapshot.deltas);
+            Segment segment = segment(snapshot, location.segment());
+            if (segment == snapshot.openTail()) {
+                // The open tail is copied anyway, so drop the row for real
+                EmbeddingMatrix rows = segment.rows.copy(segment.rows.size());
+                rows.remove(employeeId);
+                deltas.set(location.segment(), new Segment(rows, null, 0, false));
+            } else if (location.segment() < 0) {
+                base = base.withDead(location.row());
+            } else {
+                deltas.set(location.segment(), segment.withDead(location.row()));
+            }
+
+            if (mergeDirty != null) {
+                mergeDirty.add(employeeId);
+            }
+            current.set(new Snapshot(snapshot.generation, base, List.copyOf(deltas)));
+            return true;
+        }
+    }
+
+    @Override
+    public void replaceAll(long[] employeeIds, List<float[]> unitVectors) {
+        synchronized (mergeLock) {
+            EmbeddingMatrix rows = new EmbeddingMatrix(dimension, employeeIds.length);
+            rows.replaceAll(employeeIds, unitVectors);
+            synchronized (writeLock) {
+                Snapshot snapshot = current.get();
+                current.set(new Snapshot(snapshot.generation + 1, new Segment(rows, null, 0, true), List.of()));
+            }
+        }
+    }
+
+    public boolean needsMerge(int maxDeltaRows, double maxDeadRatio) {
+        Snapshot snapshot = current.get();
+        int deltaRows = 0;
+        int deadRows = snapshot.base.deadCount;
+        for (Segment delta : snapshot.deltas) {
+            deltaRows += delta.rows.size();
+            deadRows += delta.deadCount;
+        }
+        return deltaRows >= maxDeltaRows || deadRows > Math.max(16, size(snapshot) * maxDeadRatio);
+    }
+
+    /**
+     * Folds every delta (and drops every dead row) into a new base segment. Row copying
+     * happens without blocking writers; writes that land meanwhile stay in the deltas
+     * created after the merge started, and rows they superseded are re-hidden in the
+     * new base before it is published.
+     *
+     * @return false when there was nothing to merge
+     */
+    public boolean mergeDeltas() {
+        synchronized (mergeLock) {
+            Snapshot start;
+            synchronized (writeLock) {
+                Snapshot snapshot = current.get();
+                if (snapshot.deltas.isEmpty() && snapshot.base.deadCount == 0) {
+                    return false;
+                }
+                // Seal the tail so new enrollments go to a delta this merge leaves alone
+                Segment tail = snapshot.openTail();
+                if (tail != null) {
+                    List<Segment> deltas = new ArrayList<>(snapshot.deltas);
+                    deltas.set(deltas.size() - 1, tail.sealed());
+                    snapshot = new Snapshot(snapshot.generation, snapshot.base, List.copyOf(deltas));
+                    current.set(snapshot);
+                }
+                start = snapshot;
+                mergeDirty = new HashSet<>();
+            }
+
+            try {
+                EmbeddingMatrix merged = new EmbeddingMatrix(dimension, size(start));
+                for (Segment segment : segments(start)) {
+                    long[] ids = segment.rows.employeeIds();
+                    for (int row = 0; row < ids.length; row++) {
+                        if (!segment.isDead(row)) {
+                            merged.putRow(ids[row], segment.rows, row);
+                        }
+                    }
+                }
+
+                synchronized (writeLock) {
+                    Snapshot snapshot = current.get();
+                    Segment base = new Segment(merged, null, 0, true);
+                    for (long employeeId : mergeDirty) {
+                        int row = merged.rowOf(employeeId);
+                        if (row >= 0) {
+                            base = base.withDead(row);
+                        }
+                    }
+                    List<Segment> remaining = snapshot.deltas.subList(start.deltas.size(), snapshot.deltas.size());
+                    current.set(new Snapshot(start.generation + 1, base, List.copyOf(remaining)));
+                }
+                return true;
+            } finally {
+                synchronized (writeLock) {
+                    mergeDirty = null;
+                }
+            }
+        }
+    }
+
+    private static int size(Snapshot snapshot) {
+        int size = snapshot.base.live();
+        for (Segment delta : snapshot.deltas) {
+            size += delta.live();
+        }
+        return size;
+    }
+
+    // Base first, then deltas oldest to newest
+    private static List<Segment> segments(Snapshot snapshot) {
+        List<Segment> segments = new ArrayList<>(snapshot.deltas.size() + 1);
+        segments.add(snapshot.base);
+        segments.addAll(snapshot.deltas);
+        return segments;
+    }
+
+    private static Segment segment(Snapshot snapshot, int index) {
+        return index < 0 ? snapshot.base : snapshot.deltas.get(index);
+    }
+
+    // An id has at most one live row, so the newest segment holding it wins
+    private static Location locate(Snapshot snapshot, long employeeId) {
+        for (int i = snapshot.deltas.size() - 1; i >= -1; i--) {
+            Segment segment = segment(snapshot, i);
+            int row = segment.rows.rowOf(employeeId);
+            if (row >= 0 && !segment.isDead(row)) {
+                return new Location(i, row);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Min-heap of the best `limit` rows seen so far, shared by the exact-scan stores
+final class TopKHeap {
+
+    private final float[] scores;
+    private final int[] rows;
+    private int size;
+
+    TopKHeap(int limit) {
+        this.scores = new float[limit];
+        this.rows = new int[limit];
+    }
+
+    void offer(int row, float score) {
+        if (size < scores.length) {
+            scores[size] = score;
+            rows[size] = row;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            scores[0] = score;
+            rows[0] = row;
+            siftDown();
+        }
+    }
+
+    interface RowIds {
+        long idOf(int row);
+    }
+
+    List<EmbeddingStore.Match> toMatches(RowIds ids) {
+        List<EmbeddingStore.Match> matches = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            matches.add(new EmbeddingStore.Match(ids.idOf(rows[i]), scores[i]));
+        }
+        matches.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return matches;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[parent] <= scores[i]) {
+                break;
+            }
+            swap(parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown() {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            int right = left + 1;
+            int smallest = i;
+            if (left < size && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (right < size && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                break;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+        int r = rows[a];
+        rows[a] = rows[b];
+        rows[b] = r;
+    }
+}
@@ -0,0 +1,149 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Dot products over embeddings. Uses the jdk.incubator.vector SIMD path when the
+ * JVM was started with --add-modules jdk.incubator.vector, and a scalar loop otherwise.
+ * Stored vectors are little-endian float32 rows inside a (usually direct) ByteBuffer.
+ */
+public final class VectorMath {
+
+    private static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private VectorMath() {}
+
+    public static boolean simdEnabled() {
+        return SIMD;
+    }
+
+    public static float dot(float[] query, ByteBuffer rows, int byteOffset) {
+        if (SIMD) {
+            return SimdVectorMath.dot(query, rows, byteOffset);
+        }
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * rows.getFloat(byteOffset + i * Float.BYTES);
+        }
+        return sum;
+    }
+
+    /**
+     * Dot product against a little-endian IEEE 754 half-precision row.
+     */
+    public static float dotHalf(float[] query, ByteBuffer rows, int byteOffset) {
+        float[] table = HalfTable.VALUES;
+        float sum = 0f;
+        for (int i = 0; i < query.length; i++) {
+            sum += query[i] * table[rows.getShort(byteOffset + i * Short.BYTES) & 0xffff];
+        }
+        return sum;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        if (SIMD) {
+            return SimdVectorMath.dot(a, b);
+        }
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return a unit-length copy, so that dot products between stored vectors are cosine scores
+     */
+    public static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            throw new IllegalArgumentException("Embedding must not be all zeros");
+        }
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    public static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] fromBytes(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    // Java 17 has no Float.floatToFloat16, so round-to-nearest-even by hand
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+        if (exponent == 0xff) {
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+        if (halfExponent <= 0) {
+            if (halfExponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int midpoint = 1 << (shift - 1);
+            if (remainder > midpoint || (remainder == midpoint && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (halfExponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1fff;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    public static float fromHalf(short value) {
+        return HalfTable.VALUES[value & 0xffff];
+    }
+
+    private static float decodeHalf(int bits) {
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+        if (exponent == 0) {
+            float magnitude = mantissa * 0x1p-24f;
+            return sign != 0 ? -magnitude : magnitude;
+        }
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    // 256 KB decode table, only built once a float16 store is actually used
+    private static final class HalfTable {
+        static final float[] VALUES = new float[1 << 16];
+
+        static {
+            for (int i = 0; i < VALUES.length; i++) {
+                VALUES[i] = decodeHalf(i);
+            }
+        }
+    }
+}
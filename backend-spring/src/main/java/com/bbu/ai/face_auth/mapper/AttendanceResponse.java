@@ -1,9 +1,15 @@
 package com.bbu.ai.face_auth.mapper;
 
-import com.bbu.ai.face_auth.models.Employee;
+import com.bbu.ai.face_auth.models.Attendance;
+import com.bbu.ai.face_auth.models.EnumAttendanceStatus;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 
+/**
+ * Minutes are stored as integers; {@code overTime} is their "2h 15m" rendering for
+ * display, produced only here.
+ */
 public record AttendanceResponse(
         Long id,
         Long employeeId,
@@ -13,7 +19,59 @@ public record AttendanceResponse(
         String status,
         String note,
         String overTime,
+        Integer workedMinutes,
+        Integer overtimeMinutes,
         String location,
         LocalDateTime createdAt,
         LocalDateTime updatedAt
-) {}
+) {
+
+    /**
+     * Target of the JPQL constructor expressions in AttendanceRepository, which select
+     * the entity's column types as they are.
+     */
+    public AttendanceResponse(Long id, Long employeeId, String employeeName, LocalDateTime checkIn,
+                              LocalDateTime checkOut, EnumAttendanceStatus status, String note,
+                              Integer workedMinutes, Integer overtimeMinutes, String location,
+                              Timestamp createdAt, Timestamp updatedAt) {
+        this(id, employeeId, employeeName, checkIn, checkOut, status == null ? null : status.name(), note,
+                formatMinutes(overtimeMinutes), workedMinutes, overtimeMinutes, location,
+                toLocalDateTime(createdAt), toLocalDateTime(updatedAt));
+    }
+
+    // The employee must be loaded, or loadable in the current session
+    public static AttendanceResponse from(Attendance attendance) {
+        return from(attendance, attendance.getEmployee().getName());
+    }
+
+    // For a write whose employee is only a reference; its name is already known
+    public static AttendanceResponse from(Attendance attendance, String employeeName) {
+        return new AttendanceResponse(
+                attendance.getId(),
+                attendance.getEmployee().getId(),
+                employeeName,
+                attendance.getCheckIn(),
+                attendance.getCheckOut(),
+                attendance.getStatus(),
+                attendance.getNote(),
+                attendance.getWorkedMinutes(),
+                attendance.getOvertimeMinutes(),
+                attendance.getLocation(),
+                attendance.getCreatedAt(),
+                attendance.getUpdatedAt()
+        );
+    }
+
+    // "2h 15m"; null for a session that has not been checked out
+    public static String formatMinutes(Integer minutes) {
+        return minutes == null ? null : formatMinutes(minutes.longValue());
+    }
+
+    public static String formatMinutes(long minutes) {
+        return minutes / 60 + "h " + minutes % 60 + "m";
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
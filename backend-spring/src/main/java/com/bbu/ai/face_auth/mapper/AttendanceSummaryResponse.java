@@ -0,0 +1,38 @@
+package com.bbu.ai.face_auth.mapper;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Read models for the attendance summary endpoints. Minutes only count completed
+ * sessions; overtime is the part of a session beyond the standard eight hours.
+ */
+public final class AttendanceSummaryResponse {
+
+    private AttendanceSummaryResponse() {
+    }
+
+    public record Daily(
+            long employeeId,
+            String employeeName,
+            String department,
+            LocalDate day,
+            long sessions,
+            long completedSessions,
+            long workedMinutes,
+            long overtimeMinutes,
+            long lateSessions
+    ) {}
+
+    // department is "" for employees without one, and null on the company total
+    public record Department(
+            String department,
+            long sessions,
+            long completedSessions,
+            long workedMinutes,
+            long overtimeMinutes,
+            long lateSessions
+    ) {}
+
+    public record Monthly(String month, List<Department> departments, Department total) {}
+}
@@ -0,0 +1,21 @@
+package com.bbu.ai.face_auth.mapper;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one row of a bulk user import. {@code row} counts data rows from 1.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkUserResult(int row, String username, String status, Long id, String error) {
+
+    public static final String CREATED = "created";
+    public static final String FAILED = "failed";
+
+    public static BulkUserResult created(int row, String username, long id) {
+        return new BulkUserResult(row, username, CREATED, id, null);
+    }
+
+    public static BulkUserResult failed(int row, String username, String error) {
+        return new BulkUserResult(row, username, FAILED, null, error);
+    }
+}
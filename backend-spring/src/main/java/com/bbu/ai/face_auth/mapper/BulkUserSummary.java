@@ -0,0 +1,14 @@
+package com.bbu.ai.face_auth.mapper;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Totals of a bulk user import. {@code results} is only filled for the buffered JSON
+ * response; the streamed variant has already sent every row by the time this is written.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkUserSummary(int processed, int created, int failed, long elapsedMillis,
+                              List<BulkUserResult> results) {
+}
@@ -0,0 +1,10 @@
+package com.bbu.ai.face_auth.mapper;
+
+import java.util.List;
+
+/**
+ * One window of a keyset-paginated listing. Pass {@code nextCursor} back as
+ * {@code cursor} for the following window; it is null on the last one.
+ */
+public record CursorSlice<T>(List<T> content, int size, boolean hasNext, String nextCursor) {
+}
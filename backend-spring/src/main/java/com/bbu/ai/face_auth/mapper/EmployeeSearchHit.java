@@ -0,0 +1,8 @@
+package com.bbu.ai.face_auth.mapper;
+
+/**
+ * One typeahead match, already in rank order. {@code score} is the trigram word
+ * similarity of the query to the name, from 0 to 1.
+ */
+public record EmployeeSearchHit(Long id, String name, String department, String imageUrl, double score) {
+}
@@ -0,0 +1,12 @@
+package com.bbu.ai.face_auth.mapper;
+
+import java.util.List;
+
+public record FaceMatchResponse(
+        boolean recognized,
+        Long employeeId,
+        float threshold,
+        List<Match> matches
+) {
+    public record Match(long employeeId, float score) {}
+}
@@ -12,6 +12,8 @@ public class LoginResponse {
 
     private long expiresIn;
 
+    private String refreshToken;
+
     void setExpiresIn(long second){
         this.expiresIn  = second;
     }
@@ -0,0 +1,26 @@
+package com.bbu.ai.face_auth.mapper;
+
+/**
+ * Worked and overtime totals over a date range, for one employee or one department
+ * (employeeId and employeeName are then null; department is "" for employees without
+ * one). The minute counts are the stored integers; {@code worked} and {@code overtime}
+ * render them for display.
+ */
+public record OvertimeRollup(
+        Long employeeId,
+        String employeeName,
+        String department,
+        long sessions,
+        long completedSessions,
+        long workedMinutes,
+        long overtimeMinutes,
+        String worked,
+        String overtime
+) {
+
+    public OvertimeRollup(Long employeeId, String employeeName, String department, long sessions,
+                          long completedSessions, long workedMinutes, long overtimeMinutes) {
+        this(employeeId, employeeName, department, sessions, completedSessions, workedMinutes, overtimeMinutes,
+                AttendanceResponse.formatMinutes(workedMinutes), AttendanceResponse.formatMinutes(overtimeMinutes));
+    }
+}
@@ -0,0 +1,16 @@
+package com.bbu.ai.face_auth.mapper;
+
+/**
+ * Result of a recognize-and-mark round trip. {@code attendance} is null when no face
+ * was recognized; {@code timings} shows where the gate latency went.
+ */
+public record RecognizeResponse(
+        boolean recognized,
+        Long employeeId,
+        double score,
+        String message,
+        AttendanceResponse attendance,
+        Timings timings
+) {
+    public record Timings(double mlMillis, double markMillis, double totalMillis) {}
+}
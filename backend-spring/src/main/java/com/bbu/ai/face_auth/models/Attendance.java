@@ -13,7 +13,13 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
-@Table(name = "attendances")
+@Table(name = "attendances", indexes = {
+        @Index(name = "idx_attendances_check_in_id", columnList = "check_in, id"),
+        @Index(name = "idx_attendances_employee_check_in_id", columnList = "employee_id, check_in, id"),
+        // Covers the overtime rollups so a date range is answered from the index alone
+        @Index(name = "idx_attendances_check_in_minutes",
+                columnList = "check_in, employee_id, overtime_minutes, worked_minutes")
+})
 @Entity
 public class Attendance {
     @Id
@@ -25,8 +31,11 @@ public class Attendance {
     private EnumAttendanceStatus status;
     @Column(columnDefinition = "TEXT",nullable = true)
     private String note;
+    // Both set on check-out; see AttendanceMinutes
     @Column(nullable = true)
-    private String overTime;
+    private Integer workedMinutes;
+    @Column(nullable = true)
+    private Integer overtimeMinutes;
     @Column(nullable = true)
     private String location;
 
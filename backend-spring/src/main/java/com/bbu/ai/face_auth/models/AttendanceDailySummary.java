@@ -0,0 +1,43 @@
+package com.bbu.ai.face_auth.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Per employee and check-in day totals, kept up to date by AttendanceSummaryService
+ * alongside every attendance write. A session belongs to the day it was checked in.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Table(name = "attendance_daily_summary", indexes = {
+        @Index(name = "idx_attendance_daily_summary_day", columnList = "day")
+})
+@Entity
+@IdClass(AttendanceDailySummary.Key.class)
+public class AttendanceDailySummary {
+
+    @Id
+    private Long employeeId;
+    @Id
+    private LocalDate day;
+    private int sessions;
+    // Sessions with a check-out; only these count towards worked and overtime minutes
+    private int completedSessions;
+    private long workedMinutes;
+    private long overtimeMinutes;
+    private int lateSessions;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Key implements Serializable {
+        private Long employeeId;
+        private LocalDate day;
+    }
+}
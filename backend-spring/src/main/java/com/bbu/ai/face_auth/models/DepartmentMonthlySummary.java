@@ -0,0 +1,42 @@
+package com.bbu.ai.face_auth.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Per department and month totals, the sum of the daily summaries of the employees
+ * currently in the department. {@code month} is the first day of the month and an
+ * employee without a department is filed under the empty string.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Table(name = "department_monthly_summary")
+@Entity
+@IdClass(DepartmentMonthlySummary.Key.class)
+public class DepartmentMonthlySummary {
+
+    @Id
+    @Column(length = 255)
+    private String department;
+    @Id
+    private LocalDate month;
+    private int sessions;
+    private int completedSessions;
+    private long workedMinutes;
+    private long overtimeMinutes;
+    private int lateSessions;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Key implements Serializable {
+        private String department;
+        private LocalDate month;
+    }
+}
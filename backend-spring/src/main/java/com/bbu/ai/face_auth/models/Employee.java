@@ -9,7 +9,9 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "employees", uniqueConstraints = {
+@Table(name = "employees", indexes = {
+        @Index(name = "idx_employees_name_id", columnList = "name, id")
+}, uniqueConstraints = {
         @UniqueConstraint(columnNames = "user_id")
 })
 @Data
@@ -40,7 +42,10 @@ public class Employee {
     @UpdateTimestamp
     private Timestamp updatedAt;
 
-    @OneToOne
+    // Lazy: listings only need the id, which the proxy carries without a load
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", unique = true, nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
 }
@@ -0,0 +1,31 @@
+package com.bbu.ai.face_auth.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.sql.Timestamp;
+
+/**
+ * Normalized face embedding of one employee, stored as little-endian float32 bytes.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Table(name = "face_templates")
+@Entity
+public class FaceTemplate {
+    @Id
+    private Long employeeId;
+    private int dimension;
+    @Column(nullable = false)
+    private byte[] embedding;
+
+    @CreationTimestamp
+    private Timestamp createdAt;
+    @UpdateTimestamp
+    private Timestamp updatedAt;
+}
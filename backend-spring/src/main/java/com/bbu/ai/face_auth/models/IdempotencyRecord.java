@@ -0,0 +1,30 @@
+package com.bbu.ai.face_auth.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Table(name = "idempotency_keys")
+@Entity
+public class IdempotencyRecord {
+    @Id
+    @Column(name = "idempotency_key", length = 200)
+    private String key;
+    // Null while the first request is still running
+    @Column(nullable = true)
+    private Integer statusCode;
+    @Column(columnDefinition = "TEXT", nullable = true)
+    private String responseBody;
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+    // Also identifies the claim, so only its owner completes or releases it
+    private LocalDateTime createdAt;
+    // An unfinished claim older than this may be taken over
+    private LocalDateTime inFlightUntil;
+}
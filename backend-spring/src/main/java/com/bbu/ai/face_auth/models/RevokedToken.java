@@ -0,0 +1,26 @@
+package com.bbu.ai.face_auth.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Table(name = "revoked_tokens")
+@Entity
+public class RevokedToken {
+    // The token's jti claim
+    @Id
+    @Column(length = 64)
+    private String tokenId;
+    @Column(length = 20)
+    private String username;
+    // The token's own exp; the row is useless after it and gets pruned
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+    private LocalDateTime revokedAt;
+}
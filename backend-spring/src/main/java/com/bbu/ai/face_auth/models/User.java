@@ -57,6 +57,10 @@ public class User implements UserDetails {
     )
     private Set<UserRole> roles = new HashSet<>();
 
+    // Bumped whenever credentials or roles change; tokens carrying an older version are refused on refresh
+    @Column(nullable = false, columnDefinition = "integer not null default 0")
+    private int securityVersion;
+
 
     public  User(String username, String email, String password, String name, String phoneNumber){
         this.username = username;
@@ -1,16 +1,78 @@
 package com.bbu.ai.face_auth.repository;
 
+import com.bbu.ai.face_auth.mapper.AttendanceResponse;
 import com.bbu.ai.face_auth.models.Attendance;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
-    Page<Attendance> findByEmployeeId(long employeeId, Pageable pageable);
+
+    // Listing rows straight into the response with one join, instead of loading each
+    // Attendance and then its lazy Employee (and that employee's user and roles). The
+    // TEXT note is only sent back when asked for.
+    String RESPONSE = "select new com.bbu.ai.face_auth.mapper.AttendanceResponse(" +
+            "a.id, e.id, e.name, a.checkIn, a.checkOut, a.status, " +
+            "case when :includeNote = true then a.note else null end, " +
+            "a.workedMinutes, a.overtimeMinutes, a.location, a.createdAt, a.updatedAt) " +
+            "from Attendance a join a.employee e";
+
+    @Query(value = RESPONSE, countQuery = "select count(a) from Attendance a")
+    Page<AttendanceResponse> findResponses(@Param("includeNote") boolean includeNote, Pageable pageable);
+
+    // Fetches one extra row to tell whether there is a next page, and runs no count
+    @Query(RESPONSE)
+    Slice<AttendanceResponse> findResponseSlice(@Param("includeNote") boolean includeNote, Pageable pageable);
+
+    @Query(value = RESPONSE + " where e.id = :employeeId",
+            countQuery = "select count(a) from Attendance a where a.employee.id = :employeeId")
+    Page<AttendanceResponse> findResponsesByEmployeeId(@Param("employeeId") long employeeId,
+                                                       @Param("includeNote") boolean includeNote, Pageable pageable);
+
+    @Query(RESPONSE + " where e.id = :employeeId")
+    Slice<AttendanceResponse> findResponseSliceByEmployeeId(@Param("employeeId") long employeeId,
+                                                            @Param("includeNote") boolean includeNote,
+                                                            Pageable pageable);
+
+    // Keyset windows, newest first, backed by (check_in, id) and (employee_id, check_in, id).
+    // The row-value comparison lets Postgres seek straight past the cursor row.
+    @Query(RESPONSE + " order by a.checkIn desc, a.id desc")
+    List<AttendanceResponse> scrollResponses(@Param("includeNote") boolean includeNote, Limit limit);
+
+    @Query(RESPONSE + " where (a.checkIn, a.id) < (:checkIn, :id) order by a.checkIn desc, a.id desc")
+    List<AttendanceResponse> scrollResponsesAfter(@Param("checkIn") LocalDateTime checkIn, @Param("id") long id,
+                                                  @Param("includeNote") boolean includeNote, Limit limit);
+
+    @Query(RESPONSE + " where e.id = :employeeId order by a.checkIn desc, a.id desc")
+    List<AttendanceResponse> scrollResponsesByEmployeeId(@Param("employeeId") long employeeId,
+                                                         @Param("includeNote") boolean includeNote, Limit limit);
+
+    @Query(RESPONSE + " where e.id = :employeeId and (a.checkIn, a.id) < (:checkIn, :id) " +
+            "order by a.checkIn desc, a.id desc")
+    List<AttendanceResponse> scrollResponsesByEmployeeIdAfter(@Param("employeeId") long employeeId,
+                                                              @Param("checkIn") LocalDateTime checkIn,
+                                                              @Param("id") long id,
+                                                              @Param("includeNote") boolean includeNote,
+                                                              Limit limit);
+
     Optional<Attendance> findTopByEmployeeIdAndCheckOutIsNullOrderByCheckInDesc(Long employeeId);
 
+    // The check-in bounds let a partitioned table prune to one month
+    Optional<Attendance> findByIdAndCheckInBetween(Long id, LocalDateTime from, LocalDateTime to);
+
+    // Ordered by checkIn so the latest open session per employee wins when loaded into a map
+    @Query("select a.employee.id as employeeId, a.id as attendanceId, a.checkIn as checkIn " +
+            "from Attendance a where a.checkOut is null order by a.checkIn")
+    List<OpenAttendanceView> findOpenSessions();
+
 }
@@ -1,15 +1,39 @@
 package com.bbu.ai.face_auth.repository;
 
+import com.bbu.ai.face_auth.dto.EmployeeDTO;
 import com.bbu.ai.face_auth.models.Employee;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface EmployeeRepository extends JpaRepository<Employee, Long> {
-    Page<Employee> findByNameContaining(String name, Pageable pageable);
+    // Listings are projected, so no entity (or user) is hydrated per row
+    String DTO = "select new com.bbu.ai.face_auth.dto.EmployeeDTO(" +
+            "e.id, e.name, e.dob, e.gender, e.imageUrl, e.department, e.user.id) from Employee e";
+
+    @Query(value = DTO + " where e.name like concat('%', :name, '%')",
+            countQuery = "select count(e) from Employee e where e.name like concat('%', :name, '%')")
+    Page<EmployeeDTO> pageByName(@Param("name") String name, Pageable pageable);
+
+    @Query(DTO + " where e.name like concat('%', :name, '%')")
+    Slice<EmployeeDTO> sliceByName(@Param("name") String name, Pageable pageable);
+
+    // Keyset windows by (name, id), backed by the matching index
+    @Query(DTO + " where e.name like concat('%', :name, '%') order by e.name, e.id")
+    List<EmployeeDTO> scrollByName(@Param("name") String name, Limit limit);
+
+    @Query(DTO + " where e.name like concat('%', :name, '%') and (e.name, e.id) > (:afterName, :afterId) " +
+            "order by e.name, e.id")
+    List<EmployeeDTO> scrollByNameAfter(@Param("name") String name, @Param("afterName") String afterName,
+                                        @Param("afterId") long afterId, Limit limit);
     Optional<Employee> findByUserId(Long userId);
 }
@@ -0,0 +1,16 @@
+package com.bbu.ai.face_auth.repository;
+
+import com.bbu.ai.face_auth.models.FaceTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FaceTemplateRepository extends JpaRepository<FaceTemplate, Long> {
+
+    // Ids only, so startup can check the embedding file without reading every embedding
+    @Query("select f.employeeId from FaceTemplate f")
+    List<Long> findAllEmployeeIds();
+}
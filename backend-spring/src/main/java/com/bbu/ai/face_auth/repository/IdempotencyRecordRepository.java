@@ -0,0 +1,49 @@
+package com.bbu.ai.face_auth.repository;
+
+import com.bbu.ai.face_auth.models.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Returns 1 when the key is new, its previous use has expired or its unfinished claim's
+    // lease has lapsed; 0 when another request owns it
+    @Transactional
+    @Modifying
+    @Query(value = "insert into idempotency_keys " +
+            "(idempotency_key, status_code, response_body, expires_at, created_at, in_flight_until) " +
+            "values (:key, null, null, :expiresAt, :now, :leaseUntil) " +
+            "on conflict (idempotency_key) do update set status_code = null, response_body = null, " +
+            "expires_at = excluded.expires_at, created_at = excluded.created_at, " +
+            "in_flight_until = excluded.in_flight_until " +
+            "where idempotency_keys.expires_at < :now or (idempotency_keys.status_code is null " +
+            "and (idempotency_keys.in_flight_until is null or idempotency_keys.in_flight_until < :now))",
+            nativeQuery = true)
+    int claim(@Param("key") String key, @Param("expiresAt") LocalDateTime expiresAt,
+              @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+
+    // claimedAt is the claim's created_at; 0 when the claim was taken over meanwhile
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyRecord r set r.statusCode = :statusCode, r.responseBody = :responseBody, " +
+            "r.inFlightUntil = null where r.key = :key and r.createdAt = :claimedAt")
+    int complete(@Param("key") String key, @Param("claimedAt") LocalDateTime claimedAt,
+                 @Param("statusCode") int statusCode, @Param("responseBody") String responseBody);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.key = :key and r.createdAt = :claimedAt and r.statusCode is null")
+    int release(@Param("key") String key, @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,9 @@
+package com.bbu.ai.face_auth.repository;
+
+import java.time.LocalDateTime;
+
+public interface OpenAttendanceView {
+    Long getEmployeeId();
+    Long getAttendanceId();
+    LocalDateTime getCheckIn();
+}
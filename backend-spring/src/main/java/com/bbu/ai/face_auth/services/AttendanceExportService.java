@@ -0,0 +1,265 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.models.EnumAttendanceStatus;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams attendance rows for payroll straight from a forward-only cursor to the
+ * response. Postgres only honours the fetch size inside a transaction, so the query
+ * runs in a read-only one; rows are then pulled a batch at a time and written
+ * through a buffered encoder, keeping memory flat however long the range is.
+ */
+@Service
+public class AttendanceExportService {
+
+    private static final Logger logger = LogManager.getLogger(AttendanceExportService.class);
+
+    public enum Format { CSV, NDJSON }
+
+    /**
+     * @param from first day, inclusive
+     * @param to last day, inclusive
+     * @param department exact department, or null for all
+     * @param employeeId a single employee, or null for all
+     */
+    public record Filter(LocalDate from, LocalDate to, String department, Long employeeId) {}
+
+    private static final String[] COLUMNS = {"attendanceId", "employeeId", "employeeName", "department",
+            "checkIn", "checkOut", "status", "workedMinutes", "overtimeMinutes", "location", "note"};
+    private static final EnumAttendanceStatus[] STATUSES = EnumAttendanceStatus.values();
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    private final Counter rowCounter;
+    private final Timer exportTimer;
+
+    public AttendanceExportService(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${attendance.export.fetch-size:1000}") int fetchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = Math.max(1, fetchSize);
+
+        this.rowCounter = Counter.builder("attendance.export.rows")
+                .description("Attendance rows written by exports")
+                .register(meterRegistry);
+        this.exportTimer = Timer.builder("attendance.export")
+                .description("Time to stream one attendance export")
+                .register(meterRegistry);
+    }
+
+    public void export(Filter filter, Format format, OutputStream out) {
+        StringBuilder sql = new StringBuilder("select a.id, a.employee_id, e.name, e.department, a.check_in, " +
+                "a.check_out, a.status, a.worked_minutes, a.overtime_minutes, a.location, a.note " +
+                "from attendances a join employees e on e.id = a.employee_id " +
+                "where a.check_in >= ? and a.check_in < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(filter.from().atStartOfDay()));
+        args.add(Timestamp.valueOf(filter.to().plusDays(1).atStartOfDay()));
+        if (filter.department() != null) {
+            sql.append(" and e.department = ?");
+            args.add(filter.department());
+        }
+        if (filter.employeeId() != null) {
+            sql.append(" and a.employee_id = ?");
+            args.add(filter.employeeId());
+        }
+        sql.append(" order by a.check_in, a.id");
+
+        long started = System.nanoTime();
+        long[] rows = new long[1];
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+        try {
+            RowEncoder encoder = format == Format.NDJSON ? new NdjsonEncoder(writer) : new CsvEncoder(writer);
+            encoder.begin();
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < args.size(); i++) {
+                    ps.setObject(i + 1, args.get(i));
+                }
+                return ps;
+            }, rs -> {
+                try {
+                    encoder.row(rs);
+                } catch (IOException e) {
+                    // Usually the client went away; abandon the cursor
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }));
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            rowCounter.increment(rows[0]);
+            long elapsedNanos = System.nanoTime() - started;
+            exportTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            logger.info("Attendance export {} {}..{} dept={} employee={}: {} rows in {} ms", format,
+                    filter.from(), filter.to(), filter.department(), filter.employeeId(), rows[0],
+                    elapsedNanos / 1_000_000);
+        }
+    }
+
+    private interface RowEncoder {
+        void begin() throws IOException;
+
+        void row(ResultSet rs) throws SQLException, IOException;
+    }
+
+    private static String status(ResultSet rs) throws SQLException {
+        int ordinal = rs.getInt(7);
+        return rs.wasNull() || ordinal < 0 || ordinal >= STATUSES.length ? null : STATUSES[ordinal].name();
+    }
+
+    private static String timestamp(ResultSet rs, int column) throws SQLException {
+        Timestamp value = rs.getTimestamp(column);
+        return value == null ? null : value.toLocalDateTime().toString();
+    }
+
+    private static final class CsvEncoder implements RowEncoder {
+
+        private final Writer writer;
+
+        CsvEncoder(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(2)));
+            writer.write(',');
+            field(rs.getString(3));
+            field(rs.getString(4));
+            field(timestamp(rs, 5));
+            field(timestamp(rs, 6));
+            field(status(rs));
+            field(rs.getString(8));
+            field(rs.getString(9));
+            field(rs.getString(10));
+            String note = rs.getString(11);
+            if (note != null) {
+                quoted(note);
+            }
+            writer.write("\r\n");
+        }
+
+        // Writes the value and its trailing comma
+        private void field(String value) throws IOException {
+            if (value != null) {
+                quoted(value);
+            }
+            writer.write(',');
+        }
+
+        private void quoted(String value) throws IOException {
+            boolean needsQuotes = false;
+            for (int i = 0; i < value.length() && !needsQuotes; i++) {
+                char c = value.charAt(i);
+                needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!needsQuotes) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private final class NdjsonEncoder implements RowEncoder {
+
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        NdjsonEncoder(Writer writer) throws IOException {
+            this.writer = writer;
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            // The generator must not close or flush the shared writer on its own
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            // Rows are separated by the newline written below, not the default space
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField(COLUMNS[0], rs.getLong(1));
+            generator.writeNumberField(COLUMNS[1], rs.getLong(2));
+            generator.writeStringField(COLUMNS[2], rs.getString(3));
+            generator.writeStringField(COLUMNS[3], rs.getString(4));
+            generator.writeStringField(COLUMNS[4], timestamp(rs, 5));
+            generator.writeStringField(COLUMNS[5], timestamp(rs, 6));
+            generator.writeStringField(COLUMNS[6], status(rs));
+            minutesField(COLUMNS[7], rs, 8);
+            minutesField(COLUMNS[8], rs, 9);
+            generator.writeStringField(COLUMNS[9], rs.getString(10));
+            generator.writeStringField(COLUMNS[10], rs.getString(11));
+            generator.writeEndObject();
+            // Hand the line to the buffered writer before the newline goes in after it
+            generator.flush();
+            writer.write('\n');
+        }
+
+        private void minutesField(String name, ResultSet rs, int column) throws SQLException, IOException {
+            int minutes = rs.getInt(column);
+            if (rs.wasNull()) {
+                generator.writeNullField(name);
+            } else {
+                generator.writeNumberField(name, minutes);
+            }
+        }
+    }
+}
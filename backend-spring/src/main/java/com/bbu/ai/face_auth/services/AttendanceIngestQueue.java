@@ -0,0 +1,739 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.models.EnumAttendanceStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in write-behind pipeline for webcam marks (attendance.ingest.mode=write-behind).
+ * A mark is acknowledged once it is in a bounded in-process queue (and, with
+ * durability=journal, fsync'd to a local journal); a single flusher thread writes
+ * queued marks to Postgres in multi-row batches when the batch fills or the flush
+ * interval elapses. Attendance ids are reserved up front from the table's sequence
+ * so inserts can be batched even though the entity uses IDENTITY.
+ * <p>
+ * A batch that fails for a transient reason (database unreachable, deadlock) is
+ * retried until it goes through. Any other failure is down to particular rows, such
+ * as a mark for an employee deleted after it was queued; the batch is then split until
+ * those marks are isolated, and they go to attendance_ingest_dead_letters so the rest
+ * are written and the queue keeps moving. So does a check-out that finds its session
+ * already closed, deleted or edited by the time it is written.
+ * <p>
+ * The journal is a series of segment files next to journal-path, each closed for
+ * appends once it reaches journal-segment-bytes and deleted once every mark in it has
+ * been written. After each flush the settled marks are acknowledged in their segment,
+ * so a replay after a crash only re-sends marks that may not have reached the table,
+ * and not rows an admin may have deleted since.
+ */
+@Component
+public class AttendanceIngestQueue {
+
+    private static final Logger logger = LogManager.getLogger(AttendanceIngestQueue.class);
+
+    private static final int ROWS_PER_INSERT = 100;
+    private static final int INSERT_COLUMNS = 11;
+    // Postgres keeps microseconds, so a stored check-out may differ from the mark's by rounding
+    private static final Duration CHECK_OUT_ROUNDING = Duration.ofMillis(1);
+
+    public enum Kind { CHECK_IN, CHECK_OUT }
+
+    public record PendingMark(
+            Kind kind,
+            long attendanceId,
+            long employeeId,
+            LocalDateTime checkIn,
+            LocalDateTime checkOut,
+            EnumAttendanceStatus status,
+            String note,
+            String location,
+            LocalDateTime markedAt
+    ) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final AttendanceSummaryService attendanceSummaryService;
+
+    private final boolean enabled;
+    private final boolean journalEnabled;
+    private final Path journalPath;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final int idBlockSize;
+
+    private final long journalSegmentBytes;
+
+    // A queued mark and the journal segment holding it (null without a journal)
+    private record Queued(PendingMark mark, Segment segment) {}
+
+    // One journal file. Deleted once sealed (no longer appended to) with nothing pending.
+    private static final class Segment {
+        final Path path;
+        final FileChannel channel;
+        long bytes;
+        long pending;
+        boolean sealed;
+
+        Segment(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private static final String ACK_PREFIX = "#ack ";
+
+    private final BlockingQueue<Queued> queue;
+    private final Semaphore capacity;
+    private final Set<Long> pendingAttendanceIds = ConcurrentHashMap.newKeySet();
+
+    private final Object journalLock = new Object();
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment journal;
+    private long nextSegment = 1;
+
+    private SequenceIdAllocator idAllocator;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Timer flushTimer;
+    private DistributionSummary batchSizeSummary;
+    private Counter rejectedCounter;
+    private Counter deadLetteredCounter;
+
+    public AttendanceIngestQueue(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            AttendanceSummaryService attendanceSummaryService,
+            @Value("${attendance.ingest.mode:sync}") String mode,
+            @Value("${attendance.ingest.durability:journal}") String durability,
+            @Value("${attendance.ingest.journal-path:data/attendance-ingest.journal}") String journalPath,
+            @Value("${attendance.ingest.journal-segment-bytes:4194304}") long journalSegmentBytes,
+            @Value("${attendance.ingest.queue-capacity:10000}") int queueCapacity,
+            @Value("${attendance.ingest.batch-size:500}") int batchSize,
+            @Value("${attendance.ingest.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${attendance.ingest.offer-timeout-ms:50}") long offerTimeoutMs,
+            @Value("${attendance.ingest.id-block-size:100}") int idBlockSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.attendanceSummaryService = attendanceSummaryService;
+        this.enabled = "write-behind".equalsIgnoreCase(mode);
+        this.journalEnabled = "journal".equalsIgnoreCase(durability);
+        this.journalPath = Path.of(journalPath).toAbsolutePath();
+        this.journalSegmentBytes = Math.max(1024, journalSegmentBytes);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.offerTimeoutMs = Math.max(0, offerTimeoutMs);
+        this.idBlockSize = idBlockSize;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.capacity = new Semaphore(Math.max(1, queueCapacity));
+    }
+
+    @PostConstruct
+    public void start() throws IOException, InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        idAllocator = new SequenceIdAllocator(jdbcTemplate, "attendances", "id", idBlockSize);
+        flushTimer = Timer.builder("attendance.ingest.flush")
+                .description("Time to write one batch of queued marks")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("attendance.ingest.batch.size")
+                .description("Marks written per flush")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("attendance.ingest.rejected")
+                .description("Marks rejected because the queue was full")
+                .register(meterRegistry);
+        deadLetteredCounter = Counter.builder("attendance.ingest.dead_lettered")
+                .description("Queued marks that could not be written and were parked in the dead-letter table")
+                .register(meterRegistry);
+        Gauge.builder("attendance.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Marks acknowledged but not yet written")
+                .register(meterRegistry);
+
+        if (journalEnabled) {
+            if (journalPath.getParent() != null) {
+                Files.createDirectories(journalPath.getParent());
+            }
+            replayJournal();
+            synchronized (journalLock) {
+                journal = openSegment();
+            }
+        }
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "attendance-ingest-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("Attendance write-behind ingestion started (durability={}, batchSize={}, flushIntervalMs={})",
+                journalEnabled ? "journal" : "memory", batchSize, flushIntervalMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isPending(long attendanceId) {
+        return pendingAttendanceIds.contains(attendanceId);
+    }
+
+    public long nextAttendanceId() {
+        return idAllocator.next();
+    }
+
+    /**
+     * Accepts a mark for asynchronous persistence. Blocks for at most
+     * offer-timeout-ms when the queue is full, then fails with 503.
+     */
+    public void submit(PendingMark mark) {
+        try {
+            if (!capacity.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedCounter.increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Attendance queue is full, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while queueing attendance");
+        }
+
+        Segment segment = null;
+        try {
+            if (journalEnabled) {
+                segment = appendToJournal(mark);
+            }
+        } catch (IOException e) {
+            capacity.release();
+            throw new IllegalStateException("Could not journal attendance mark", e);
+        }
+
+        pendingAttendanceIds.add(mark.attendanceId());
+        queue.add(new Queued(mark, segment)); // cannot overflow: capacity permits match queue size
+    }
+
+    private void runFlusher() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Queued first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    Queued next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flushWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flushWithRetry(List<Queued> batch) throws InterruptedException {
+        List<PendingMark> marks = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            marks.add(queued.mark());
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        if (!settle(marks, true)) {
+            // Stopping: left in the journal for replay, so the permits do not matter any more
+            return;
+        }
+        sample.stop(flushTimer);
+        batchSizeSummary.record(batch.size());
+
+        for (PendingMark mark : marks) {
+            pendingAttendanceIds.remove(mark.attendanceId());
+        }
+        capacity.release(batch.size());
+        if (journalEnabled) {
+            releaseJournal(batch);
+        }
+    }
+
+    /**
+     * Writes the marks, splitting them in halves on a failure that is not transient
+     * until the marks at fault are on their own, and dead-letters those.
+     *
+     * @param retryTransient whether to keep retrying transient failures (the queue backs
+     *                       up and new marks get 503 meanwhile) or to throw them
+     * @return false if the flusher is stopping and gave up on a transient failure
+     */
+    private boolean settle(List<PendingMark> marks, boolean retryTransient) throws InterruptedException {
+        long backoffMs = 100;
+        RuntimeException failure;
+        while (true) {
+            try {
+                write(marks).forEach(this::deadLetter);
+                return true;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    failure = e;
+                    break;
+                }
+                if (!retryTransient) {
+                    throw e;
+                }
+                if (!running) {
+                    logger.error("Could not write {} attendance marks during shutdown ({}): {}", marks.size(),
+                            journalEnabled ? "kept in journal for replay" : "lost", e.getMessage());
+                    return false;
+                }
+                logger.warn("Attendance flush of {} marks failed, retrying in {} ms: {}",
+                        marks.size(), backoffMs, e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, 5000);
+            }
+        }
+
+        if (marks.size() == 1) {
+            deadLetter(marks.get(0), failure);
+            return true;
+        }
+        // Halves keep queue order, so a check-out is still written after its check-in
+        int half = marks.size() / 2;
+        return settle(marks.subList(0, half), retryTransient)
+                && settle(marks.subList(half, marks.size()), retryTransient);
+    }
+
+    // Connection trouble, deadlocks, serialization failures, an overloaded or restarting server
+    static boolean isTransient(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof TransientDataAccessException || t instanceof RecoverableDataAccessException
+                    || t instanceof DataAccessResourceFailureException
+                    || t instanceof CannotCreateTransactionException
+                    || t instanceof SQLTransientException || t instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null) {
+                String state = sql.getSQLState();
+                if (state.startsWith("08") || state.startsWith("40") || state.startsWith("53")
+                        || state.startsWith("57P")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void deadLetter(PendingMark mark, RuntimeException failure) {
+        deadLetter(mark, NestedExceptionUtils.getMostSpecificCause(failure).getMessage());
+    }
+
+    private void deadLetter(PendingMark mark, String error) {
+        deadLetteredCounter.increment();
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(mark);
+        } catch (IOException e) {
+            payload = mark.toString();
+        }
+        try {
+            jdbcTemplate.update("insert into attendance_ingest_dead_letters " +
+                            "(attendance_id, employee_id, kind, payload, error) values (?, ?, ?, ?, ?)",
+                    mark.attendanceId(), mark.employeeId(), mark.kind().name(), payload, error);
+            logger.warn("Attendance mark {} ({}) for employee {} dead-lettered: {}", mark.attendanceId(),
+                    mark.kind(), mark.employeeId(), error);
+        } catch (RuntimeException e) {
+            logger.error("Attendance mark could not be written ({}) nor dead-lettered ({}), dropped: {}",
+                    error, e.getMessage(), payload);
+        }
+    }
+
+    // Inserts run before updates so a check-out can follow its check-in in the same batch.
+    // Summaries only take the rows that actually changed, so a journal replay of rows
+    // already written does not count them twice.
+    // Returns the check-outs that had no open session left to close, with the reason.
+    private Map<PendingMark, String> write(List<PendingMark> batch) {
+        List<PendingMark> checkIns = new ArrayList<>();
+        List<PendingMark> checkOuts = new ArrayList<>();
+        for (PendingMark mark : batch) {
+            (mark.kind() == Kind.CHECK_IN ? checkIns : checkOuts).add(mark);
+        }
+
+        return transactionTemplate.execute(status -> {
+            List<AttendanceSummaryService.Contribution> befores = new ArrayList<>();
+            List<PendingMark> missed = new ArrayList<>();
+            List<AttendanceSummaryService.Contribution> afters = new ArrayList<>();
+            for (int from = 0; from < checkIns.size(); from += ROWS_PER_INSERT) {
+                List<PendingMark> rows = checkIns.subList(from, Math.min(from + ROWS_PER_INSERT, checkIns.size()));
+                Set<Long> inserted = new HashSet<>(insert(rows));
+                for (PendingMark mark : rows) {
+                    if (inserted.contains(mark.attendanceId())) {
+                        befores.add(AttendanceSummaryService.Contribution.NONE);
+                        afters.add(new AttendanceSummaryService.Contribution(mark.employeeId(), mark.checkIn(), null));
+                    }
+                }
+            }
+            if (!checkOuts.isEmpty()) {
+                int[] updated = update(checkOuts);
+                for (int i = 0; i < checkOuts.size(); i++) {
+                    PendingMark mark = checkOuts.get(i);
+                    if (updated[i] > 0 || updated[i] == Statement.SUCCESS_NO_INFO) {
+                        befores.add(new AttendanceSummaryService.Contribution(mark.employeeId(), mark.checkIn(), null));
+                        afters.add(new AttendanceSummaryService.Contribution(
+                                mark.employeeId(), mark.checkIn(), mark.checkOut()));
+                    } else {
+                        missed.add(mark);
+                    }
+                }
+            }
+            attendanceSummaryService.applyAll(befores, afters);
+            return unapplied(missed);
+        });
+    }
+
+    // A check-out that updated nothing is fine if a journal replay is re-sending it: the
+    // row already carries that check-out. Otherwise the session it was meant to close was
+    // deleted, closed by someone else or edited in the meantime, and the mark is lost.
+    private Map<PendingMark, String> unapplied(List<PendingMark> missed) {
+        if (missed.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Optional<LocalDateTime>> rows = new HashMap<>();
+        jdbcTemplate.query("select id, check_out from attendances where id in ("
+                        + String.join(",", Collections.nCopies(missed.size(), "?")) + ")",
+                rs -> {
+                    Timestamp checkOut = rs.getTimestamp(2);
+                    rows.put(rs.getLong(1), Optional.ofNullable(checkOut).map(Timestamp::toLocalDateTime));
+                },
+                missed.stream().map(PendingMark::attendanceId).toArray());
+
+        Map<PendingMark, String> unapplied = new LinkedHashMap<>();
+        for (PendingMark mark : missed) {
+            Optional<LocalDateTime> row = rows.get(mark.attendanceId());
+            if (row == null) {
+                unapplied.put(mark, "attendance " + mark.attendanceId() + " no longer exists");
+            } else if (row.isEmpty()) {
+                unapplied.put(mark, "attendance " + mark.attendanceId() + " is open but its check-in was changed");
+            } else if (Duration.between(row.get(), mark.checkOut()).abs().compareTo(CHECK_OUT_ROUNDING) > 0) {
+                unapplied.put(mark, "attendance " + mark.attendanceId() + " was already checked out at " + row.get());
+            }
+        }
+        return unapplied;
+    }
+
+    // Returns the ids actually inserted
+    private List<Long> insert(List<PendingMark> rows) {
+        StringBuilder sql = new StringBuilder("insert into attendances " +
+                "(id, employee_id, check_in, check_out, status, note, worked_minutes, overtime_minutes, location, " +
+                "created_at, updated_at) values ");
+        Object[] args = new Object[rows.size() * INSERT_COLUMNS];
+        int[] types = new int[rows.size() * INSERT_COLUMNS];
+
+        int i = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            PendingMark mark = rows.get(row);
+            sql.append(row == 0 ? "" : ",").append("(?,?,?,?,?,?,?,?,?,?,?)");
+            Integer worked = AttendanceMinutes.worked(mark.checkIn(), mark.checkOut());
+            i = bind(args, types, i, mark.attendanceId(), Types.BIGINT);
+            i = bind(args, types, i, mark.employeeId(), Types.BIGINT);
+            i = bind(args, types, i, toTimestamp(mark.checkIn()), Types.TIMESTAMP);
+            i = bind(args, types, i, toTimestamp(mark.checkOut()), Types.TIMESTAMP);
+            i = bind(args, types, i, mark.status().ordinal(), Types.SMALLINT);
+            i = bind(args, types, i, mark.note(), Types.VARCHAR);
+            i = bind(args, types, i, worked, Types.INTEGER);
+            i = bind(args, types, i, AttendanceMinutes.overtime(worked), Types.INTEGER);
+            i = bind(args, types, i, mark.location(), Types.VARCHAR);
+            i = bind(args, types, i, toTimestamp(mark.markedAt()), Types.TIMESTAMP);
+            i = bind(args, types, i, toTimestamp(mark.markedAt()), Types.TIMESTAMP);
+        }
+        // Journal replay may re-send rows that were already written. No conflict target:
+        // the unique key is (id) or, once partitioned, (id, check_in).
+        sql.append(" on conflict do nothing returning id");
+        return jdbcTemplate.query(sql.toString(), args, types, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    private int[] update(List<PendingMark> rows) {
+        return jdbcTemplate.batchUpdate(
+                "update attendances set check_out = ?, status = ?, worked_minutes = ?, overtime_minutes = ?, " +
+                        "note = coalesce(?, note), location = coalesce(?, location), updated_at = ? " +
+                        "where id = ? and check_in between ? and ? and check_out is null",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int index) throws SQLException {
+                        PendingMark mark = rows.get(index);
+                        ps.setTimestamp(1, toTimestamp(mark.checkOut()));
+                        ps.setShort(2, (short) mark.status().ordinal());
+                        int worked = AttendanceMinutes.worked(mark.checkIn(), mark.checkOut());
+                        ps.setInt(3, worked);
+                        ps.setInt(4, AttendanceMinutes.overtime(worked));
+                        ps.setString(5, mark.note());
+                        ps.setString(6, mark.location());
+                        ps.setTimestamp(7, toTimestamp(mark.markedAt()));
+                        ps.setLong(8, mark.attendanceId());
+                        LocalDateTime checkIn = mark.checkIn();
+                        ps.setTimestamp(9, checkIn == null ? null
+                                : toTimestamp(checkIn.minus(OpenAttendanceIndex.CHECK_IN_SLACK)));
+                        ps.setTimestamp(10, checkIn == null ? null
+                                : toTimestamp(checkIn.plus(OpenAttendanceIndex.CHECK_IN_SLACK)));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                });
+    }
+
+    private static int bind(Object[] args, int[] types, int i, Object value, int type) {
+        args[i] = value;
+        types[i] = type;
+        return i + 1;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+
+    private Segment appendToJournal(PendingMark mark) throws IOException {
+        byte[] line = (objectMapper.writeValueAsString(mark) + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (journalLock) {
+            if (journal.bytes >= journalSegmentBytes) {
+                journal.sealed = true;
+                deleteIfDone(journal);
+                journal = openSegment();
+            }
+            write(journal, line);
+            journal.channel.force(false);
+            journal.pending++;
+            return journal;
+        }
+    }
+
+    /**
+     * Settled marks are acknowledged in their segment; the ack is not forced, since
+     * losing it only means the marks are sent again. A segment with nothing left
+     * pending is deleted, or emptied if it is still the one being appended to.
+     */
+    private void releaseJournal(List<Queued> batch) {
+        synchronized (journalLock) {
+            Map<Segment, StringBuilder> acks = new IdentityHashMap<>();
+            for (Queued queued : batch) {
+                Segment segment = queued.segment();
+                segment.pending--;
+                StringBuilder ack = acks.computeIfAbsent(segment, s -> new StringBuilder(ACK_PREFIX));
+                ack.append(ack.length() == ACK_PREFIX.length() ? "" : ",").append(ackKey(queued.mark()));
+            }
+            acks.forEach((segment, ack) -> {
+                try {
+                    if (segment.pending > 0) {
+                        write(segment, (ack + "\n").getBytes(StandardCharsets.UTF_8));
+                    } else if (segment.sealed) {
+                        deleteIfDone(segment);
+                    } else {
+                        segment.channel.truncate(0);
+                        segment.bytes = 0;
+                    }
+                } catch (IOException e) {
+                    logger.warn("Could not update attendance journal segment {}: {}", segment.path, e.getMessage());
+                }
+            });
+        }
+    }
+
+    private static String ackKey(PendingMark mark) {
+        return (mark.kind() == Kind.CHECK_IN ? "I" : "O") + mark.attendanceId();
+    }
+
+    private static void write(Segment segment, byte[] line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            segment.channel.write(buffer);
+        }
+        segment.bytes += line.length;
+    }
+
+    // Caller holds journalLock
+    private Segment openSegment() throws IOException {
+        Path path = journalPath.resolveSibling(journalPath.getFileName() + "." + String.format("%08d", nextSegment++));
+        Segment segment = new Segment(path, FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        segment.bytes = segment.channel.size();
+        segments.add(segment);
+        return segment;
+    }
+
+    // Caller holds journalLock
+    private void deleteIfDone(Segment segment) {
+        if (!segment.sealed || segment.pending > 0) {
+            return;
+        }
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+            segments.remove(segment);
+        } catch (IOException e) {
+            logger.warn("Could not delete attendance journal segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    // journal-path itself is the single-file journal of earlier versions, replayed first
+    private List<Path> journalFiles() throws IOException {
+        Path directory = journalPath.getParent();
+        String name = journalPath.getFileName().toString();
+        List<Path> files = new ArrayList<>();
+        if (Files.exists(journalPath)) {
+            files.add(journalPath);
+        }
+        List<Path> numbered = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name + ".*")) {
+            for (Path path : stream) {
+                String suffix = path.getFileName().toString().substring(name.length() + 1);
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    numbered.add(path);
+                    nextSegment = Math.max(nextSegment, Long.parseLong(suffix) + 1);
+                }
+            }
+        }
+        numbered.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        files.addAll(numbered);
+        return files;
+    }
+
+    // Streams each segment twice: once for its acks, then for the marks they do not cover
+    private void replayJournal() throws IOException, InterruptedException {
+        long replayed = 0;
+        for (Path file : journalFiles()) {
+            Set<String> acked = new HashSet<>();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.startsWith(ACK_PREFIX)) {
+                        acked.addAll(Arrays.asList(line.substring(ACK_PREFIX.length()).trim().split(",")));
+                    }
+                }
+            }
+
+            List<PendingMark> batch = new ArrayList<>(batchSize);
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.isBlank() || line.startsWith(ACK_PREFIX)) {
+                        continue;
+                    }
+                    PendingMark mark;
+                    try {
+                        mark = objectMapper.readValue(line, PendingMark.class);
+                    } catch (IOException e) {
+                        // A torn last line from a crash mid-append was never acknowledged
+                        logger.warn("Skipping unreadable attendance journal entry: {}", e.getMessage());
+                        continue;
+                    }
+                    if (acked.contains(ackKey(mark))) {
+                        continue;
+                    }
+                    batch.add(mark);
+                    if (batch.size() == batchSize) {
+                        replayed += replay(batch);
+                    }
+                }
+            }
+            replayed += replay(batch);
+            Files.delete(file);
+        }
+        if (replayed > 0) {
+            logger.info("Replayed {} attendance marks from {}", replayed, journalPath.getParent());
+        }
+    }
+
+    // Rows at fault are dead-lettered as in normal flushing; only an unreachable
+    // database fails startup
+    private int replay(List<PendingMark> batch) throws InterruptedException {
+        int size = batch.size();
+        if (size > 0) {
+            settle(batch, false);
+            batch.clear();
+        }
+        return size;
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (!enabled || flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        synchronized (journalLock) {
+            for (Segment segment : segments) {
+                segment.channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.bbu.ai.face_auth.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Worked and overtime minutes of one session, the single rule behind the stored
+ * columns, their backfill and the summaries. Minutes are truncated like
+ * {@link Duration#toMinutes} and never negative; overtime is whatever goes beyond the
+ * standard eight hours.
+ */
+public final class AttendanceMinutes {
+
+    public static final int STANDARD_MINUTES = 8 * 60;
+
+    // SQL form of worked(), over an attendances row aliased "a"
+    static final String WORKED_SQL = "greatest(trunc(extract(epoch from (a.check_out - a.check_in)) / 60), 0)";
+    static final String OVERTIME_SQL = "greatest(" + WORKED_SQL + " - " + STANDARD_MINUTES + ", 0)";
+
+    private AttendanceMinutes() {
+    }
+
+    // Null while the session is still open
+    public static Integer worked(LocalDateTime checkIn, LocalDateTime checkOut) {
+        if (checkIn == null || checkOut == null) {
+            return null;
+        }
+        return (int) Math.max(0, Duration.between(checkIn, checkOut).toMinutes());
+    }
+
+    public static Integer overtime(Integer workedMinutes) {
+        return workedMinutes == null ? null : Math.max(0, workedMinutes - STANDARD_MINUTES);
+    }
+}
@@ -0,0 +1,104 @@
+package com.bbu.ai.face_auth.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Fills worked_minutes and overtime_minutes on closed sessions written before those
+ * columns existed, computing them from the timestamps in SQL. Rows are taken in
+ * primary key order a chunk at a time, each chunk in its own short transaction, and
+ * rows another writer has locked are skipped rather than waited on. A pass that
+ * skipped rows leaves them behind, so passes start over from the lowest id until one
+ * fills nothing. The rows still to fill are found through a partial index that only
+ * holds them (V7), so once nothing is left a run is one probe of an empty index.
+ */
+@Service
+public class AttendanceMinutesBackfill {
+
+    private static final Logger logger = LogManager.getLogger(AttendanceMinutesBackfill.class);
+
+    private static final String FILL_CHUNK = "update attendances a set " +
+            "worked_minutes = " + AttendanceMinutes.WORKED_SQL + ", " +
+            "overtime_minutes = " + AttendanceMinutes.OVERTIME_SQL + " " +
+            "where a.id in (select id from attendances where id > ? and check_out is not null " +
+            "and worked_minutes is null order by id limit ? for update skip locked) " +
+            "returning a.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final boolean onStartup;
+
+    public AttendanceMinutesBackfill(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${attendance.minutes-backfill.chunk-size:5000}") int chunkSize,
+            @Value("${attendance.minutes-backfill.on-startup:true}") boolean onStartup
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.onStartup = onStartup;
+    }
+
+    // In the background, so a large first backfill does not hold up startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!onStartup) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                logger.warn("Attendance minutes backfill stopped: {}", e.getMessage());
+            }
+        }, "attendance-minutes-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return rows filled
+     */
+    public synchronized long run() {
+        long started = System.nanoTime();
+        long filled = 0;
+        long pass;
+        do {
+            pass = fillPass();
+            filled += pass;
+        } while (pass > 0);
+        if (filled > 0) {
+            logger.info("Backfilled attendance minutes on {} rows in {} ms", filled,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        return filled;
+    }
+
+    // One walk up the ids; rows locked by a writer meanwhile are left for the next pass
+    private long fillPass() {
+        long filled = 0;
+        long lastId = 0;
+        while (true) {
+            long after = lastId;
+            List<Long> ids = transactionTemplate.execute(status ->
+                    jdbcTemplate.queryForList(FILL_CHUNK, Long.class, after, chunkSize));
+            if (ids == null || ids.isEmpty()) {
+                return filled;
+            }
+            filled += ids.size();
+            for (Long id : ids) {
+                lastId = Math.max(lastId, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.OvertimeRollup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Overtime totals over an arbitrary date range, summed in Postgres from the integer
+ * minute columns. The inner aggregate reads only idx_attendances_check_in_minutes
+ * (check_in, employee_id, overtime_minutes, worked_minutes); employees are joined
+ * once per resulting group rather than once per session. Like the summaries, a
+ * session counts on the day it was checked in.
+ */
+@Service
+public class AttendanceRollupService {
+
+    public static final int MAX_TOP = 100;
+
+    private static final String PER_EMPLOYEE = "select employee_id, count(*) as sessions, " +
+            "count(worked_minutes) as completed, coalesce(sum(worked_minutes), 0) as worked, " +
+            "coalesce(sum(overtime_minutes), 0) as overtime " +
+            "from attendances where check_in >= ? and check_in < ? group by employee_id";
+
+    private static final RowMapper<OvertimeRollup> EMPLOYEE_ROW = (rs, rowNum) -> new OvertimeRollup(
+            rs.getLong(1), rs.getString(2), rs.getString(3), rs.getLong(4), rs.getLong(5), rs.getLong(6),
+            rs.getLong(7));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AttendanceRollupService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // from and to are inclusive days
+    public List<OvertimeRollup> byEmployee(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("select r.employee_id, e.name, e.department, r.sessions, r.completed, " +
+                        "r.worked, r.overtime from (" + PER_EMPLOYEE + ") r " +
+                        "join employees e on e.id = r.employee_id order by e.name, r.employee_id",
+                EMPLOYEE_ROW, start(from), end(to));
+    }
+
+    public List<OvertimeRollup> byDepartment(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("select coalesce(e.department, ''), sum(r.sessions), sum(r.completed), " +
+                        "sum(r.worked), sum(r.overtime) from (" + PER_EMPLOYEE + ") r " +
+                        "join employees e on e.id = r.employee_id group by 1 order by 1",
+                (rs, rowNum) -> new OvertimeRollup(null, null, rs.getString(1), rs.getLong(2), rs.getLong(3),
+                        rs.getLong(4), rs.getLong(5)),
+                start(from), end(to));
+    }
+
+    /**
+     * Employees with the most overtime in the range, most first; those without any are
+     * left out. The limit is applied before the join, so only the winners are looked up.
+     */
+    public List<OvertimeRollup> topOvertime(LocalDate from, LocalDate to, int limit) {
+        int top = Math.min(Math.max(limit, 1), MAX_TOP);
+        return jdbcTemplate.query("select r.employee_id, e.name, e.department, r.sessions, r.completed, " +
+                        "r.worked, r.overtime from (" + PER_EMPLOYEE + " having sum(overtime_minutes) > 0 " +
+                        "order by overtime desc, employee_id limit ?) r " +
+                        "join employees e on e.id = r.employee_id order by r.overtime desc, r.employee_id",
+                EMPLOYEE_ROW, start(from), end(to), top);
+    }
+
+    private static Timestamp start(LocalDate from) {
+        return Timestamp.valueOf(from.atStartOfDay());
+    }
+
+    private static Timestamp end(LocalDate to) {
+        return Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+    }
+}
@@ -5,17 +5,23 @@ import com.bbu.ai.face_auth.dto.AttendanceRequest;
 import com.bbu.ai.face_auth.models.Attendance;
 import com.bbu.ai.face_auth.models.Employee;
 import com.bbu.ai.face_auth.mapper.AttendanceResponse;
+import com.bbu.ai.face_auth.mapper.CursorSlice;
 import com.bbu.ai.face_auth.models.EnumAttendanceStatus;
 import com.bbu.ai.face_auth.repository.AttendanceRepository;
 import com.bbu.ai.face_auth.repository.EmployeeRepository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 public class AttendanceService {
@@ -24,76 +30,125 @@ public class AttendanceService {
 
     private final AttendanceRepository attendanceRepository;
     private final EmployeeRepository employeeRepository;
+    private final EmployeeDirectory employeeDirectory;
+    private final OpenAttendanceIndex openAttendanceIndex;
+    private final AttendanceIngestQueue attendanceIngestQueue;
+    private final MarkDebouncer markDebouncer;
+    private final AttendanceSummaryService attendanceSummaryService;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final int MAX_SCROLL_SIZE = 1000;
 
 
     public AttendanceService(
             AttendanceRepository attendanceRepository
             , EmployeeRepository employeeRepository
+            , EmployeeDirectory employeeDirectory
+            , OpenAttendanceIndex openAttendanceIndex
+            , AttendanceIngestQueue attendanceIngestQueue
+            , MarkDebouncer markDebouncer
+            , AttendanceSummaryService attendanceSummaryService
+            , TransactionTemplate transactionTemplate
     ) {
         this.attendanceRepository = attendanceRepository;
         this.employeeRepository = employeeRepository;
+        this.employeeDirectory = employeeDirectory;
+        this.openAttendanceIndex = openAttendanceIndex;
+        this.attendanceIngestQueue = attendanceIngestQueue;
+        this.markDebouncer = markDebouncer;
+        this.attendanceSummaryService = attendanceSummaryService;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    public Attendance create(AttendanceRequest attendanceRequest){
+    public AttendanceResponse create(AttendanceRequest attendanceRequest){
         logger.info("attendanceRequest{}", attendanceRequest);
 
         // Create new student's account
         Attendance attendance = new Attendance();
-        attendance.setEmployee(getEmployee(attendanceRequest.getEmployeeId()));
+        EmployeeDirectory.Entry employee = getEmployee(attendanceRequest.getEmployeeId());
+        attendance.setEmployee(employeeReference(employee));
         attendance.setCheckIn(LocalDateTime.now());
         attendance.setStatus(attendanceRequest.getStatus());
-        return attendanceRepository.save(attendance);
-    }
-
-    public Page<AttendanceResponse> getAll(Pageable pageable) {
-
-        Page<Attendance> attendances = attendanceRepository.findAll(pageable);
-        return attendances.map(a -> new AttendanceResponse(
-                a.getId(),
-                a.getEmployee().getId(),
-                a.getEmployee().getName(), // fetch from Employee repo
-                a.getCheckIn(),
-                a.getCheckOut(),
-                a.getStatus().name(),
-                a.getNote(),
-                a.getOverTime(),
-                a.getLocation(),
-                a.getCreatedAt().toLocalDateTime(),
-                a.getUpdatedAt().toLocalDateTime()
-        ));
-    }
-
-    public Page<AttendanceResponse> getByEmployeeId(Long employeeId, Pageable pageable) {
-        Page<Attendance> attendances = attendanceRepository.findByEmployeeId(employeeId, pageable);
-
-        return attendances.map(a -> new AttendanceResponse(
-                a.getId(),
-                a.getEmployee().getId(),
-                a.getEmployee().getName(), // fetch from Employee repo
-                a.getCheckIn(),
-                a.getCheckOut(),
-                a.getStatus().name(),
-                a.getNote(),
-                a.getOverTime(),
-                a.getLocation(),
-                a.getCreatedAt().toLocalDateTime(),
-                a.getUpdatedAt().toLocalDateTime()
-        ));    }
+        Attendance saved = writeForEmployee(employee, () -> transactionTemplate.execute(status -> {
+            Attendance inserted = attendanceRepository.save(attendance);
+            attendanceSummaryService.apply(AttendanceSummaryService.Contribution.NONE, contribution(inserted));
+            return inserted;
+        }));
+        openAttendanceIndex.open(saved.getEmployee().getId(), saved.getId(), saved.getCheckIn());
+        return AttendanceResponse.from(saved, employee.name());
+    }
+
+    /**
+     * @param countTotal whether to run the count query for a full Page; without it a
+     *                   Slice only says whether another page follows
+     */
+    public Slice<AttendanceResponse> getAll(Pageable pageable, boolean includeNote, boolean countTotal) {
+        return countTotal
+                ? attendanceRepository.findResponses(includeNote, pageable)
+                : attendanceRepository.findResponseSlice(includeNote, pageable);
+    }
+
+    public Slice<AttendanceResponse> getByEmployeeId(Long employeeId, Pageable pageable, boolean includeNote,
+                                                     boolean countTotal) {
+        return countTotal
+                ? attendanceRepository.findResponsesByEmployeeId(employeeId, includeNote, pageable)
+                : attendanceRepository.findResponseSliceByEmployeeId(employeeId, includeNote, pageable);
+    }
+
+    /**
+     * Newest first by (checkIn, id); each window seeks past the cursor of the previous one,
+     * so deep windows cost the same as the first and nothing is counted.
+     */
+    public CursorSlice<AttendanceResponse> scroll(Long employeeId, String cursor, int size, boolean includeNote) {
+        ScrollCursor.Key after = ScrollCursor.decode(ScrollCursor.ATTENDANCE, cursor);
+        int window = Math.min(Math.max(size, 1), MAX_SCROLL_SIZE);
+        // One extra row tells whether another window follows
+        Limit limit = Limit.of(window + 1);
+        List<AttendanceResponse> rows;
+        if (employeeId == null) {
+            rows = after == null
+                    ? attendanceRepository.scrollResponses(includeNote, limit)
+                    : attendanceRepository.scrollResponsesAfter(after.asDateTime(), after.id(), includeNote, limit);
+        } else {
+            rows = after == null
+                    ? attendanceRepository.scrollResponsesByEmployeeId(employeeId, includeNote, limit)
+                    : attendanceRepository.scrollResponsesByEmployeeIdAfter(employeeId, after.asDateTime(), after.id(),
+                    includeNote, limit);
+        }
+        boolean hasNext = rows.size() > window;
+        List<AttendanceResponse> content = hasNext ? rows.subList(0, window) : rows;
+        AttendanceResponse last = content.isEmpty() ? null : content.get(content.size() - 1);
+        String nextCursor = hasNext ? ScrollCursor.encode(ScrollCursor.ATTENDANCE, last.checkIn(), last.id()) : null;
+        return new CursorSlice<>(content, window, hasNext, nextCursor);
+    }
 
     public Optional<Attendance> getById(Long id){
         return attendanceRepository.findById(id);
     }
 
-    public Attendance update(Long id, AttendanceRequest attendanceRequest){
+    public AttendanceResponse update(Long id, AttendanceRequest attendanceRequest){
         logger.info("attendanceRequest{}", attendanceRequest);
         // Create new student's account
         Optional<Attendance> attendanceData = getById(id);
         if(attendanceData.isPresent()){
             Attendance attendance = attendanceData.get();
-            attendance.setEmployee(getEmployee(attendanceRequest.getEmployeeId()));
+            AttendanceSummaryService.Contribution before = contribution(attendance);
+            Long previousEmployeeId = attendance.getEmployee().getId();
+            openAttendanceIndex.close(previousEmployeeId, attendance.getId());
+            EmployeeDirectory.Entry employee = getEmployee(attendanceRequest.getEmployeeId());
+            attendance.setEmployee(employeeReference(employee));
             attendance.setStatus(attendanceRequest.getStatus());
             attendance.setCheckOut(LocalDateTime.now());
-            return attendanceRepository.save(attendance);
+            setMinutes(attendance);
+            Attendance updated = writeForEmployee(employee, () -> transactionTemplate.execute(status -> {
+                Attendance saved = attendanceRepository.save(attendance);
+                attendanceSummaryService.apply(before, contribution(saved));
+                return saved;
+            }));
+            // A remembered mark would answer the next frame with the pre-edit state
+            markDebouncer.forget(previousEmployeeId);
+            markDebouncer.forget(employee.id());
+            return AttendanceResponse.from(updated, employee.name());
         }else{
             return null;
         }
@@ -101,21 +156,49 @@ public class AttendanceService {
     }
 
     public void delete(Long id){
-        attendanceRepository.deleteById(id);
+        Long employeeId = transactionTemplate.execute(status -> attendanceRepository.findById(id).map(attendance -> {
+            AttendanceSummaryService.Contribution before = contribution(attendance);
+            attendanceRepository.delete(attendance);
+            attendanceSummaryService.apply(before, AttendanceSummaryService.Contribution.NONE);
+            return attendance.getEmployee().getId();
+        }).orElse(null));
+        openAttendanceIndex.closeAttendance(id);
+        if (employeeId != null) {
+            markDebouncer.forget(employeeId);
+        }
     }
 
     public AttendanceResponse markAttendance(Long employeeId, String note, String location) {
+        // Repeat frames of the same face, inside the debounce window or while its mark is
+        // still running, get that mark's result
+        return markDebouncer.mark(employeeId, () -> attendanceIngestQueue.isEnabled()
+                ? markAttendanceWriteBehind(employeeId, note, location)
+                : markAttendanceDirect(employeeId, note, location));
+    }
+
+    private AttendanceResponse markAttendanceDirect(Long employeeId, String note, String location) {
         Attendance attendance;
+        AttendanceSummaryService.Contribution before = AttendanceSummaryService.Contribution.NONE;
 
-        Optional<Attendance> existingAttendance =
-                attendanceRepository.findTopByEmployeeIdAndCheckOutIsNullOrderByCheckInDesc(employeeId);
+        // Check-in vs check-out is decided from the in-memory index; only a known open
+        // session is read back (by primary key) so it can be updated.
+        OpenAttendanceIndex.OpenSession openSession = openAttendanceIndex.get(employeeId);
+        Optional<Attendance> existingAttendance = Optional.empty();
+        if (openSession != null) {
+            existingAttendance = findOpen(openSession).filter(a -> a.getCheckOut() == null);
+            if (existingAttendance.isEmpty()) {
+                // Closed or deleted behind our back (another node, admin edit)
+                openAttendanceIndex.close(employeeId, openSession.attendanceId());
+            }
+        }
 
         if (existingAttendance.isPresent()) {
             // Checkout flow
             attendance = existingAttendance.get();
+            before = contribution(attendance);
             attendance.setCheckOut(LocalDateTime.now());
             attendance.setStatus(EnumAttendanceStatus.PRESENT);
-            attendance.setOverTime(calculateOvertime(attendance.getCheckIn(), attendance.getCheckOut()));
+            setMinutes(attendance);
         } else {
             // Check-in flow
             attendance = new Attendance();
@@ -123,46 +206,116 @@ public class AttendanceService {
             attendance.setStatus(EnumAttendanceStatus.PRESENT);
         }
 
-        attendance.setEmployee(getEmployee(employeeId));
+        EmployeeDirectory.Entry employee = getEmployee(employeeId);
+        attendance.setEmployee(employeeReference(employee));
         if (note != null) attendance.setNote(note);
         if (location != null) attendance.setLocation(location);
 
-        Attendance saved = attendanceRepository.save(attendance);
+        AttendanceSummaryService.Contribution previous = before;
+        Attendance saved = writeForEmployee(employee, () -> transactionTemplate.execute(status -> {
+            Attendance written = attendanceRepository.save(attendance);
+            attendanceSummaryService.apply(previous, contribution(written));
+            return written;
+        }));
+        if (saved.getCheckOut() != null) {
+            openAttendanceIndex.close(employeeId, saved.getId());
+        } else {
+            openAttendanceIndex.open(employeeId, saved.getId(), saved.getCheckIn());
+        }
 
+        return AttendanceResponse.from(saved, employee.name());
+    }
+
+
+    // Acknowledges the mark once it is queued; the row is written by AttendanceIngestQueue.
+    // createdAt is unknown for a check-out until the row is flushed, so it is left null.
+    private AttendanceResponse markAttendanceWriteBehind(Long employeeId, String note, String location) {
+        EmployeeDirectory.Entry employee = getEmployee(employeeId);
+        LocalDateTime now = LocalDateTime.now();
+        OpenAttendanceIndex.OpenSession openSession = openAttendanceIndex.get(employeeId);
+
+        AttendanceIngestQueue.PendingMark mark;
+        if (openSession != null) {
+            mark = new AttendanceIngestQueue.PendingMark(
+                    AttendanceIngestQueue.Kind.CHECK_OUT, openSession.attendanceId(), employeeId,
+                    openSession.checkIn(), now, EnumAttendanceStatus.PRESENT, note, location, now);
+        } else {
+            mark = new AttendanceIngestQueue.PendingMark(
+                    AttendanceIngestQueue.Kind.CHECK_IN, attendanceIngestQueue.nextAttendanceId(), employeeId,
+                    now, null, EnumAttendanceStatus.PRESENT, note, location, now);
+        }
+
+        attendanceIngestQueue.submit(mark);
+        if (mark.kind() == AttendanceIngestQueue.Kind.CHECK_OUT) {
+            openAttendanceIndex.close(employeeId, mark.attendanceId());
+        } else {
+            openAttendanceIndex.open(employeeId, mark.attendanceId(), mark.checkIn());
+        }
+
+        Integer worked = AttendanceMinutes.worked(mark.checkIn(), mark.checkOut());
+        Integer overtime = AttendanceMinutes.overtime(worked);
         return new AttendanceResponse(
-                saved.getId(),
-                saved.getEmployee().getId(),
-                saved.getEmployee().getName(),
-                saved.getCheckIn(),
-                saved.getCheckOut(),
-                saved.getStatus().name(),
-                saved.getNote(),
-                saved.getOverTime(),
-                saved.getLocation(),
-                saved.getCreatedAt().toLocalDateTime(),
-                saved.getUpdatedAt().toLocalDateTime()
+                mark.attendanceId(),
+                employeeId,
+                employee.name(),
+                mark.checkIn(),
+                mark.checkOut(),
+                mark.status().name(),
+                mark.note(),
+                AttendanceResponse.formatMinutes(overtime),
+                worked,
+                overtime,
+                mark.location(),
+                mark.kind() == AttendanceIngestQueue.Kind.CHECK_IN ? now : null,
+                now
         );
     }
 
+    private Optional<Attendance> findOpen(OpenAttendanceIndex.OpenSession session) {
+        if (session.checkIn() == null) {
+            return attendanceRepository.findById(session.attendanceId());
+        }
+        return attendanceRepository.findByIdAndCheckInBetween(session.attendanceId(),
+                session.checkIn().minus(OpenAttendanceIndex.CHECK_IN_SLACK),
+                session.checkIn().plus(OpenAttendanceIndex.CHECK_IN_SLACK));
+    }
+
+    private static void setMinutes(Attendance attendance) {
+        Integer worked = AttendanceMinutes.worked(attendance.getCheckIn(), attendance.getCheckOut());
+        attendance.setWorkedMinutes(worked);
+        attendance.setOvertimeMinutes(AttendanceMinutes.overtime(worked));
+    }
 
-    // Calculate overtime
-    private String calculateOvertime(LocalDateTime checkIn, LocalDateTime checkOut) {
-        if (checkIn == null || checkOut == null) return null;
+    private static AttendanceSummaryService.Contribution contribution(Attendance attendance) {
+        return new AttendanceSummaryService.Contribution(
+                attendance.getEmployee().getId(), attendance.getCheckIn(), attendance.getCheckOut());
+    }
 
-        long minutes = java.time.Duration.between(checkIn, checkOut).toMinutes();
-        long standardMinutes = 8 * 60; // 8 hours
-        if (minutes > standardMinutes) {
-            long overtimeMinutes = minutes - standardMinutes;
-            long hours = overtimeMinutes / 60;
-            long mins = overtimeMinutes % 60;
-            return hours + "h " + mins + "m";
+    // From the directory, so marks and updates do not select the employee row
+    private EmployeeDirectory.Entry getEmployee(Long employeeId) {
+        EmployeeDirectory.Entry employee = employeeId == null ? null : employeeDirectory.find(employeeId);
+        if (employee == null) {
+            throw new IllegalArgumentException("Employee not found with id: " + employeeId);
         }
-        return "0h 0m";
+        return employee;
     }
 
+    // The directory may still hold an employee another node deleted, for up to its ttl-ms;
+    // the foreign key then rejects the write, and this mark alone fails as not found
+    private <T> T writeForEmployee(EmployeeDirectory.Entry employee, Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (DataIntegrityViolationException e) {
+            employeeDirectory.invalidate(employee.id());
+            if (employeeDirectory.find(employee.id()) == null) {
+                throw new IllegalArgumentException("Employee not found with id: " + employee.id());
+            }
+            throw e;
+        }
+    }
 
-    private Employee getEmployee(Long employeeId) {
-        return employeeRepository.findById(employeeId)
-                .orElseThrow(() -> new IllegalArgumentException("Employee not found with id: " + employeeId));
+    // Only the foreign key is written, so an uninitialized proxy is all the row needs
+    private Employee employeeReference(EmployeeDirectory.Entry employee) {
+        return employeeRepository.getReferenceById(employee.id());
     }
 }
@@ -0,0 +1,317 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.AttendanceSummaryResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps attendance_daily_summary (employee, day) and department_monthly_summary
+ * (department, month) in step with the attendances table, so dashboards read a few
+ * pre-aggregated rows instead of scanning raw attendance.
+ * <p>
+ * Writers describe each change as the row's contribution before and after it; the
+ * difference is upserted as a delta in the caller's transaction, so the totals commit
+ * or roll back together with the attendance row. A session counts on the day it was
+ * checked in, and a department's totals are those of its current employees.
+ * {@link #rebuild} recomputes both tables from the raw rows for backfills and repairs.
+ */
+@Service
+public class AttendanceSummaryService {
+
+    private static final Logger logger = LogManager.getLogger(AttendanceSummaryService.class);
+
+    /**
+     * What one attendance row adds to the summaries. {@link #NONE} for a row that does
+     * not exist (before an insert, after a delete).
+     */
+    public record Contribution(Long employeeId, LocalDateTime checkIn, LocalDateTime checkOut) {
+        public static final Contribution NONE = new Contribution(null, null, null);
+    }
+
+    private record DailyKey(long employeeId, LocalDate day) implements Comparable<DailyKey> {
+        @Override
+        public int compareTo(DailyKey other) {
+            int byEmployee = Long.compare(employeeId, other.employeeId);
+            return byEmployee != 0 ? byEmployee : day.compareTo(other.day);
+        }
+    }
+
+    private record MonthlyKey(String department, LocalDate month) implements Comparable<MonthlyKey> {
+        @Override
+        public int compareTo(MonthlyKey other) {
+            int byDepartment = department.compareTo(other.department);
+            return byDepartment != 0 ? byDepartment : month.compareTo(other.month);
+        }
+    }
+
+    private static final class Totals {
+        long sessions;
+        long completedSessions;
+        long workedMinutes;
+        long overtimeMinutes;
+        long lateSessions;
+
+        void add(Totals other, int sign) {
+            sessions += sign * other.sessions;
+            completedSessions += sign * other.completedSessions;
+            workedMinutes += sign * other.workedMinutes;
+            overtimeMinutes += sign * other.overtimeMinutes;
+            lateSessions += sign * other.lateSessions;
+        }
+
+        boolean isZero() {
+            return sessions == 0 && completedSessions == 0 && workedMinutes == 0 && overtimeMinutes == 0
+                    && lateSessions == 0;
+        }
+    }
+
+    private static final String UPSERT_DAILY = "insert into attendance_daily_summary " +
+            "(employee_id, day, sessions, completed_sessions, worked_minutes, overtime_minutes, late_sessions) " +
+            "values (?, ?, ?, ?, ?, ?, ?) on conflict (employee_id, day) do update set " +
+            "sessions = attendance_daily_summary.sessions + excluded.sessions, " +
+            "completed_sessions = attendance_daily_summary.completed_sessions + excluded.completed_sessions, " +
+            "worked_minutes = attendance_daily_summary.worked_minutes + excluded.worked_minutes, " +
+            "overtime_minutes = attendance_daily_summary.overtime_minutes + excluded.overtime_minutes, " +
+            "late_sessions = attendance_daily_summary.late_sessions + excluded.late_sessions";
+    private static final String UPSERT_MONTHLY = "insert into department_monthly_summary " +
+            "(department, month, sessions, completed_sessions, worked_minutes, overtime_minutes, late_sessions) " +
+            "values (?, ?, ?, ?, ?, ?, ?) on conflict (department, month) do update set " +
+            "sessions = department_monthly_summary.sessions + excluded.sessions, " +
+            "completed_sessions = department_monthly_summary.completed_sessions + excluded.completed_sessions, " +
+            "worked_minutes = department_monthly_summary.worked_minutes + excluded.worked_minutes, " +
+            "overtime_minutes = department_monthly_summary.overtime_minutes + excluded.overtime_minutes, " +
+            "late_sessions = department_monthly_summary.late_sessions + excluded.late_sessions";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LocalTime lateAfter;
+    private final Timer applyTimer;
+
+    public AttendanceSummaryService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${attendance.summary.late-after:09:00}") String lateAfter
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.lateAfter = LocalTime.parse(lateAfter);
+        this.applyTimer = Timer.builder("attendance.summary.apply")
+                .description("Time to upsert summary deltas for one attendance write")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Applies the change from {@code before} to {@code after} for a single row. Must run
+     * inside the transaction that writes the row.
+     */
+    public void apply(Contribution before, Contribution after) {
+        applyAll(List.of(before), List.of(after));
+    }
+
+    /**
+     * Batch form of {@link #apply}: {@code befores.get(i)} became {@code afters.get(i)}.
+     * Deltas are merged per key and written in key order, so concurrent writers lock
+     * summary rows in the same order.
+     */
+    public void applyAll(List<Contribution> befores, List<Contribution> afters) {
+        applyTimer.record(() -> {
+            TreeMap<DailyKey, Totals> daily = new TreeMap<>();
+            for (int i = 0; i < befores.size(); i++) {
+                accumulate(daily, befores.get(i), -1);
+                accumulate(daily, afters.get(i), 1);
+            }
+            daily.values().removeIf(Totals::isZero);
+            if (daily.isEmpty()) {
+                return;
+            }
+
+            Map<Long, String> departments = departmentsOf(daily.keySet().stream().map(DailyKey::employeeId).distinct().toList());
+            TreeMap<MonthlyKey, Totals> monthly = new TreeMap<>();
+            daily.forEach((key, totals) -> monthly.computeIfAbsent(
+                    new MonthlyKey(departments.getOrDefault(key.employeeId(), ""), key.day().withDayOfMonth(1)),
+                    k -> new Totals()).add(totals, 1));
+            monthly.values().removeIf(Totals::isZero);
+
+            upsertDaily(daily);
+            upsertMonthly(monthly);
+        });
+    }
+
+    private void accumulate(Map<DailyKey, Totals> daily, Contribution contribution, int sign) {
+        if (contribution == null || contribution.employeeId() == null || contribution.checkIn() == null) {
+            return;
+        }
+        DailyKey key = new DailyKey(contribution.employeeId(), contribution.checkIn().toLocalDate());
+        daily.computeIfAbsent(key, k -> new Totals()).add(totalsOf(contribution), sign);
+    }
+
+    private Totals totalsOf(Contribution contribution) {
+        Totals totals = new Totals();
+        totals.sessions = 1;
+        totals.lateSessions = contribution.checkIn().toLocalTime().isAfter(lateAfter) ? 1 : 0;
+        if (contribution.checkOut() != null) {
+            Integer worked = AttendanceMinutes.worked(contribution.checkIn(), contribution.checkOut());
+            totals.completedSessions = 1;
+            totals.workedMinutes = worked;
+            totals.overtimeMinutes = AttendanceMinutes.overtime(worked);
+        }
+        return totals;
+    }
+
+    private Map<Long, String> departmentsOf(List<Long> employeeIds) {
+        Map<Long, String> departments = new HashMap<>();
+        jdbcTemplate.query("select id, coalesce(department, '') from employees where id = any(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", employeeIds.toArray())),
+                rs -> {
+                    departments.put(rs.getLong(1), rs.getString(2));
+                });
+        return departments;
+    }
+
+    private void upsertDaily(TreeMap<DailyKey, Totals> daily) {
+        List<Object[]> rows = new ArrayList<>(daily.size());
+        daily.forEach((key, t) -> rows.add(new Object[]{key.employeeId(), Date.valueOf(key.day()),
+                t.sessions, t.completedSessions, t.workedMinutes, t.overtimeMinutes, t.lateSessions}));
+        jdbcTemplate.batchUpdate(UPSERT_DAILY, rows);
+    }
+
+    private void upsertMonthly(TreeMap<MonthlyKey, Totals> monthly) {
+        List<Object[]> rows = new ArrayList<>(monthly.size());
+        monthly.forEach((key, t) -> rows.add(new Object[]{key.department(), Date.valueOf(key.month()),
+                t.sessions, t.completedSessions, t.workedMinutes, t.overtimeMinutes, t.lateSessions}));
+        jdbcTemplate.batchUpdate(UPSERT_MONTHLY, rows);
+    }
+
+    /**
+     * Moves an employee's monthly totals to their new department, keeping the monthly
+     * table equal to what a rebuild would produce.
+     */
+    public void moveEmployee(long employeeId, String fromDepartment, String toDepartment) {
+        String from = fromDepartment == null ? "" : fromDepartment;
+        String to = toDepartment == null ? "" : toDepartment;
+        if (from.equals(to)) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query("select date_trunc('month', day)::date, sum(sessions), sum(completed_sessions), " +
+                        "sum(worked_minutes), sum(overtime_minutes), sum(late_sessions) " +
+                        "from attendance_daily_summary where employee_id = ? group by 1 order by 1",
+                rs -> {
+                    rows.add(new Object[]{rs.getDate(1), rs.getLong(2), rs.getLong(3), rs.getLong(4),
+                            rs.getLong(5), rs.getLong(6)});
+                }, employeeId);
+        // Same key order as applyAll: department, then month
+        for (String department : from.compareTo(to) < 0 ? List.of(from, to) : List.of(to, from)) {
+            int sign = department.equals(from) ? -1 : 1;
+            List<Object[]> deltas = rows.stream().map(row -> new Object[]{department, row[0],
+                    sign * (long) row[1], sign * (long) row[2], sign * (long) row[3], sign * (long) row[4],
+                    sign * (long) row[5]}).toList();
+            jdbcTemplate.batchUpdate(UPSERT_MONTHLY, deltas);
+        }
+    }
+
+    /**
+     * Recomputes the summaries of every month touching [from, to] from the raw rows;
+     * null bounds mean everything. Runs in one transaction that first locks both summary
+     * tables against writers: a delta upserted while the rebuild reads attendances could
+     * otherwise be lost (deleted with the old rows) or counted twice (upserted on top of a
+     * recount that already saw its row). Marks wait for the rebuild to commit.
+     *
+     * @return daily summary rows written
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        LocalDate firstDay = from == null ? LocalDate.of(1970, 1, 1) : from.withDayOfMonth(1);
+        LocalDate endDay = to == null ? LocalDate.of(9999, 1, 1) : YearMonth.from(to).plusMonths(1).atDay(1);
+        Timestamp start = Timestamp.valueOf(firstDay.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(endDay.atStartOfDay());
+        long started = System.nanoTime();
+
+        Integer written = transactionTemplate.execute(status -> {
+            // Conflicts with the row-exclusive lock of every delta upsert, not with readers
+            jdbcTemplate.execute("lock table attendance_daily_summary, department_monthly_summary " +
+                    "in share row exclusive mode");
+            jdbcTemplate.update("delete from attendance_daily_summary where day >= ? and day < ?",
+                    Date.valueOf(firstDay), Date.valueOf(endDay));
+            jdbcTemplate.update("delete from department_monthly_summary where month >= ? and month < ?",
+                    Date.valueOf(firstDay), Date.valueOf(endDay));
+            int daily = jdbcTemplate.update("insert into attendance_daily_summary " +
+                            "(employee_id, day, sessions, completed_sessions, worked_minutes, overtime_minutes, late_sessions) " +
+                            "select a.employee_id, cast(a.check_in as date), count(*), count(a.check_out), " +
+                            "coalesce(sum(" + AttendanceMinutes.WORKED_SQL + "), 0), " +
+                            "coalesce(sum(" + AttendanceMinutes.OVERTIME_SQL + "), 0), " +
+                            "count(*) filter (where cast(a.check_in as time) > ?) " +
+                            "from attendances a where a.check_in >= ? and a.check_in < ? group by 1, 2",
+                    Time.valueOf(lateAfter), start, end);
+            jdbcTemplate.update("insert into department_monthly_summary " +
+                            "(department, month, sessions, completed_sessions, worked_minutes, overtime_minutes, late_sessions) " +
+                            "select coalesce(e.department, ''), date_trunc('month', d.day)::date, sum(d.sessions), " +
+                            "sum(d.completed_sessions), sum(d.worked_minutes), sum(d.overtime_minutes), sum(d.late_sessions) " +
+                            "from attendance_daily_summary d join employees e on e.id = d.employee_id " +
+                            "where d.day >= ? and d.day < ? group by 1, 2",
+                    Date.valueOf(firstDay), Date.valueOf(endDay));
+            return daily;
+        });
+        logger.info("Rebuilt attendance summaries for [{}, {}): {} daily rows in {} ms", firstDay, endDay, written,
+                (System.nanoTime() - started) / 1_000_000);
+        return written == null ? 0 : written;
+    }
+
+    public List<AttendanceSummaryResponse.Daily> daily(LocalDate from, LocalDate to, Long employeeId, String department) {
+        StringBuilder sql = new StringBuilder("select d.employee_id, e.name, e.department, d.day, d.sessions, " +
+                "d.completed_sessions, d.worked_minutes, d.overtime_minutes, d.late_sessions " +
+                "from attendance_daily_summary d join employees e on e.id = d.employee_id " +
+                "where d.day >= ? and d.day <= ?");
+        List<Object> args = new ArrayList<>(List.of(Date.valueOf(from), Date.valueOf(to)));
+        if (employeeId != null) {
+            sql.append(" and d.employee_id = ?");
+            args.add(employeeId);
+        }
+        if (department != null) {
+            sql.append(" and coalesce(e.department, '') = ?");
+            args.add(department);
+        }
+        sql.append(" order by d.day, d.employee_id");
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new AttendanceSummaryResponse.Daily(
+                rs.getLong(1), rs.getString(2), rs.getString(3), rs.getDate(4).toLocalDate(),
+                rs.getLong(5), rs.getLong(6), rs.getLong(7), rs.getLong(8), rs.getLong(9)), args.toArray());
+    }
+
+    public AttendanceSummaryResponse.Monthly monthly(YearMonth month) {
+        List<AttendanceSummaryResponse.Department> departments = jdbcTemplate.query(
+                "select department, sessions, completed_sessions, worked_minutes, overtime_minutes, late_sessions " +
+                        "from department_monthly_summary where month = ? and sessions <> 0 order by department",
+                (rs, rowNum) -> new AttendanceSummaryResponse.Department(rs.getString(1), rs.getLong(2),
+                        rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6)),
+                Date.valueOf(month.atDay(1)));
+        long sessions = 0, completed = 0, worked = 0, overtime = 0, late = 0;
+        for (AttendanceSummaryResponse.Department d : departments) {
+            sessions += d.sessions();
+            completed += d.completedSessions();
+            worked += d.workedMinutes();
+            overtime += d.overtimeMinutes();
+            late += d.lateSessions();
+        }
+        return new AttendanceSummaryResponse.Monthly(month.toString(), departments,
+                new AttendanceSummaryResponse.Department(null, sessions, completed, worked, overtime, late));
+    }
+}
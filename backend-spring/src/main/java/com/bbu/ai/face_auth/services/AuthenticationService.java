@@ -9,13 +9,17 @@ import com.bbu.ai.face_auth.models.UserRole;
 import com.bbu.ai.face_auth.models.User;
 import com.bbu.ai.face_auth.repository.RoleRepository;
 import com.bbu.ai.face_auth.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.apache.coyote.BadRequestException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -33,15 +37,26 @@ public class AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
 
+    private final UserInfoService userInfoService;
+
+    private final JwtCustomService jwtService;
+
+    private final TokenRevocationService tokenRevocationService;
+
     public AuthenticationService(
             UserRepository userRepository,
             AuthenticationManager authenticationManager,
-            PasswordEncoder passwordEncoder, RoleRepository roleRepository
+            PasswordEncoder passwordEncoder, RoleRepository roleRepository,
+            UserInfoService userInfoService, JwtCustomService jwtService,
+            TokenRevocationService tokenRevocationService
     ) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.roleRepository = roleRepository;
+        this.userInfoService = userInfoService;
+        this.jwtService = jwtService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     public User signup(UserSignupRequest signUpRequest) throws BadRequestException {
@@ -106,7 +121,65 @@ public class AuthenticationService {
         user.setEmail(signUpRequest.getEmail());
         user.setRoles(roles);
         userRepository.save(user);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userInfoService.invalidate(saved.getUsername());
+        return saved;
+    }
+
+    /**
+     * The one database check of the claims-mode token flow: the refresh token's user
+     * must still exist with the same security version it was issued with.
+     */
+    public User refresh(String refreshToken) {
+        Claims claims;
+        try {
+            claims = jwtService.extractRefreshClaims(refreshToken);
+        } catch (JwtException e) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or expired refresh token");
+        }
+        if (tokenRevocationService.isRevoked(claims.getId())) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token has been revoked");
+        }
+        User user = userRepository.findByUsername(claims.getSubject())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User no longer exists"));
+        Integer securityVersion = claims.get(JwtCustomService.CLAIM_SECURITY_VERSION, Integer.class);
+        if (securityVersion == null || securityVersion != user.getSecurityVersion()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token has been revoked");
+        }
+        return user;
+    }
+
+    /**
+     * Revokes the caller's access token and, when given, its refresh token. A refresh
+     * token belonging to someone else is ignored.
+     */
+    public void logout(String accessToken, String refreshToken) {
+        Claims access = jwtService.extractClaim(accessToken, claims -> claims);
+        tokenRevocationService.revoke(access.getId(), access.getSubject(), access.getExpiration());
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            try {
+                Claims refresh = jwtService.extractRefreshClaims(refreshToken);
+                if (access.getSubject().equals(refresh.getSubject())) {
+                    tokenRevocationService.revoke(refresh.getId(), refresh.getSubject(), refresh.getExpiration());
+                }
+            } catch (JwtException e) {
+                // Already expired or not ours; nothing to revoke
+            }
+        }
+    }
+
+    // Admin revocation of any still-valid token (access or refresh)
+    public void revoke(String token) {
+        Claims claims;
+        try {
+            claims = jwtService.extractClaim(token, c -> c);
+        } catch (JwtException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Token is invalid or already expired");
+        }
+        if (claims.getId() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Token has no id and cannot be revoked");
+        }
+        tokenRevocationService.revoke(claims.getId(), claims.getSubject(), claims.getExpiration());
     }
 
     public User authenticate(UserLoginRequest input) {
@@ -0,0 +1,295 @@
+package com.bbu.ai.face_auth.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-through cache of what the attendance write path needs to know about an
+ * employee: that it exists, its name for the response and its department. A mark can
+ * then attach the employee by reference without selecting the row.
+ * <p>
+ * Bounded like {@link MarkDebouncer}: a fixed slot array, each id hashed to two
+ * candidate slots, the entry keeping its id as a primitive. Inserting into two full
+ * slots evicts the older entry. EmployeeService invalidates an id when it creates,
+ * updates or deletes it, again after the commit, and entries expire after ttl-ms so
+ * edits made by other nodes are picked up too. A load that started before an
+ * invalidation is not cached, so a stale read cannot outlive the write.
+ * <p>
+ * An employee deleted on another node is only dropped here once its entry expires, so
+ * for up to ttl-ms a mark can still name it. The attendance foreign key rejects that
+ * write: AttendanceService then fails just that mark as an unknown employee, and the
+ * write-behind queue dead-letters it.
+ * <p>
+ * On startup the cache is filled in the background by id range on a few threads,
+ * until it holds max-entries employees or their estimated size reaches
+ * warm-up-budget-mb; anything beyond that is loaded on first use. Each thread holds a
+ * pooled connection for as long as its range takes, so warm-up-threads defaults to
+ * one per core but at most 4, leaving most of Hikari's default 10 connections to
+ * requests arriving meanwhile. Raise it only together with the pool size.
+ */
+@Component
+public class EmployeeDirectory {
+
+    private static final Logger logger = LogManager.getLogger(EmployeeDirectory.class);
+
+    public record Entry(long id, String name, String department) {}
+
+    private record Cached(Entry entry, long loadedAtNanos) {}
+
+    private static final String COLUMNS = "select id, name, department from employees";
+    private static final int DEFAULT_MAX_WARM_UP_THREADS = 4;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicReferenceArray<Cached> slots;
+    private final int mask;
+    private final long ttlNanos;
+    private final boolean warmUp;
+    private final int warmUpThreads;
+    private final long warmUpBudgetBytes;
+    // Bumped by every invalidation; loads that straddle one are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public EmployeeDirectory(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${employee.directory.max-entries:131072}") int maxEntries,
+            @Value("${employee.directory.ttl-ms:600000}") long ttlMs,
+            @Value("${employee.directory.warm-up:true}") boolean warmUp,
+            @Value("${employee.directory.warm-up-threads:0}") int warmUpThreads,
+            @Value("${employee.directory.warm-up-budget-mb:32}") int warmUpBudgetMb
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        int size = Integer.highestOneBit(Math.max(2, maxEntries - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMs));
+        this.warmUp = warmUp;
+        this.warmUpThreads = warmUpThreads > 0 ? warmUpThreads
+                : Math.min(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_WARM_UP_THREADS);
+        this.warmUpBudgetBytes = Math.max(0, warmUpBudgetMb) * 1024L * 1024L;
+        this.hitCounter = lookupCounter(meterRegistry, "hit");
+        this.missCounter = lookupCounter(meterRegistry, "miss");
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("employee.directory.lookups").tag("result", result)
+                .description("Employee lookups on the attendance write path by cache outcome")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the employee, from the cache or else the database; null if there is none
+     */
+    public Entry find(long employeeId) {
+        Cached cached = cached(employeeId);
+        if (cached != null) {
+            hitCounter.increment();
+            return cached.entry();
+        }
+        missCounter.increment();
+        long seen = generation.get();
+        List<Entry> rows = jdbcTemplate.query(COLUMNS + " where id = ?",
+                (rs, rowNum) -> new Entry(rs.getLong(1), rs.getString(2), rs.getString(3)), employeeId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        put(rows.get(0), seen);
+        return rows.get(0);
+    }
+
+    /**
+     * Drops the employee now and, inside a transaction, once more after it commits, so
+     * nothing read in between survives the change.
+     */
+    public void invalidate(long employeeId) {
+        evict(employeeId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(employeeId);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    // In the background, so a large directory does not hold up startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (!warmUp) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                warmUp();
+            } catch (RuntimeException e) {
+                logger.warn("Employee directory warm-up stopped: {}", e.getMessage());
+            }
+        }, "employee-directory-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads employees by id range, one range per task, until the directory is full or
+     * the estimated size of what was loaded reaches the budget.
+     *
+     * @return employees loaded
+     */
+    public long warmUp() {
+        long started = System.nanoTime();
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("select min(id) as lo, max(id) as hi from employees");
+        if (bounds.get("lo") == null) {
+            return 0;
+        }
+        long lo = ((Number) bounds.get("lo")).longValue();
+        long hi = ((Number) bounds.get("hi")).longValue();
+        long span = Math.max(1, (hi - lo + 1 + warmUpThreads - 1) / warmUpThreads);
+
+        AtomicLong loaded = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        long limit = slots.length();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(warmUpThreads, runnable -> {
+            Thread thread = new Thread(runnable, "employee-directory-warm-up-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (long from = lo; from <= hi; from += span) {
+                long rangeFrom = from;
+                long rangeTo = Math.min(hi, from + span - 1);
+                tasks.add(pool.submit(() -> loadRange(rangeFrom, rangeTo, loaded, bytes, limit)));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getCause() != null ? e.getCause().getMessage() : e.getMessage(), e);
+        } finally {
+            pool.shutdownNow();
+        }
+        // Fewer stay cached than were loaded when ids share both of their slots
+        logger.info("Employee directory warmed: {} employees loaded (~{} KB), {} cached, in {} ms", loaded.get(),
+                bytes.get() / 1024, size(), (System.nanoTime() - started) / 1_000_000);
+        return loaded.get();
+    }
+
+    private void loadRange(long from, long to, AtomicLong loaded, AtomicLong bytes, long limit) {
+        long seen = generation.get();
+        jdbcTemplate.query(COLUMNS + " where id between ? and ? order by id", rs -> {
+            while (loaded.get() < limit && bytes.get() < warmUpBudgetBytes && rs.next()) {
+                Entry entry = new Entry(rs.getLong(1), rs.getString(2), rs.getString(3));
+                put(entry, seen);
+                loaded.incrementAndGet();
+                bytes.addAndGet(estimatedBytes(entry));
+            }
+            return null;
+        }, from, to);
+    }
+
+    // Rough heap cost of one cached employee: the two records, their strings and the slot
+    static long estimatedBytes(Entry entry) {
+        return 32 + 32 + 4 + stringBytes(entry.name()) + stringBytes(entry.department());
+    }
+
+    private static long stringBytes(String value) {
+        // Header and fields, then the backing array, padded to 8 bytes; UTF-16 in the worst case
+        return value == null ? 0 : 24 + ((16 + 2L * value.length() + 7) & ~7L);
+    }
+
+    private Cached cached(long employeeId) {
+        long now = System.nanoTime();
+        Cached first = slots.get(slot(employeeId));
+        if (first != null && first.entry().id() == employeeId) {
+            return fresh(first, now) ? first : null;
+        }
+        Cached second = slots.get(otherSlot(employeeId));
+        if (second != null && second.entry().id() == employeeId) {
+            return fresh(second, now) ? second : null;
+        }
+        return null;
+    }
+
+    private boolean fresh(Cached cached, long now) {
+        return now - cached.loadedAtNanos() < ttlNanos;
+    }
+
+    // Takes the slot already holding this id, else an empty one, else the older of the two
+    private void put(Entry entry, long seenGeneration) {
+        Cached cached = new Cached(entry, System.nanoTime());
+        int first = slot(entry.id());
+        int second = otherSlot(entry.id());
+        Cached inFirst = slots.get(first);
+        Cached inSecond = slots.get(second);
+        int target;
+        if (inFirst == null || inFirst.entry().id() == entry.id()) {
+            target = first;
+        } else if (inSecond == null || inSecond.entry().id() == entry.id()) {
+            target = second;
+        } else {
+            target = inFirst.loadedAtNanos() - inSecond.loadedAtNanos() <= 0 ? first : second;
+        }
+        slots.set(target, cached);
+        if (generation.get() != seenGeneration) {
+            // An invalidation ran while this was being read; it may be the old row
+            slots.compareAndSet(target, cached, null);
+        }
+    }
+
+    private void evict(long employeeId) {
+        generation.incrementAndGet();
+        for (int index : new int[]{slot(employeeId), otherSlot(employeeId)}) {
+            Cached cached = slots.get(index);
+            if (cached != null && cached.entry().id() == employeeId) {
+                slots.compareAndSet(index, cached, null);
+            }
+        }
+    }
+
+    private int slot(long employeeId) {
+        long h = employeeId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int otherSlot(long employeeId) {
+        long h = (employeeId + 0x632BE59BD9B4E019L) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29)) & mask;
+    }
+}
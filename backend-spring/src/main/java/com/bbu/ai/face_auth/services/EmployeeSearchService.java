@@ -0,0 +1,108 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.EmployeeSearchHit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Employee name typeahead, ranked in Postgres and run in stages that each stop once
+ * the limit is filled. Names starting with the query rank first, alphabetically, and
+ * come straight off idx_employees_name_prefix; while typing a name that is usually all
+ * it takes. Queries of three characters or more then go to the trigram index
+ * (idx_employees_name_trgm): names with a word starting with the query, then names
+ * containing it, and last fuzzy matches (pg_trgm's {@code <%}, word similarity of at
+ * least employee.search.fuzzy-threshold; one wrong letter in a six-letter name scores
+ * 0.5), each group by similarity. Fuzzy matching rechecks every candidate, so it only
+ * runs when the exact matches fall short. Shorter queries have no trigram to look up
+ * and stop at the prefix matches.
+ */
+@Service
+public class EmployeeSearchService {
+
+    public static final int MAX_LIMIT = 50;
+
+    static final int MIN_TRIGRAM_LENGTH = 3;
+
+    private static final String COLUMNS = "select id, name, department, image_url, word_similarity(?, name) as score";
+
+    private static final String PREFIX = COLUMNS + " from employees where lower(name) collate \"C\" like ? escape '\\' " +
+            "order by lower(name) collate \"C\", id limit ?";
+
+    // Prefix matches again, so the limit counts them; the caller skips them
+    private static final String CONTAINS = COLUMNS + " from employees where name ilike ? escape '\\' " +
+            "order by case when lower(name) like ? escape '\\' then 0 when lower(name) like ? escape '\\' then 1 " +
+            "else 2 end, score desc, name, id limit ?";
+
+    private static final String FUZZY = COLUMNS + " from employees where ? <% name and name not ilike ? escape '\\' " +
+            "order by score desc, name, id limit ?";
+
+    private static final RowMapper<EmployeeSearchHit> HIT = (rs, rowNum) -> new EmployeeSearchHit(
+            rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getDouble(5));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String fuzzyThreshold;
+
+    public EmployeeSearchService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${employee.search.fuzzy-threshold:0.5}") double fuzzyThreshold
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fuzzyThreshold = Double.toString(Math.min(Math.max(fuzzyThreshold, 0), 1));
+    }
+
+    @Transactional(readOnly = true)
+    public List<EmployeeSearchHit> search(String query, int limit) {
+        String q = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) {
+            return List.of();
+        }
+        int top = Math.min(Math.max(limit, 1), MAX_LIMIT);
+        String literal = escapeLike(q);
+        List<EmployeeSearchHit> hits = new ArrayList<>(jdbcTemplate.query(PREFIX, HIT, q, literal + "%", top));
+        if (hits.size() == top || q.codePointCount(0, q.length()) < MIN_TRIGRAM_LENGTH) {
+            return hits;
+        }
+
+        String contains = "%" + literal + "%";
+        List<EmployeeSearchHit> containing = jdbcTemplate.query(CONTAINS, HIT, q, contains, literal + "%",
+                "% " + literal + "%", top);
+        Set<Long> prefixed = new HashSet<>();
+        hits.forEach(hit -> prefixed.add(hit.id()));
+        for (EmployeeSearchHit hit : containing) {
+            if (hits.size() < top && !prefixed.contains(hit.id())) {
+                hits.add(hit);
+            }
+        }
+        if (hits.size() == top) {
+            return hits;
+        }
+
+        // Read by the <% operator; local, so it ends with this transaction
+        jdbcTemplate.queryForObject("select set_config('pg_trgm.word_similarity_threshold', ?, true)",
+                String.class, fuzzyThreshold);
+        hits.addAll(jdbcTemplate.query(FUZZY, HIT, q, q, contains, top - hits.size()));
+        return hits;
+    }
+
+    // LIKE treats % and _ as wildcards; the user's text should match literally
+    static String escapeLike(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+}
@@ -1,6 +1,8 @@
 package com.bbu.ai.face_auth.services;
 
+import com.bbu.ai.face_auth.dto.EmployeeDTO;
 import com.bbu.ai.face_auth.dto.EmployeeRequest;
+import com.bbu.ai.face_auth.mapper.CursorSlice;
 import com.bbu.ai.face_auth.mapper.EmployeeMapper;
 import com.bbu.ai.face_auth.models.Employee;
 import com.bbu.ai.face_auth.models.Gender;
@@ -8,11 +10,13 @@ import com.bbu.ai.face_auth.models.User;
 import com.bbu.ai.face_auth.repository.EmployeeRepository;
 import com.bbu.ai.face_auth.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -21,6 +25,11 @@ public class EmployeeService {
 
     private final EmployeeRepository employeeRepository;
     private final UserRepository userRepository;
+    private final FaceMatcherService faceMatcherService;
+    private final AttendanceSummaryService attendanceSummaryService;
+    private final EmployeeDirectory employeeDirectory;
+
+    private static final int MAX_SCROLL_SIZE = 1000;
 
     @Transactional
     public Employee create(EmployeeRequest request) {
@@ -31,12 +40,38 @@ public class EmployeeService {
                 .ifPresent(e -> { throw new RuntimeException("Employee for this user already exists"); });
 
         Employee employee = EmployeeMapper.toEntity(request, user);
-        return employeeRepository.saveAndFlush(employee); // ensures immediate insert
+        Employee saved = employeeRepository.saveAndFlush(employee); // ensures immediate insert
+        employeeDirectory.invalidate(saved.getId());
+        return saved;
+    }
+
+    /**
+     * @param countTotal whether to run the count query for a full Page; without it a
+     *                   Slice only says whether another page follows
+     */
+    @Transactional(readOnly = true)
+    public Slice<EmployeeDTO> getAll(String name, Pageable pageable, boolean countTotal) {
+        return countTotal
+                ? employeeRepository.pageByName(name, pageable)
+                : employeeRepository.sliceByName(name, pageable);
     }
 
+    /**
+     * Ordered by (name, id); each window seeks past the cursor of the previous one.
+     */
     @Transactional(readOnly = true)
-    public Page<Employee> getAll(String name, Pageable pageable) {
-        return employeeRepository.findByNameContaining(name, pageable);
+    public CursorSlice<EmployeeDTO> scroll(String name, String cursor, int size) {
+        ScrollCursor.Key after = ScrollCursor.decode(ScrollCursor.EMPLOYEE, cursor);
+        int window = Math.min(Math.max(size, 1), MAX_SCROLL_SIZE);
+        Limit limit = Limit.of(window + 1);
+        List<EmployeeDTO> rows = after == null
+                ? employeeRepository.scrollByName(name, limit)
+                : employeeRepository.scrollByNameAfter(name, after.value(), after.id(), limit);
+        boolean hasNext = rows.size() > window;
+        List<EmployeeDTO> content = hasNext ? rows.subList(0, window) : rows;
+        EmployeeDTO last = content.isEmpty() ? null : content.get(content.size() - 1);
+        String nextCursor = hasNext ? ScrollCursor.encode(ScrollCursor.EMPLOYEE, last.getName(), last.getId()) : null;
+        return new CursorSlice<>(content, window, hasNext, nextCursor);
     }
 
     @Transactional(readOnly = true)
@@ -53,13 +88,19 @@ public class EmployeeService {
         employee.setDob(request.getDob());
         employee.setGender(request.getGender() != null ? Gender.valueOf(request.getGender()) : null);
         employee.setImageUrl(request.getImageUrl());
+        // Department totals follow the employee's current department
+        attendanceSummaryService.moveEmployee(id, employee.getDepartment(), request.getDepartment());
         employee.setDepartment(request.getDepartment());
 
-        return employeeRepository.saveAndFlush(employee);
+        Employee saved = employeeRepository.saveAndFlush(employee);
+        employeeDirectory.invalidate(id);
+        return saved;
     }
 
     @Transactional
     public void delete(Long id) {
+        faceMatcherService.remove(id);
         employeeRepository.deleteById(id);
+        employeeDirectory.invalidate(id);
     }
 }
@@ -0,0 +1,531 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.embedding.EmbeddingFile;
+import com.bbu.ai.face_auth.embedding.EmbeddingStore;
+import com.bbu.ai.face_auth.embedding.HnswIndex;
+import com.bbu.ai.face_auth.embedding.PqCodes;
+import com.bbu.ai.face_auth.embedding.ProductQuantizer;
+import com.bbu.ai.face_auth.embedding.SnapshotIndex;
+import com.bbu.ai.face_auth.embedding.VectorMath;
+import com.bbu.ai.face_auth.mapper.FaceMatchResponse;
+import com.bbu.ai.face_auth.models.FaceTemplate;
+import com.bbu.ai.face_auth.repository.EmployeeRepository;
+import com.bbu.ai.face_auth.repository.FaceTemplateRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Matching authority for face recognition: holds every enrolled embedding in memory
+ * and answers top-k queries, so the ML service only has to extract embeddings.
+ * face_templates is the durable copy. With face.embedding.store=mapped the embeddings
+ * are also kept in a memory-mapped file that is scanned in place, so a restart only
+ * reloads from the table when the file's ids no longer match it; otherwise they live
+ * in a copy-on-write {@link SnapshotIndex} rebuilt from the table at startup.
+ * <p>
+ * Matching never takes a lock: every store, the PQ codes and the HNSW graph can be
+ * read while a single writer (enrollment, deletion, compaction, merge) changes them.
+ * With face.match.index=hnsw, queries go through an approximate HNSW graph instead
+ * of the exact scan (scores of returned matches are still exact dot products); until
+ * the graph has been built on startup, matches use the exact scan.
+ * With face.match.index=pq, a product-quantized first pass over 64-byte codes picks a
+ * shortlist that is then re-ranked with exact scores from the store.
+ */
+@Service
+public class FaceMatcherService {
+
+    private static final Logger logger = LogManager.getLogger(FaceMatcherService.class);
+
+    private final FaceTemplateRepository faceTemplateRepository;
+    private final EmployeeRepository employeeRepository;
+    private final int dimension;
+    private final float defaultThreshold;
+    private final int defaultTopK;
+    private final String index;
+    private final boolean hnswEnabled;
+    private final boolean pqEnabled;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    private final int hnswEfSearch;
+
+    // Serialises writers only; readers never take it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final double compactRatio;
+    private final int deltaMergeRows;
+    private final double deltaMergeDeadRatio;
+    private final EmbeddingStore store;
+    // Null until load() builds it from the store; only replaced under the write lock
+    private volatile HnswIndex hnsw;
+
+    private final int pqSubspaces;
+    private final int pqIterations;
+    private final int pqTrainSample;
+    private final int pqMinTrainSize;
+    private final int pqRerank;
+    private final double pqRetrainGrowth;
+    private final Object pqRebuildLock = new Object();
+    private volatile PqCodes pq;
+    // Non-null while a rebuild is encoding outside the lock: ids changed meanwhile
+    private volatile Set<Long> pqDirty;
+    private volatile int pqTrainedSize;
+
+    public FaceMatcherService(
+            FaceTemplateRepository faceTemplateRepository,
+            EmployeeRepository employeeRepository,
+            @Value("${face.embedding.dimension:512}") int dimension,
+            @Value("${face.match.threshold:0.7}") float defaultThreshold,
+            @Value("${face.match.top-k:5}") int defaultTopK,
+            @Value("${face.match.index:exact}") String index,
+            @Value("${face.match.hnsw.m:16}") int hnswM,
+            @Value("${face.match.hnsw.ef-construction:200}") int hnswEfConstruction,
+            @Value("${face.match.hnsw.ef-search:64}") int hnswEfSearch,
+            @Value("${face.embedding.store:memory}") String storeType,
+            @Value("${face.embedding.file.path:./data/face-templates.emb}") String filePath,
+            @Value("${face.embedding.file.dtype:f32}") String fileDataType,
+            @Value("${face.embedding.file.compact-ratio:0.25}") double compactRatio,
+            @Value("${face.match.pq.subspaces:64}") int pqSubspaces,
+            @Value("${face.match.pq.iterations:12}") int pqIterations,
+            @Value("${face.match.pq.train-sample:16384}") int pqTrainSample,
+            @Value("${face.match.pq.min-train-size:1024}") int pqMinTrainSize,
+            @Value("${face.match.pq.rerank:64}") int pqRerank,
+            @Value("${face.match.pq.retrain-growth:2.0}") double pqRetrainGrowth,
+            @Value("${face.embedding.delta.capacity:256}") int deltaCapacity,
+            @Value("${face.embedding.delta.merge-rows:1024}") int deltaMergeRows,
+            @Value("${face.embedding.delta.merge-dead-ratio:0.1}") double deltaMergeDeadRatio
+    ) {
+        this.faceTemplateRepository = faceTemplateRepository;
+        this.employeeRepository = employeeRepository;
+        this.dimension = dimension;
+        this.defaultThreshold = defaultThreshold;
+        this.defaultTopK = defaultTopK;
+        this.index = index.toLowerCase(Locale.ROOT);
+        this.hnswEnabled = "hnsw".equals(this.index);
+        this.pqEnabled = "pq".equals(this.index);
+        this.pqSubspaces = pqSubspaces;
+        this.pqIterations = pqIterations;
+        this.pqTrainSample = pqTrainSample;
+        this.pqMinTrainSize = Math.max(ProductQuantizer.CENTROIDS, pqMinTrainSize);
+        this.pqRerank = pqRerank;
+        this.pqRetrainGrowth = pqRetrainGrowth;
+        this.hnswM = hnswM;
+        this.hnswEfConstruction = hnswEfConstruction;
+        this.hnswEfSearch = hnswEfSearch;
+        this.compactRatio = compactRatio;
+        this.deltaMergeRows = deltaMergeRows;
+        this.deltaMergeDeadRatio = deltaMergeDeadRatio;
+        this.store = "mapped".equalsIgnoreCase(storeType)
+                ? openFile(Path.of(filePath), EmbeddingFile.DataType.valueOf(fileDataType.toUpperCase(Locale.ROOT)))
+                : new SnapshotIndex(dimension, deltaCapacity);
+    }
+
+    private EmbeddingFile openFile(Path path, EmbeddingFile.DataType dataType) {
+        try {
+            try {
+                return EmbeddingFile.open(path, dimension, dataType, 1024);
+            } catch (IOException e) {
+                // Unreadable or built for another dimension: start over, load() refills it from the table
+                logger.warn("Discarding embedding file: {}", e.getMessage());
+                Files.deleteIfExists(path);
+                return EmbeddingFile.open(path, dimension, dataType, 1024);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open embedding file " + path, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (store instanceof EmbeddingFile file) {
+            file.close();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        HashSet<Long> templateIds = new HashSet<>(faceTemplateRepository.findAllEmployeeIds());
+        writeLock.lock();
+        try {
+            boolean upToDate = store.size() == templateIds.size();
+            for (long employeeId : store.employeeIds()) {
+                upToDate &= templateIds.contains(employeeId);
+            }
+            if (!upToDate) {
+                reloadFromTemplates(faceTemplateRepository.findAll());
+            }
+            if (hnswEnabled) {
+                rebuildHnsw();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        logger.info("Loaded {} face templates (store={}, index={}, simd={})",
+                store.size(), store instanceof EmbeddingFile ? "mapped" : "memory", index, VectorMath.simdEnabled());
+        if (pqEnabled) {
+            // Matches use the exact scan until the codes are ready
+            rebuildPq();
+        }
+    }
+
+    // Caller holds the write lock
+    private void reloadFromTemplates(List<FaceTemplate> templates) {
+        List<FaceTemplate> usable = templates.stream().filter(t -> t.getDimension() == dimension).toList();
+        long[] ids = usable.stream().mapToLong(FaceTemplate::getEmployeeId).toArray();
+        store.replaceAll(ids, usable.stream().map(t -> VectorMath.fromBytes(t.getEmbedding())).toList());
+    }
+
+    @Transactional
+    public void enroll(Long employeeId, float[] embedding) {
+        if (!employeeRepository.existsById(employeeId)) {
+            throw new IllegalArgumentException("Employee not found with id: " + employeeId);
+        }
+        checkDimension(embedding);
+        float[] unit = VectorMath.normalize(embedding);
+
+        FaceTemplate template = faceTemplateRepository.findById(employeeId).orElseGet(FaceTemplate::new);
+        template.setEmployeeId(employeeId);
+        template.setDimension(dimension);
+        template.setEmbedding(VectorMath.toBytes(unit));
+        faceTemplateRepository.save(template);
+
+        afterCommit(() -> {
+            writeLock.lock();
+            try {
+                store.put(employeeId, unit);
+                updatePq(employeeId, unit);
+                updateHnsw(employeeId, unit);
+            } finally {
+                writeLock.unlock();
+            }
+        });
+    }
+
+    @Transactional
+    public void remove(Long employeeId) {
+        if (faceTemplateRepository.existsById(employeeId)) {
+            faceTemplateRepository.deleteById(employeeId);
+        }
+        afterCommit(() -> {
+            writeLock.lock();
+            try {
+                store.remove(employeeId);
+                updatePq(employeeId, null);
+                updateHnsw(employeeId, null);
+            } finally {
+                writeLock.unlock();
+            }
+        });
+    }
+
+    // The store only changes once face_templates has, so a rolled-back enrollment never becomes matchable
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    public FaceMatchResponse match(float[] embedding, Integer topK, Float threshold) {
+        checkDimension(embedding);
+        float[] unit = VectorMath.normalize(embedding);
+        int k = topK != null && topK > 0 ? topK : defaultTopK;
+        float minScore = threshold != null ? threshold : defaultThreshold;
+
+        List<EmbeddingStore.Match> matches;
+        PqCodes codes = pq;
+        HnswIndex graph = hnsw;
+        if (graph != null) {
+            matches = new ArrayList<>();
+            for (HnswIndex.Result result : graph.search(unit, k)) {
+                matches.add(new EmbeddingStore.Match(result.id(), result.score()));
+            }
+        } else if (codes != null) {
+            matches = rerank(unit, codes.topK(unit, Math.max(k, pqRerank)), k);
+        } else {
+            matches = store.topK(unit, k);
+        }
+
+        boolean recognized = !matches.isEmpty() && matches.get(0).score() >= minScore;
+        return new FaceMatchResponse(
+                recognized,
+                recognized ? matches.get(0).employeeId() : null,
+                minScore,
+                matches.stream()
+                        .map(m -> new FaceMatchResponse.Match(m.employeeId(), m.score()))
+                        .toList()
+        );
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("templates", store.size());
+        stats.put("dimension", dimension);
+        stats.put("offHeapBytes", store.offHeapBytes());
+        if (store instanceof EmbeddingFile file) {
+            stats.put("store", "mapped");
+            stats.put("fileDataType", file.dataType());
+            stats.put("fileGeneration", file.generation());
+            stats.put("fileTombstones", file.tombstones());
+        } else if (store instanceof SnapshotIndex snapshots) {
+            SnapshotIndex.Snapshot snapshot = snapshots.snapshot();
+            stats.put("store", "memory");
+            stats.put("generation", snapshot.generation());
+            stats.put("baseSize", snapshot.baseSize());
+            stats.put("deltaSizes", snapshot.deltaSizes());
+        }
+        stats.put("simd", VectorMath.simdEnabled());
+        stats.put("index", index);
+        HnswIndex graph = hnsw;
+        if (graph != null) {
+            stats.put("hnswEfSearch", graph.efSearch());
+            stats.put("hnswTombstones", graph.deletedCount());
+        }
+        if (pqEnabled) {
+            PqCodes codes = pq;
+            stats.put("pqTrained", codes != null);
+            stats.put("float32BytesPerTemplate", dimension * Float.BYTES);
+            if (codes != null) {
+                stats.put("pqBytesPerTemplate", codes.quantizer().codeBytes());
+                stats.put("pqMemoryBytes", codes.memoryBytes());
+                stats.put("pqTrainedSize", pqTrainedSize);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Drops tombstoned records from the embedding file. The rewrite runs without the
+     * write lock; if an enrollment or deletion slips in before the swap, the rewrite is
+     * discarded and retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${face.embedding.file.compact-interval-ms:60000}")
+    public void compactStore() throws IOException {
+        if (!(store instanceof EmbeddingFile file)) {
+            return;
+        }
+        if (!file.needsCompaction(compactRatio)) {
+            return;
+        }
+        long seen = file.modifications();
+        Path compacted = file.writeCompacted();
+
+        writeLock.lock();
+        try {
+            if (file.modifications() != seen) {
+                Files.deleteIfExists(compacted);
+                return;
+            }
+            file.replaceWith(compacted);
+        } finally {
+            writeLock.unlock();
+        }
+        logger.info("Compacted embedding file to generation {} ({} templates)", file.generation(), file.size());
+    }
+
+    // Caller holds the write lock; null unit means removed
+    private void updatePq(long employeeId, float[] unit) {
+        PqCodes codes = pq;
+        if (codes != null) {
+            if (unit != null) {
+                codes.put(employeeId, unit);
+            } else {
+                codes.remove(employeeId);
+            }
+        }
+        Set<Long> dirty = pqDirty;
+        if (dirty != null) {
+            dirty.add(employeeId);
+        }
+    }
+
+    // Exact scores for the PQ shortlist
+    private List<EmbeddingStore.Match> rerank(float[] unit, List<EmbeddingStore.Match> shortlist, int k) {
+        List<EmbeddingStore.Match> rescored = new ArrayList<>(shortlist.size());
+        Set<Long> seen = new HashSet<>();
+        for (EmbeddingStore.Match candidate : shortlist) {
+            float score = store.score(unit, candidate.employeeId());
+            if (!Float.isNaN(score) && seen.add(candidate.employeeId())) {
+                rescored.add(new EmbeddingStore.Match(candidate.employeeId(), score));
+            }
+        }
+        rescored.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return rescored.size() > k ? rescored.subList(0, k) : rescored;
+    }
+
+    /**
+     * Trains PQ codebooks on a sample of the enrolled set and re-encodes every template.
+     * Training and encoding run outside the write lock; enrollments that land meanwhile
+     * are replayed onto the new codes before they are swapped in.
+     */
+    public void rebuildPq() {
+        synchronized (pqRebuildLock) {
+            long[] ids;
+            writeLock.lock();
+            try {
+                if (store.size() < pqMinTrainSize) {
+                    return;
+                }
+                pqDirty = ConcurrentHashMap.newKeySet();
+                ids = store.employeeIds();
+            } finally {
+                writeLock.unlock();
+            }
+
+            try {
+                long started = System.nanoTime();
+                List<float[]> sample = readVectors(sampleIds(ids)).stream().filter(Objects::nonNull).toList();
+                ProductQuantizer quantizer = ProductQuantizer.train(sample, pqSubspaces, pqIterations, 42);
+                PqCodes codes = new PqCodes(quantizer, ids.length);
+                int codeBytes = quantizer.codeBytes();
+                for (int from = 0; from < ids.length; from += 4096) {
+                    long[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + 4096));
+                    List<float[]> vectors = readVectors(chunk);
+                    byte[] encoded = new byte[chunk.length * codeBytes];
+                    IntStream.range(0, chunk.length).parallel()
+                            .filter(i -> vectors.get(i) != null)
+                            .forEach(i -> quantizer.encode(vectors.get(i), encoded, i * codeBytes));
+                    for (int i = 0; i < chunk.length; i++) {
+                        if (vectors.get(i) != null) {
+                            codes.putEncoded(chunk[i], encoded, i * codeBytes);
+                        }
+                    }
+                }
+
+                writeLock.lock();
+                try {
+                    for (Long employeeId : pqDirty) {
+                        float[] vector = store.get(employeeId);
+                        if (vector != null) {
+                            codes.put(employeeId, vector);
+                        } else {
+                            codes.remove(employeeId);
+                        }
+                    }
+                    pq = codes;
+                    pqTrainedSize = codes.size();
+                } finally {
+                    writeLock.unlock();
+                }
+                logger.info("Trained product quantizer on {} templates in {} ms ({} bytes/template, was {})",
+                        codes.size(), (System.nanoTime() - started) / 1_000_000,
+                        codeBytes, dimension * Float.BYTES);
+            } finally {
+                pqDirty = null;
+            }
+        }
+    }
+
+    // Codebooks drift as the enrolled population grows, so retrain once it has grown enough
+    @Scheduled(fixedDelayString = "${face.match.pq.retrain-check-ms:600000}",
+            initialDelayString = "${face.match.pq.retrain-check-ms:600000}")
+    public void retrainPqIfGrown() {
+        if (!pqEnabled) {
+            return;
+        }
+        int size = store.size();
+        if (pq == null ? size >= pqMinTrainSize : size >= pqTrainedSize * pqRetrainGrowth) {
+            rebuildPq();
+        }
+    }
+
+    private long[] sampleIds(long[] ids) {
+        if (ids.length <= pqTrainSample) {
+            return ids;
+        }
+        long[] shuffled = ids.clone();
+        Random random = new Random(42);
+        for (int i = 0; i < pqTrainSample; i++) {
+            int j = i + random.nextInt(shuffled.length - i);
+            long t = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = t;
+        }
+        return Arrays.copyOf(shuffled, pqTrainSample);
+    }
+
+    // Null where the employee has since been removed
+    private List<float[]> readVectors(long[] ids) {
+        List<float[]> vectors = new ArrayList<>(ids.length);
+        for (long employeeId : ids) {
+            vectors.add(store.get(employeeId));
+        }
+        return vectors;
+    }
+
+    /**
+     * Folds the in-memory delta segments into a new base generation. Runs beside
+     * enrollments and matches; only the final publish is atomic.
+     */
+    @Scheduled(fixedDelayString = "${face.embedding.delta.merge-interval-ms:5000}")
+    public void mergeSnapshotDeltas() {
+        if (store instanceof SnapshotIndex snapshots && snapshots.needsMerge(deltaMergeRows, deltaMergeDeadRatio)
+                && snapshots.mergeDeltas()) {
+            logger.info("Merged embedding deltas into generation {} ({} templates)",
+                    snapshots.snapshot().generation(), snapshots.size());
+        }
+    }
+
+    // Caller holds the write lock; null unit means removed. Before load() there is no
+    // graph yet, and the one it builds from the store will include this change.
+    private void updateHnsw(long employeeId, float[] unit) {
+        HnswIndex graph = hnsw;
+        if (graph == null) {
+            return;
+        }
+        if (unit != null) {
+            graph.insert(employeeId, unit);
+        } else {
+            graph.remove(employeeId);
+        }
+        // Tombstoned nodes still cost traversal time; rebuild once they outnumber live ones
+        if (graph.deletedCount() > Math.max(graph.size(), 64)) {
+            rebuildHnsw();
+        }
+    }
+
+    // Caller holds the write lock
+    private void rebuildHnsw() {
+        HnswIndex rebuilt = new HnswIndex(dimension, hnswM, hnswEfConstruction, hnswEfSearch);
+        for (long employeeId : store.employeeIds()) {
+            rebuilt.insert(employeeId, store.get(employeeId));
+        }
+        hnsw = rebuilt;
+    }
+
+    private void checkDimension(float[] embedding) {
+        if (embedding == null || embedding.length != dimension) {
+            throw new IllegalArgumentException("Embedding must have " + dimension + " dimensions");
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Replays the first successful response for a repeated Idempotency-Key instead of
+ * running the request again. Recent keys live in a bounded in-memory map (O(1)
+ * hit, no DB access); every key is also claimed in the idempotency_keys table so
+ * retries that land after a restart, or on another node, are still recognised.
+ * While the first request runs, its claim holds a lease of lease-ms; a claim left
+ * behind by a crash, or by a failure between the action and storing its response,
+ * is taken over by the first retry after the lease lapses.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LogManager.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 200;
+
+    private record StoredResponse(int statusCode, String body, LocalDateTime expiresAt) {
+        boolean inFlight() {
+            return body == null;
+        }
+    }
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final long ttlMs;
+    private final long leaseMs;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<String, StoredResponse> responses = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public IdempotencyService(
+            IdempotencyRecordRepository idempotencyRecordRepository,
+            ObjectMapper objectMapper,
+            @Value("${attendance.idempotency.ttl-ms:86400000}") long ttlMs,
+            @Value("${attendance.idempotency.lease-ms:30000}") long leaseMs,
+            @Value("${attendance.idempotency.max-entries:50000}") int maxEntries
+    ) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttlMs = ttlMs;
+        this.leaseMs = Math.max(1, leaseMs);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Runs the action once per (scope, key). Without a key the action just runs.
+     * Only 2xx responses are stored; failures release the key so the client can retry.
+     */
+    public ResponseEntity<?> execute(String key, String scope, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        String scopedKey = scope + ":" + key;
+        if (scopedKey.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, HEADER + " is too long");
+        }
+
+        // Microseconds, as stored, since the claim's created_at identifies it afterwards
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        StoredResponse cached = responses.get(scopedKey);
+        if (cached != null && cached.expiresAt().isAfter(now)) {
+            return replay(cached);
+        }
+
+        LocalDateTime expiresAt = now.plus(Duration.ofMillis(ttlMs));
+        LocalDateTime leaseUntil = now.plus(Duration.ofMillis(leaseMs));
+        if (idempotencyRecordRepository.claim(scopedKey, expiresAt, leaseUntil, now) == 0) {
+            StoredResponse stored = idempotencyRecordRepository.findById(scopedKey)
+                    .filter(r -> r.getStatusCode() != null)
+                    .map(r -> new StoredResponse(r.getStatusCode(), r.getResponseBody(), r.getExpiresAt()))
+                    .orElse(new StoredResponse(0, null, expiresAt));
+            if (!stored.inFlight()) {
+                remember(scopedKey, stored);
+            }
+            return replay(stored);
+        }
+
+        // In memory the in-flight marker lapses with the lease, like the claim itself
+        remember(scopedKey, new StoredResponse(0, null, leaseUntil));
+        boolean completed = false;
+        try {
+            ResponseEntity<?> response = action.get();
+            if (response.getStatusCode().is2xxSuccessful()) {
+                String body = toJson(response.getBody());
+                idempotencyRecordRepository.complete(scopedKey, now, response.getStatusCode().value(), body);
+                remember(scopedKey, new StoredResponse(response.getStatusCode().value(), body, expiresAt));
+                completed = true;
+            }
+            return response;
+        } finally {
+            if (!completed) {
+                release(scopedKey, now);
+            }
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored) {
+        if (stored.inFlight()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with this " + HEADER + " is still being processed");
+        }
+        return ResponseEntity.status(stored.statusCode())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body());
+    }
+
+    // FIFO-bounded: the oldest keys fall back to the table once maxEntries is reached
+    private void remember(String scopedKey, StoredResponse stored) {
+        if (responses.put(scopedKey, stored) == null) {
+            insertionOrder.add(scopedKey);
+        }
+        while (responses.size() > maxEntries) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            responses.remove(oldest);
+        }
+    }
+
+    // Best effort: if this fails too, the lease lets a retry take the key over
+    private void release(String scopedKey, LocalDateTime claimedAt) {
+        responses.remove(scopedKey);
+        try {
+            idempotencyRecordRepository.release(scopedKey, claimedAt);
+        } catch (RuntimeException e) {
+            logger.warn("Could not release idempotency key {}: {}", scopedKey, e.getMessage());
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store idempotent response", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.idempotency.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        responses.values().removeIf(stored -> !stored.expiresAt().isAfter(now));
+        insertionOrder.removeIf(key -> !responses.containsKey(key));
+        int deleted = idempotencyRecordRepository.deleteExpired(now);
+        if (deleted > 0) {
+            logger.info("Removed {} expired idempotency keys", deleted);
+        }
+    }
+}
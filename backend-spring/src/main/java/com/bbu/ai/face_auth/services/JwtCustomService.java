@@ -1,32 +1,114 @@
 package com.bbu.ai.face_auth.services;
 
+import com.bbu.ai.face_auth.models.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+/**
+ * Issues and verifies the HS256 bearer tokens. The signing key and parser are built
+ * once; tokens that passed signature verification are cached by their SHA-256 digest
+ * until they expire, so a client polling with the same token is verified only once.
+ * <p>
+ * With {@code udemy.app.jwtMode=claims} access tokens carry the user's roles and
+ * security version, so the filter can authorize from the token alone. They are
+ * short-lived; clients renew them with the refresh token, which is checked against
+ * the database (see {@link AuthenticationService#refresh}).
+ */
 @Service
 public class JwtCustomService {
-    @Value("${udemy.app.jwtSecret}")
-    private String secretKey;
 
-    @Value("${udemy.app.jwtExpirationMs}")
-    private long jwtExpiration;
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_SECURITY_VERSION = "sv";
+    public static final String CLAIM_TYPE = "typ";
+    public static final String TYPE_REFRESH = "refresh";
+
+    private record VerifiedToken(Claims claims, long expiresAtMillis) {}
+
+    private final long jwtExpiration;
+    private final boolean claimsMode;
+    private final long refreshExpiration;
+    private final int cacheMaxEntries;
+    private final Key signingKey;
+    private final JwtParser parser;
+
+    // Keyed by token digest so the cache never holds usable bearer tokens
+    private final ConcurrentHashMap<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer verifyTimer;
+
+    public JwtCustomService(
+            MeterRegistry meterRegistry,
+            @Value("${udemy.app.jwtSecret}") String secretKey,
+            @Value("${udemy.app.jwtExpirationMs}") long jwtExpiration,
+            @Value("${udemy.app.jwtCacheMaxEntries:10000}") int cacheMaxEntries,
+            @Value("${udemy.app.jwtMode:lookup}") String jwtMode,
+            @Value("${udemy.app.jwtAccessExpirationMs:900000}") long accessExpiration,
+            @Value("${udemy.app.jwtRefreshExpirationMs:604800000}") long refreshExpiration
+    ) {
+        this.claimsMode = "claims".equalsIgnoreCase(jwtMode);
+        // Claims-mode access tokens cannot be revoked before they expire, so keep them short
+        this.jwtExpiration = claimsMode ? accessExpiration : jwtExpiration;
+        this.refreshExpiration = refreshExpiration;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+
+        this.cacheHits = Counter.builder("jwt.cache.requests").tag("result", "hit")
+                .description("Token verifications answered from the verified-token cache")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("jwt.cache.requests").tag("result", "miss")
+                .description("Token verifications that had to check the signature")
+                .register(meterRegistry);
+        Gauge.builder("jwt.cache.hit.ratio", this, JwtCustomService::hitRatio)
+                .register(meterRegistry);
+        Gauge.builder("jwt.cache.size", verified, Map::size)
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("jwt.verify")
+                .description("Signature verification and parsing of a bearer token")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
+    // jti; null for tokens issued before ids were added
+    public String extractTokenId(String token) {
+        return extractClaim(token, Claims::getId);
+    }
+
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
@@ -37,13 +119,69 @@ public class JwtCustomService {
     }
 
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
+        if (claimsMode) {
+            extraClaims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList());
+            if (userDetails instanceof User user) {
+                extraClaims.put(CLAIM_SECURITY_VERSION, user.getSecurityVersion());
+            }
+        }
         return buildToken(extraClaims, userDetails, jwtExpiration);
     }
 
+    public String generateRefreshToken(User user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_TYPE, TYPE_REFRESH);
+        claims.put(CLAIM_SECURITY_VERSION, user.getSecurityVersion());
+        return buildToken(claims, user, refreshExpiration);
+    }
+
     public long getExpirationTime() {
         return jwtExpiration;
     }
 
+    public boolean isClaimsMode() {
+        return claimsMode;
+    }
+
+    /**
+     * Verified claims of a refresh token.
+     *
+     * @throws io.jsonwebtoken.JwtException when the token is invalid, expired or not a refresh token
+     */
+    public Claims extractRefreshClaims(String token) {
+        Claims claims = extractAllClaims(token);
+        if (!TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class))) {
+            throw new MalformedJwtException("Not a refresh token");
+        }
+        return claims;
+    }
+
+    /**
+     * Principal built from a claims-mode access token without touching the database.
+     *
+     * @return null when the token does not carry its authorities (lookup-mode token),
+     * or when claims mode is off
+     */
+    public UserDetails principalFromClaims(String token) {
+        if (!claimsMode) {
+            return null;
+        }
+        Claims claims = extractAllClaims(token);
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        if (roles == null || TYPE_REFRESH.equals(claims.get(CLAIM_TYPE, String.class))) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.toString()))
+                .toList();
+        return org.springframework.security.core.userdetails.User.withUsername(claims.getSubject())
+                .password("")
+                .authorities(authorities)
+                .build();
+    }
+
     private String buildToken(
             Map<String, Object> extraClaims,
             UserDetails userDetails,
@@ -53,15 +191,18 @@ public class JwtCustomService {
                 .builder()
                 .setClaims(extraClaims)
                 .setSubject(userDetails.getUsername())
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    // Refresh tokens only work against /api/auth/refresh, never as bearer tokens
     public boolean isTokenValid(String token, UserDetails userDetails) {
         final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token)
+                && !TYPE_REFRESH.equals(extractClaim(token, claims -> claims.get(CLAIM_TYPE, String.class)));
     }
 
     private boolean isTokenExpired(String token) {
@@ -72,17 +213,59 @@ public class JwtCustomService {
         return extractClaim(token, Claims::getExpiration);
     }
 
+    // Expired or tampered tokens always go to the parser, which throws as before
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        String digest = digest(token);
+        VerifiedToken cached = verified.get(digest);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > System.currentTimeMillis()) {
+                cacheHits.increment();
+                return cached.claims();
+            }
+            verified.remove(digest);
+        }
+
+        cacheMisses.increment();
+        Claims claims = verifyTimer.record(() -> parser.parseClaimsJws(token).getBody());
+        if (claims.getExpiration() != null) {
+            remember(digest, new VerifiedToken(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
+    }
+
+    // FIFO-bounded like the idempotency cache; evicted tokens are simply verified again
+    private void remember(String digest, VerifiedToken token) {
+        if (verified.put(digest, token) == null) {
+            insertionOrder.add(digest);
+        }
+        while (verified.size() > cacheMaxEntries) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            verified.remove(oldest);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${udemy.app.jwtCacheSweepIntervalMs:60000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        verified.values().removeIf(token -> token.expiresAtMillis() <= now);
+        insertionOrder.removeIf(digest -> !verified.containsKey(digest));
+    }
+
+    private double hitRatio() {
+        double hits = cacheHits.count();
+        double total = hits + cacheMisses.count();
+        return total == 0 ? 0.0 : hits / total;
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 }
@@ -0,0 +1,121 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.AttendanceResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Suppresses repeat webcam marks for the same employee inside a short window, so a
+ * person standing in front of the camera is not checked in and straight back out.
+ * Backed by a fixed, lock-free slot array indexed by a hash of the employee id:
+ * one small object per processed mark, nothing allocated on a suppressed one.
+ * A mark claims its slot with a pending entry before it runs, so frames arriving
+ * while it is in progress wait for it and share its response instead of marking too.
+ * Two employees sharing a slot simply evict each other, which only means a repeat
+ * mark goes through to the service as it would without debouncing.
+ */
+@Component
+public class MarkDebouncer {
+
+    // markedAtNanos is only meaningful once result is done
+    private record Entry(long employeeId, long markedAtNanos, CompletableFuture<AttendanceResponse> result) {
+        boolean pending() {
+            return !result.isDone();
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final long windowNanos;
+    private final Counter suppressedCounter;
+
+    public MarkDebouncer(
+            MeterRegistry meterRegistry,
+            @Value("${attendance.mark.debounce-ms:10000}") long debounceMs,
+            @Value("${attendance.mark.debounce-slots:4096}") int debounceSlots
+    ) {
+        int size = Integer.highestOneBit(Math.max(2, debounceSlots - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, debounceMs));
+        this.suppressedCounter = Counter.builder("attendance.mark.debounced")
+                .description("Marks answered from the debounce window without touching the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code mark} for this employee, unless a mark of theirs is in progress or
+     * finished inside the debounce window; then that mark's response is returned.
+     * If a mark in progress fails, the frames waiting on it try again themselves.
+     */
+    public AttendanceResponse mark(long employeeId, Supplier<AttendanceResponse> mark) {
+        if (windowNanos == 0) {
+            return mark.get();
+        }
+        int slot = slot(employeeId);
+        while (true) {
+            Entry entry = slots.get(slot);
+            if (entry != null && entry.employeeId() == employeeId) {
+                if (entry.pending()) {
+                    try {
+                        AttendanceResponse response = entry.result().join();
+                        suppressedCounter.increment();
+                        return response;
+                    } catch (CompletionException | CancellationException e) {
+                        continue; // its owner has already freed the slot
+                    }
+                }
+                if (System.nanoTime() - entry.markedAtNanos() < windowNanos) {
+                    suppressedCounter.increment();
+                    return entry.result().join();
+                }
+            } else if (entry != null && entry.pending()) {
+                // Another employee's mark holds the slot; evicting it would let a
+                // second frame of theirs through, so this one goes undebounced
+                return mark.get();
+            }
+
+            Entry claim = new Entry(employeeId, 0, new CompletableFuture<>());
+            if (!slots.compareAndSet(slot, entry, claim)) {
+                continue;
+            }
+            AttendanceResponse response;
+            try {
+                response = mark.get();
+            } catch (RuntimeException | Error e) {
+                slots.compareAndSet(slot, claim, null);
+                claim.result().completeExceptionally(e);
+                throw e;
+            }
+            claim.result().complete(response);
+            slots.compareAndSet(slot, claim, new Entry(employeeId, System.nanoTime(), claim.result()));
+            return response;
+        }
+    }
+
+    /**
+     * Drops this employee's remembered mark, so their next frame is marked against the
+     * attendance as it now is. A mark still in progress is left to finish.
+     */
+    public void forget(long employeeId) {
+        int slot = slot(employeeId);
+        Entry entry = slots.get(slot);
+        if (entry != null && entry.employeeId() == employeeId && !entry.pending()) {
+            slots.compareAndSet(slot, entry, null);
+        }
+    }
+
+    private int slot(long employeeId) {
+        long h = employeeId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
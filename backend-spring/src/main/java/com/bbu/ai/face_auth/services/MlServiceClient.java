@@ -0,0 +1,157 @@
+package com.bbu.ai.face_auth.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client for the FastAPI face service (ml-fastapi). One HttpClient is shared for the
+ * whole application so connections to the ML service stay open between frames
+ * instead of paying a new TCP handshake per request.
+ */
+@Service
+public class MlServiceClient {
+
+    private static final Logger logger = LogManager.getLogger(MlServiceClient.class);
+
+    private static final String EMPLOYEE_KEY_PREFIX = "employee:";
+
+    /**
+     * Outcome of /verify. {@code employeeId} is set only when the service matched a face
+     * above the threshold.
+     */
+    public record VerifyResult(boolean matched, Long employeeId, double score, String message) {}
+
+    private final ObjectMapper objectMapper;
+    private final URI verifyUri;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+    private final HttpClient httpClient;
+
+    public MlServiceClient(
+            ObjectMapper objectMapper,
+            @Value("${ml.service.url:http://localhost:8000}") String baseUrl,
+            @Value("${ml.service.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${ml.service.timeout-ms:5000}") long timeoutMs,
+            @Value("${ml.service.threads:4}") int threads
+    ) {
+        this.objectMapper = objectMapper;
+        this.verifyUri = URI.create(baseUrl.replaceAll("/+$", "") + "/verify");
+        this.timeout = Duration.ofMillis(timeoutMs);
+        // Only used by the client for connection and response plumbing; callers block on send()
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1024), runnable -> {
+            Thread thread = new Thread(runnable, "ml-client-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends one frame to /verify.
+     *
+     * @throws ResponseStatusException 504 when the service does not answer in time, 502
+     *                                 when it is unreachable or answers with an error
+     */
+    public VerifyResult verify(byte[] image, String filename, String contentType, float threshold) {
+        String boundary = "----face-auth-" + UUID.randomUUID();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(verifyUri + "?threshold=" + threshold))
+                .timeout(timeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, image, filename, contentType)))
+                .build();
+
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (HttpTimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Face service did not answer in time");
+        } catch (IOException e) {
+            logger.warn("Face service call failed: {}", e.toString());
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Face service is unavailable");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while calling face service");
+        }
+        if (response.statusCode() / 100 != 2) {
+            logger.warn("Face service answered {}: {}", response.statusCode(),
+                    new String(response.body(), StandardCharsets.UTF_8));
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Face service answered " + response.statusCode());
+        }
+        return parse(response.body());
+    }
+
+    private VerifyResult parse(byte[] body) {
+        JsonNode json;
+        try {
+            json = objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Face service sent an unreadable response");
+        }
+        double score = json.path("score").asDouble(0.0);
+        String message = json.path("message").asText(null);
+        if (!"success".equals(json.path("status").asText())) {
+            return new VerifyResult(false, null, score, message);
+        }
+        return new VerifyResult(true, employeeId(json.path("employee_id").asText("")), score, message);
+    }
+
+    // The service keys embeddings as "employee:<id>" in Redis
+    private static Long employeeId(String key) {
+        String id = key.toLowerCase(Locale.ROOT).startsWith(EMPLOYEE_KEY_PREFIX)
+                ? key.substring(EMPLOYEE_KEY_PREFIX.length())
+                : key;
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Face service returned an unknown employee key: " + key);
+        }
+    }
+
+    private static byte[] multipart(String boundary, byte[] image, String filename, String contentType) {
+        String safeName = filename == null || filename.isBlank() ? "frame.jpg" : filename.replace("\"", "");
+        String type = contentType == null || contentType.isBlank() ? "application/octet-stream" : contentType;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(image.length + 256);
+        out.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + safeName + "\"\r\n"
+                + "Content-Type: " + type + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(image);
+        out.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,136 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.repository.AttendanceRepository;
+import com.bbu.ai.face_auth.repository.OpenAttendanceView;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of open attendance sessions (checked in, not yet checked out),
+ * keyed by employee id. Lets markAttendance decide check-in vs check-out without
+ * querying the attendances table.
+ */
+@Component
+public class OpenAttendanceIndex {
+
+    private static final Logger logger = LogManager.getLogger(OpenAttendanceIndex.class);
+
+    public record OpenSession(long attendanceId, LocalDateTime checkIn) {}
+
+    /**
+     * Reads of an open session's row also bound check_in to this much either side of
+     * the remembered value, so a partitioned table is pruned to the month in question
+     * instead of probing every partition by id. The slack covers the stored value
+     * being rounded to microseconds.
+     */
+    static final Duration CHECK_IN_SLACK = Duration.ofSeconds(1);
+
+    private final AttendanceRepository attendanceRepository;
+    private final AttendanceIngestQueue attendanceIngestQueue;
+    private final ConcurrentHashMap<Long, OpenSession> sessions = new ConcurrentHashMap<>();
+
+    public OpenAttendanceIndex(AttendanceRepository attendanceRepository, AttendanceIngestQueue attendanceIngestQueue) {
+        this.attendanceRepository = attendanceRepository;
+        this.attendanceIngestQueue = attendanceIngestQueue;
+    }
+
+    public OpenSession get(long employeeId) {
+        return sessions.get(employeeId);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    // Keeps the latest check-in when an employee somehow has several open rows
+    public void open(long employeeId, long attendanceId, LocalDateTime checkIn) {
+        OpenSession session = new OpenSession(attendanceId, checkIn);
+        sessions.merge(employeeId, session, (current, next) ->
+                current.checkIn() != null && next.checkIn() != null && current.checkIn().isAfter(next.checkIn())
+                        ? current : next);
+    }
+
+    public void close(long employeeId, long attendanceId) {
+        sessions.computeIfPresent(employeeId, (id, current) ->
+                current.attendanceId() == attendanceId ? null : current);
+    }
+
+    // Used when only the attendance id is known (admin delete); linear, but off the hot path
+    public void closeAttendance(long attendanceId) {
+        sessions.values().removeIf(session -> session.attendanceId() == attendanceId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reconcile();
+        logger.info("Open attendance index warmed with {} sessions", sessions.size());
+    }
+
+    /**
+     * Compares the index against the attendances table and repairs any drift
+     * (rows closed or opened by another node, admin edits, missed updates).
+     * Entries touched by a concurrent mark while the query ran, or still waiting in
+     * the write-behind queue, are left alone.
+     *
+     * @return number of entries that were added, replaced or removed
+     */
+    @Scheduled(
+            initialDelayString = "${attendance.open-index.reconcile-interval-ms:300000}",
+            fixedDelayString = "${attendance.open-index.reconcile-interval-ms:300000}"
+    )
+    public int reconcile() {
+        Map<Long, OpenSession> before = new HashMap<>(sessions);
+        List<OpenAttendanceView> rows = attendanceRepository.findOpenSessions();
+
+        Map<Long, OpenSession> expected = new HashMap<>();
+        for (OpenAttendanceView row : rows) {
+            expected.put(row.getEmployeeId(), new OpenSession(row.getAttendanceId(), row.getCheckIn()));
+        }
+
+        int repaired = 0;
+        Set<Long> employeeIds = new HashSet<>(before.keySet());
+        employeeIds.addAll(expected.keySet());
+
+        for (Long employeeId : employeeIds) {
+            OpenSession seen = before.get(employeeId);
+            OpenSession wanted = expected.get(employeeId);
+            if (seen != null && wanted != null && seen.attendanceId() == wanted.attendanceId()) {
+                continue;
+            }
+            if (seen != null && attendanceIngestQueue.isPending(seen.attendanceId())) {
+                // Acknowledged by the write-behind queue but not in the table yet
+                continue;
+            }
+
+            boolean changed;
+            if (seen == null) {
+                changed = sessions.putIfAbsent(employeeId, wanted) == null;
+            } else if (wanted == null) {
+                changed = sessions.remove(employeeId, seen);
+            } else {
+                changed = sessions.replace(employeeId, seen, wanted);
+            }
+            if (changed) {
+                repaired++;
+            }
+        }
+
+        if (repaired > 0) {
+            logger.info("Open attendance index reconciled, {} entries repaired", repaired);
+        }
+        return repaired;
+    }
+}
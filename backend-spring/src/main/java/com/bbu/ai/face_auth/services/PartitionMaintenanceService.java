@@ -0,0 +1,187 @@
+package com.bbu.ai.face_auth.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of attendances in step with the calendar, once the
+ * table has been converted with db/partitioning/partition_attendances.sql. Partitions
+ * are created some months ahead so rows never land in the default partition in normal
+ * operation. When a month's rows did end up there (clock skew, a long outage of this
+ * job), they are moved into the new partition in the same transaction. Partitions past
+ * the retention window are detached, which keeps them as plain tables for archiving,
+ * or dropped.
+ * <p>
+ * Off unless attendance.partitioning.enabled is set; on an unpartitioned table it
+ * only logs that there is nothing to do. Detaching or dropping a month does not
+ * touch the summary tables, but rebuilding those months afterwards would zero them.
+ */
+@Service
+public class PartitionMaintenanceService {
+
+    private static final Logger logger = LogManager.getLogger(PartitionMaintenanceService.class);
+
+    public enum Retention { DETACH, DROP }
+
+    public record Result(int created, int moved, int retired) {}
+
+    private static final String PARENT = "attendances";
+    private static final Pattern MONTHLY = Pattern.compile("^" + PARENT + "_p(\\d{6})$");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM", Locale.ROOT);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retainMonths;
+    private final Retention retention;
+
+    public PartitionMaintenanceService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${attendance.partitioning.enabled:false}") boolean enabled,
+            @Value("${attendance.partitioning.months-ahead:3}") int monthsAhead,
+            @Value("${attendance.partitioning.retain-months:0}") int retainMonths,
+            @Value("${attendance.partitioning.retention:detach}") String retention
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retainMonths = Math.max(0, retainMonths);
+        this.retention = Retention.valueOf(retention.trim().toUpperCase(Locale.ROOT));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        scheduledMaintain();
+    }
+
+    @Scheduled(cron = "${attendance.partitioning.cron:0 15 2 * * *}")
+    public void scheduledMaintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            maintain(YearMonth.now());
+        } catch (RuntimeException e) {
+            logger.error("Attendance partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ensures partitions for {@code current} and the configured months after it, then
+     * retires those older than the retention window (retain-months 0 keeps everything).
+     */
+    public synchronized Result maintain(YearMonth current) {
+        if (!isPartitioned()) {
+            logger.info("{} is not partitioned; run db/partitioning/partition_attendances.sql first", PARENT);
+            return new Result(0, 0, 0);
+        }
+        List<String> partitions = partitionNames();
+        String defaultPartition = defaultPartition();
+
+        int created = 0;
+        int moved = 0;
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = partitionName(month);
+            if (!partitions.contains(name)) {
+                moved += create(name, month, defaultPartition);
+                created++;
+            }
+        }
+
+        int retired = 0;
+        if (retainMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retainMonths);
+            for (String name : partitions) {
+                Matcher matcher = MONTHLY.matcher(name);
+                if (matcher.matches() && YearMonth.parse(matcher.group(1), SUFFIX).isBefore(oldestKept)) {
+                    retire(name);
+                    retired++;
+                }
+            }
+        }
+
+        if (created > 0 || retired > 0) {
+            logger.info("Attendance partitions: {} created ({} rows moved from default), {} {}", created, moved,
+                    retired, retention == Retention.DROP ? "dropped" : "detached");
+        }
+        return new Result(created, moved, retired);
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARENT + "_p" + month.format(SUFFIX);
+    }
+
+    private boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from pg_partitioned_table where partrelid = to_regclass(?))",
+                Boolean.class, PARENT));
+    }
+
+    private List<String> partitionNames() {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+                "where i.inhparent = to_regclass(?) order by c.relname", String.class, PARENT);
+    }
+
+    private String defaultPartition() {
+        List<String> names = jdbcTemplate.queryForList("select c.relname from pg_inherits i " +
+                "join pg_class c on c.oid = i.inhrelid where i.inhparent = to_regclass(?) " +
+                "and pg_get_expr(c.relpartbound, c.oid) = 'DEFAULT'", String.class, PARENT);
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    // Returns the number of rows moved out of the default partition
+    private int create(String name, YearMonth month, String defaultPartition) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        LocalDate fromDay = month.atDay(1);
+        LocalDate toDay = month.plusMonths(1).atDay(1);
+
+        Integer moved = transactionTemplate.execute(status -> {
+            boolean stranded = defaultPartition != null && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "select exists (select 1 from " + defaultPartition + " where check_in >= ? and check_in < ?)",
+                    Boolean.class, from, to));
+            if (!stranded) {
+                jdbcTemplate.execute("create table " + name + " partition of " + PARENT +
+                        " for values from ('" + fromDay + "') to ('" + toDay + "')");
+                return 0;
+            }
+            // Attaching checks the default partition no longer holds rows for the range
+            jdbcTemplate.execute("create table " + name + " (like " + PARENT + " including defaults including constraints)");
+            int rows = jdbcTemplate.update("insert into " + name + " select * from " + defaultPartition +
+                    " where check_in >= ? and check_in < ?", from, to);
+            jdbcTemplate.update("delete from " + defaultPartition + " where check_in >= ? and check_in < ?", from, to);
+            jdbcTemplate.execute("alter table " + PARENT + " attach partition " + name +
+                    " for values from ('" + fromDay + "') to ('" + toDay + "')");
+            return rows;
+        });
+        return moved == null ? 0 : moved;
+    }
+
+    private void retire(String name) {
+        if (retention == Retention.DROP) {
+            jdbcTemplate.execute("drop table " + name);
+        } else {
+            jdbcTemplate.execute("alter table " + PARENT + " detach partition " + name);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.AttendanceResponse;
+import com.bbu.ai.face_auth.mapper.RecognizeResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kiosk gate in one request: the frame goes to the ML service for verification and,
+ * on a match, attendance is marked straight away instead of the kiosk making a
+ * second call to /api/admin/attendance/mark.
+ */
+@Service
+public class RecognitionService {
+
+    private final MlServiceClient mlServiceClient;
+    private final AttendanceService attendanceService;
+    private final float defaultThreshold;
+    private final Timer mlTimer;
+    private final Timer markTimer;
+
+    public RecognitionService(
+            MlServiceClient mlServiceClient,
+            AttendanceService attendanceService,
+            MeterRegistry meterRegistry,
+            @Value("${face.match.threshold:0.7}") float defaultThreshold
+    ) {
+        this.mlServiceClient = mlServiceClient;
+        this.attendanceService = attendanceService;
+        this.defaultThreshold = defaultThreshold;
+        this.mlTimer = Timer.builder("attendance.recognize")
+                .description("Time spent in each stage of recognize-and-mark")
+                .tag("stage", "ml")
+                .register(meterRegistry);
+        this.markTimer = Timer.builder("attendance.recognize")
+                .description("Time spent in each stage of recognize-and-mark")
+                .tag("stage", "mark")
+                .register(meterRegistry);
+    }
+
+    public RecognizeResponse recognizeAndMark(byte[] image, String filename, String contentType, Float threshold,
+                                              String note, String location) {
+        long start = System.nanoTime();
+        MlServiceClient.VerifyResult result = mlServiceClient.verify(image, filename, contentType,
+                threshold != null ? threshold : defaultThreshold);
+        long verified = System.nanoTime();
+        mlTimer.record(verified - start, TimeUnit.NANOSECONDS);
+
+        AttendanceResponse attendance = null;
+        long marked = verified;
+        if (result.matched()) {
+            attendance = attendanceService.markAttendance(result.employeeId(), note, location);
+            marked = System.nanoTime();
+            markTimer.record(marked - verified, TimeUnit.NANOSECONDS);
+        }
+
+        RecognizeResponse.Timings timings = new RecognizeResponse.Timings(
+                millis(verified - start), millis(marked - verified), millis(System.nanoTime() - start));
+        return new RecognizeResponse(result.matched(), result.employeeId(), result.score(), result.message(),
+                attendance, timings);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
@@ -0,0 +1,67 @@
+package com.bbu.ai.face_auth.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination: the sort key and id of the last
+ * row returned, base64url encoded and tagged with the listing it belongs to. The next
+ * window then starts with an index seek past that row instead of an OFFSET scan.
+ */
+public final class ScrollCursor {
+
+    public static final String ATTENDANCE = "attendance";
+    public static final String EMPLOYEE = "employee";
+
+    private ScrollCursor() {
+    }
+
+    public record Key(String value, long id) {
+        public LocalDateTime asDateTime() {
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeParseException e) {
+                throw invalid();
+            }
+        }
+    }
+
+    public static String encode(String kind, Object value, long id) {
+        String raw = kind + "|" + id + "|" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the decoded key, or null for a missing cursor (first window)
+     */
+    public static Key decode(String kind, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+        // The value goes last since a name may itself contain the separator
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3 || !parts[0].equals(kind)) {
+            throw invalid();
+        }
+        try {
+            return new Key(parts[2], Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            throw invalid();
+        }
+    }
+
+    private static ResponseStatusException invalid() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
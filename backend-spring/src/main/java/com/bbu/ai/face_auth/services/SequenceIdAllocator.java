@@ -0,0 +1,37 @@
+package com.bbu.ai.face_auth.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Hands out ids from a table's backing Postgres sequence, reserving them in blocks
+ * so rows can be inserted with explicit ids (and therefore batched) without one
+ * nextval round trip per row.
+ */
+public class SequenceIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String sql;
+    private final int blockSize;
+    private final ArrayDeque<Long> reserved = new ArrayDeque<>();
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate, String table, String column, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockSize = Math.max(1, blockSize);
+        this.sql = "select nextval(pg_get_serial_sequence('" + table + "', '" + column + "')) " +
+                "from generate_series(1, ?)";
+    }
+
+    public synchronized long next() {
+        if (reserved.isEmpty()) {
+            reserved.addAll(reserve(blockSize));
+        }
+        return reserved.poll();
+    }
+
+    public List<Long> reserve(int count) {
+        return jdbcTemplate.queryForList(sql, Long.class, count);
+    }
+}
@@ -0,0 +1,158 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.models.RevokedToken;
+import com.bbu.ai.face_auth.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked token ids (jti). Checking a token costs one Bloom filter probe; only a
+ * probe that hits (a revoked token, or a false positive) looks at the exact set.
+ * Neither touches the database: revoked_tokens is the durable copy, reloaded by the
+ * periodic rebuild, which also picks up revocations made on other nodes and drops
+ * entries whose token has expired anyway.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LogManager.getLogger(TokenRevocationService.class);
+
+    // Filter and exact set are swapped together on rebuild
+    private record State(BloomFilter filter, ConcurrentHashMap<String, Long> expiresAtMillis) {}
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final double falsePositiveRate;
+    private final int minCapacity;
+    private volatile State state;
+
+    private final Counter clearCounter;
+    private final Counter revokedCounter;
+    private final Counter falsePositiveCounter;
+
+    public TokenRevocationService(
+            RevokedTokenRepository revokedTokenRepository,
+            MeterRegistry meterRegistry,
+            @Value("${udemy.app.revocationBloomFpp:0.001}") double falsePositiveRate,
+            @Value("${udemy.app.revocationBloomMinCapacity:1024}") int minCapacity
+    ) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minCapacity = Math.max(16, minCapacity);
+        this.state = new State(new BloomFilter(this.minCapacity, falsePositiveRate), new ConcurrentHashMap<>());
+
+        this.clearCounter = checkCounter(meterRegistry, "clear");
+        this.revokedCounter = checkCounter(meterRegistry, "revoked");
+        this.falsePositiveCounter = checkCounter(meterRegistry, "false_positive");
+        Gauge.builder("auth.revocation.size", this, service -> service.state.expiresAtMillis().size())
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+        Gauge.builder("auth.revocation.bloom.expected.fpp", this,
+                        service -> service.state.filter().expectedFalsePositiveRate())
+                .description("Theoretical false-positive rate of the filter at its current fill")
+                .register(meterRegistry);
+        Gauge.builder("auth.revocation.bloom.observed.fpp", this, TokenRevocationService::observedFalsePositiveRate)
+                .description("Share of non-revoked tokens that the filter sent to the exact set")
+                .register(meterRegistry);
+    }
+
+    private static Counter checkCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("auth.revocation.checks").tag("result", result)
+                .description("Revocation checks by outcome")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param tokenId the token's jti; tokens issued without one cannot be revoked
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        State current = state;
+        if (!current.filter().mightContain(tokenId)) {
+            clearCounter.increment();
+            return false;
+        }
+        Long expiresAt = current.expiresAtMillis().get(tokenId);
+        if (expiresAt == null) {
+            falsePositiveCounter.increment();
+            return false;
+        }
+        revokedCounter.increment();
+        return true;
+    }
+
+    public void revoke(String tokenId, String username, Date expiresAt) {
+        if (tokenId == null || expiresAt == null || expiresAt.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        LocalDateTime expires = LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault());
+        revokedTokenRepository.save(new RevokedToken(tokenId, username, expires, LocalDateTime.now()));
+        State current = state;
+        current.expiresAtMillis().put(tokenId, expiresAt.getTime());
+        current.filter().put(tokenId);
+        logger.info("Revoked token {} of {}", tokenId, username);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    /**
+     * Prunes expired revocations and rebuilds filter and set from revoked_tokens,
+     * sized for the current count so the false-positive rate stays at its target.
+     */
+    @Scheduled(fixedDelayString = "${udemy.app.revocationRebuildIntervalMs:30000}",
+            initialDelayString = "${udemy.app.revocationRebuildIntervalMs:30000}")
+    public void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        long nowMillis = System.currentTimeMillis();
+        int pruned = revokedTokenRepository.deleteExpired(now);
+
+        ConcurrentHashMap<String, Long> active = new ConcurrentHashMap<>();
+        for (RevokedToken token : revokedTokenRepository.findActive(now)) {
+            active.put(token.getTokenId(), token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        // Revocations made here while the table was being read
+        for (Map.Entry<String, Long> entry : state.expiresAtMillis().entrySet()) {
+            if (entry.getValue() > nowMillis) {
+                active.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        BloomFilter filter = new BloomFilter(Math.max(minCapacity, active.size() * 2), falsePositiveRate);
+        active.keySet().forEach(filter::put);
+        State previous = state;
+        state = new State(filter, active);
+        // A revoke that raced the swap wrote into the old state; carry it over
+        previous.expiresAtMillis().forEach((tokenId, expiresAt) -> {
+            if (expiresAt > nowMillis && active.putIfAbsent(tokenId, expiresAt) == null) {
+                filter.put(tokenId);
+            }
+        });
+        if (pruned > 0) {
+            logger.info("Pruned {} expired token revocations; {} active", pruned, active.size());
+        }
+    }
+
+    private double observedFalsePositiveRate() {
+        double falsePositives = falsePositiveCounter.count();
+        double negatives = falsePositives + clearCounter.count();
+        return negatives == 0 ? 0.0 : falsePositives / negatives;
+    }
+}
@@ -0,0 +1,437 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.BulkUserResult;
+import com.bbu.ai.face_auth.mapper.BulkUserSummary;
+import com.bbu.ai.face_auth.models.EnumRole;
+import com.bbu.ai.face_auth.models.UserRole;
+import com.bbu.ai.face_auth.repository.RoleRepository;
+import com.bbu.ai.face_auth.services.UserImportReader.ImportRow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Creates users in bulk from a JSON array or a CSV file. The body is read and
+ * committed in chunks; per chunk there is one set-based uniqueness query, BCrypt
+ * spread over all cores, and two JDBC batches (users, user_roles) in one transaction.
+ * Roles come from a table read once per import. Rows fail individually; a chunk
+ * that loses a uniqueness race to a concurrent insert is re-checked and retried once.
+ * <p>
+ * Hashing here bypasses the login encoder's small bounded pool on purpose, so only
+ * one import runs at a time to leave the other cores to sign-ins.
+ */
+@Service
+public class UserBulkImportService {
+
+    private static final Logger logger = LogManager.getLogger(UserBulkImportService.class);
+
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+
+    private static final String CONFLICTS_SQL = "select username, email, phone_number from users " +
+            "where username = any(?) or email = any(?) or phone_number = any(?)";
+    private static final String INSERT_USER_SQL = "insert into users " +
+            "(id, name, username, email, password, phone_number, security_version) values (?, ?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_ROLE_SQL = "insert into user_roles (user_id, role_id) values (?, ?)";
+
+    /**
+     * Receives results as each chunk is committed, in row order.
+     */
+    public interface Listener {
+        void onRow(BulkUserResult result);
+
+        default void onProgress(int processed, int created, int failed) {
+        }
+    }
+
+    /**
+     * The right to run the one import allowed at a time. Taken up front by callers that
+     * must answer 409 before committing to a response, and released by close(), from
+     * whichever thread finishes the import.
+     */
+    public final class ImportSlot implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ImportSlot() {
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                importPermit.release();
+            }
+        }
+    }
+
+    // A row that passed validation and is waiting for its chunk to be written
+    private record Candidate(int index, ImportRow row, Set<Long> roleIds, String passwordHash) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RoleRepository roleRepository;
+    private final UserInfoService userInfoService;
+    private final ObjectMapper objectMapper;
+    private final SequenceIdAllocator userIds;
+    private final BCryptPasswordEncoder encoder;
+    private final ExecutorService hashPool;
+    private final int chunkSize;
+    // A permit rather than a lock: a streamed import ends on another thread than it started
+    private final Semaphore importPermit = new Semaphore(1);
+
+    private final Counter createdCounter;
+    private final Counter failedCounter;
+    private final Timer chunkTimer;
+
+    public UserBulkImportService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            RoleRepository roleRepository,
+            UserInfoService userInfoService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${udemy.app.bcryptStrength:10}") int bcryptStrength,
+            @Value("${udemy.app.userImportThreads:0}") int threads,
+            @Value("${udemy.app.userImportChunkSize:250}") int chunkSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.roleRepository = roleRepository;
+        this.userInfoService = userInfoService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.userIds = new SequenceIdAllocator(jdbcTemplate, "users", "id", this.chunkSize);
+        this.encoder = new BCryptPasswordEncoder(bcryptStrength);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashPool = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.createdCounter = rowCounter(meterRegistry, BulkUserResult.CREATED);
+        this.failedCounter = rowCounter(meterRegistry, BulkUserResult.FAILED);
+        this.chunkTimer = Timer.builder("users.import.chunk")
+                .description("Validate, hash and insert one chunk of a bulk user import")
+                .register(meterRegistry);
+    }
+
+    private static Counter rowCounter(MeterRegistry meterRegistry, String status) {
+        return Counter.builder("users.import.rows").tag("status", status)
+                .description("Bulk-imported user rows by outcome")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashPool.shutdownNow();
+    }
+
+    /**
+     * @throws ResponseStatusException 409 while another import holds the slot
+     */
+    public ImportSlot reserve() {
+        if (!importPermit.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another bulk import is already running");
+        }
+        return new ImportSlot();
+    }
+
+    /**
+     * @param csv whether the body is CSV (with a header row) rather than a JSON array
+     * @param keepResults whether the summary should carry every row's result
+     */
+    public BulkUserSummary importUsers(InputStream body, boolean csv, boolean keepResults, Listener listener)
+            throws IOException {
+        try (ImportSlot slot = reserve()) {
+            return importUsers(slot, body, csv, keepResults, listener);
+        }
+    }
+
+    /**
+     * Runs the import in a slot from {@link #reserve()}, releasing it when done.
+     */
+    public BulkUserSummary importUsers(ImportSlot slot, InputStream body, boolean csv, boolean keepResults,
+                                       Listener listener) throws IOException {
+        long started = System.nanoTime();
+        try (slot; UserImportReader reader = csv ? UserImportReader.csv(body) : UserImportReader.json(body, objectMapper)) {
+            Map<EnumRole, Long> roleIds = loadRoles();
+            Set<String> seen = new HashSet<>();
+            List<BulkUserResult> kept = keepResults ? new ArrayList<>() : null;
+            int[] totals = new int[3];
+            Listener sink = result -> {
+                totals[0]++;
+                totals[BulkUserResult.CREATED.equals(result.status()) ? 1 : 2]++;
+                if (kept != null) {
+                    kept.add(result);
+                }
+                listener.onRow(result);
+            };
+
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    chunkTimer.record(() -> processChunk(List.copyOf(chunk), roleIds, seen, sink));
+                    chunk.clear();
+                    listener.onProgress(totals[0], totals[1], totals[2]);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunkTimer.record(() -> processChunk(chunk, roleIds, seen, sink));
+                listener.onProgress(totals[0], totals[1], totals[2]);
+            }
+
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            logger.info("Bulk user import: {} rows, {} created, {} failed in {} ms",
+                    totals[0], totals[1], totals[2], elapsedMillis);
+            return new BulkUserSummary(totals[0], totals[1], totals[2], elapsedMillis, kept);
+        }
+    }
+
+    private Map<EnumRole, Long> loadRoles() {
+        Map<EnumRole, Long> roleIds = new EnumMap<>(EnumRole.class);
+        for (UserRole role : roleRepository.findAll()) {
+            roleIds.put(role.getName(), role.getId());
+        }
+        return roleIds;
+    }
+
+    private void processChunk(List<ImportRow> rows, Map<EnumRole, Long> roleIds, Set<String> seen, Listener sink) {
+        BulkUserResult[] results = new BulkUserResult[rows.size()];
+        List<Integer> pending = new ArrayList<>();
+        List<Set<Long>> pendingRoles = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRow row = rows.get(i);
+            Set<Long> rowRoles = new HashSet<>();
+            String error = validate(row, roleIds, rowRoles, seen);
+            if (error != null) {
+                results[i] = BulkUserResult.failed(row.row(), row.username(), error);
+            } else {
+                pending.add(i);
+                pendingRoles.add(rowRoles);
+            }
+        }
+
+        List<String> hashes = hashAll(pending.stream().map(i -> rows.get(i).password()).toList());
+        List<Candidate> candidates = new ArrayList<>(pending.size());
+        for (int p = 0; p < pending.size(); p++) {
+            int index = pending.get(p);
+            candidates.add(new Candidate(index, rows.get(index), pendingRoles.get(p), hashes.get(p)));
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            List<Candidate> insertable = dropExisting(candidates, results);
+            try {
+                List<Long> ids = insert(insertable);
+                for (int c = 0; c < insertable.size(); c++) {
+                    ImportRow row = insertable.get(c).row();
+                    results[insertable.get(c).index()] = BulkUserResult.created(row.row(), row.username(), ids.get(c));
+                    userInfoService.invalidate(row.username());
+                }
+                break;
+            } catch (DuplicateKeyException e) {
+                if (attempt > 0) {
+                    for (Candidate candidate : insertable) {
+                        ImportRow row = candidate.row();
+                        results[candidate.index()] = BulkUserResult.failed(row.row(), row.username(),
+                                "Conflicts with a user created concurrently");
+                    }
+                    break;
+                }
+                // Someone inserted one of these between our check and our batch; check again
+                candidates = insertable;
+            }
+        }
+
+        for (BulkUserResult result : results) {
+            (BulkUserResult.CREATED.equals(result.status()) ? createdCounter : failedCounter).increment();
+            sink.onRow(result);
+        }
+    }
+
+    /**
+     * Field checks, role resolution and duplicates within the upload. Returns the error,
+     * or null with the row's role ids added to {@code rowRoles}.
+     */
+    private static String validate(ImportRow row, Map<EnumRole, Long> roleIds, Set<Long> rowRoles, Set<String> seen) {
+        if (row.error() != null) {
+            return row.error();
+        }
+        if (row.username() == null || row.username().length() > 20) {
+            return "Username is required and must be at most 20 characters";
+        }
+        if (row.password() == null || row.password().length() > 72) {
+            return "Password is required and must be at most 72 characters";
+        }
+        if (row.phoneNumber() == null || row.phoneNumber().length() > 120) {
+            return "Phone number is required and must be at most 120 characters";
+        }
+        if (row.email() != null && (row.email().length() > 50 || !EMAIL.matcher(row.email()).matches())) {
+            return "Email is not valid";
+        }
+        List<String> roleNames = row.roles().isEmpty() ? List.of(EnumRole.ROLE_USER.name()) : row.roles();
+        for (String roleName : roleNames) {
+            Long roleId = resolveRole(roleName, roleIds);
+            if (roleId == null) {
+                return "Role not found: " + roleName;
+            }
+            rowRoles.add(roleId);
+        }
+        // Claimed only once the row is otherwise valid, so a bad row does not block a later good one
+        if (seen.contains("u:" + row.username()) || seen.contains("p:" + row.phoneNumber())
+                || (row.email() != null && seen.contains("e:" + row.email()))) {
+            return "Duplicates an earlier row in this upload";
+        }
+        seen.add("u:" + row.username());
+        seen.add("p:" + row.phoneNumber());
+        if (row.email() != null) {
+            seen.add("e:" + row.email());
+        }
+        return null;
+    }
+
+    // Accepts ROLE_ADMIN, admin, Admin, ...
+    private static Long resolveRole(String roleName, Map<EnumRole, Long> roleIds) {
+        String name = roleName.trim().toUpperCase(Locale.ROOT);
+        try {
+            return roleIds.get(EnumRole.valueOf(name.startsWith("ROLE_") ? name : "ROLE_" + name));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private List<String> hashAll(List<String> passwords) {
+        List<Callable<String>> tasks = passwords.stream()
+                .<Callable<String>>map(password -> () -> encoder.encode(password))
+                .toList();
+        try {
+            List<String> hashes = new ArrayList<>(tasks.size());
+            for (Future<String> future : hashPool.invokeAll(tasks)) {
+                hashes.add(future.get());
+            }
+            return hashes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Bulk import interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * One round trip for the whole chunk: any username, email or phone number that is
+     * already taken fails its row.
+     */
+    private List<Candidate> dropExisting(List<Candidate> candidates, BulkUserResult[] results) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> phones = new HashSet<>();
+        jdbcTemplate.query(CONFLICTS_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("varchar",
+                    candidates.stream().map(c -> c.row().username()).toArray()));
+            ps.setArray(2, connection.createArrayOf("varchar",
+                    candidates.stream().map(c -> c.row().email()).filter(email -> email != null).toArray()));
+            ps.setArray(3, connection.createArrayOf("varchar",
+                    candidates.stream().map(c -> c.row().phoneNumber()).toArray()));
+        }, rs -> {
+            usernames.add(rs.getString(1));
+            emails.add(rs.getString(2));
+            phones.add(rs.getString(3));
+        });
+
+        List<Candidate> insertable = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            ImportRow row = candidate.row();
+            String error = usernames.contains(row.username()) ? "Username is already taken"
+                    : row.email() != null && emails.contains(row.email()) ? "Email is already in use"
+                    : phones.contains(row.phoneNumber()) ? "Phone number is already in use"
+                    : null;
+            if (error == null) {
+                insertable.add(candidate);
+            } else {
+                results[candidate.index()] = BulkUserResult.failed(row.row(), row.username(), error);
+            }
+        }
+        return insertable;
+    }
+
+    private List<Long> insert(List<Candidate> candidates) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = userIds.reserve(candidates.size());
+        List<long[]> links = new ArrayList<>();
+        for (int c = 0; c < candidates.size(); c++) {
+            for (Long roleId : candidates.get(c).roleIds()) {
+                links.add(new long[]{ids.get(c), roleId});
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_USER_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Candidate candidate = candidates.get(i);
+                    ImportRow row = candidate.row();
+                    ps.setLong(1, ids.get(i));
+                    ps.setString(2, row.name());
+                    ps.setString(3, row.username());
+                    ps.setString(4, row.email());
+                    ps.setString(5, candidate.passwordHash());
+                    ps.setString(6, row.phoneNumber());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return candidates.size();
+                }
+            });
+            if (!links.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ROLE_SQL, links, links.size(), (ps, link) -> {
+                    ps.setLong(1, link[0]);
+                    ps.setLong(2, link[1]);
+                });
+            }
+        });
+        return ids;
+    }
+}
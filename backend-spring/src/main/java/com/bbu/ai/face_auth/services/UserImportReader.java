@@ -0,0 +1,214 @@
+package com.bbu.ai.face_auth.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Pulls users out of a bulk import body one row at a time, so a large upload is
+ * never held in memory as a whole. Rows are numbered from 1, not counting a CSV
+ * header; a row that cannot be read is returned with an error rather than ending
+ * the import.
+ */
+abstract class UserImportReader implements Closeable {
+
+    record ImportRow(int row, String username, String password, String name, String email,
+                     String phoneNumber, List<String> roles, String error) {
+
+        static ImportRow failed(int row, String username, String error) {
+            return new ImportRow(row, username, null, null, null, null, List.of(), error);
+        }
+    }
+
+    /**
+     * @return the next row, or null once the input is exhausted
+     */
+    abstract ImportRow next() throws IOException;
+
+    static UserImportReader csv(InputStream in) throws IOException {
+        return new Csv(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+    }
+
+    static UserImportReader json(InputStream in, ObjectMapper objectMapper) throws IOException {
+        return new Json(objectMapper, objectMapper.getFactory().createParser(in));
+    }
+
+    private static String blankToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static List<String> splitRoles(String value) {
+        List<String> roles = new ArrayList<>();
+        if (value != null) {
+            for (String role : value.split("[|;,\\s]+")) {
+                if (!role.isBlank()) {
+                    roles.add(role.trim());
+                }
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * RFC 4180 style: comma separated, fields optionally double-quoted, "" for a
+     * literal quote, and quoted fields may span lines. The first record is the header;
+     * columns are matched by name, so their order does not matter.
+     */
+    private static final class Csv extends UserImportReader {
+
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private int row;
+
+        Csv(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) {
+                return;
+            }
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).trim().toLowerCase(Locale.ROOT).replace("_", "");
+                if (i == 0 && name.startsWith("\uFEFF")) {
+                    name = name.substring(1);
+                }
+                columns.put(name.equals("phone") ? "phonenumber" : name, i);
+            }
+            if (!columns.containsKey("username")) {
+                throw new IllegalArgumentException("CSV header must name a username column");
+            }
+        }
+
+        @Override
+        ImportRow next() throws IOException {
+            List<String> record = readRecord();
+            if (record == null) {
+                return null;
+            }
+            row++;
+            return new ImportRow(row, column(record, "username"), column(record, "password"),
+                    column(record, "name"), column(record, "email"), column(record, "phonenumber"),
+                    splitRoles(column(record, "roles")), null);
+        }
+
+        private String column(List<String> record, String name) {
+            Integer index = columns.get(name);
+            return index == null || index >= record.size() ? null : blankToNull(record.get(index));
+        }
+
+        // Skips empty lines; returns null at end of input
+        private List<String> readRecord() throws IOException {
+            while (true) {
+                List<String> fields = new ArrayList<>();
+                StringBuilder field = new StringBuilder();
+                boolean quoted = false;
+                boolean any = false;
+                int c;
+                while ((c = reader.read()) != -1) {
+                    any = true;
+                    if (quoted) {
+                        if (c == '"') {
+                            reader.mark(1);
+                            if (reader.read() == '"') {
+                                field.append('"');
+                            } else {
+                                reader.reset();
+                                quoted = false;
+                            }
+                        } else {
+                            field.append((char) c);
+                        }
+                    } else if (c == '"') {
+                        quoted = true;
+                    } else if (c == ',') {
+                        fields.add(field.toString());
+                        field.setLength(0);
+                    } else if (c == '\n') {
+                        break;
+                    } else if (c != '\r') {
+                        field.append((char) c);
+                    }
+                }
+                if (!any) {
+                    return null;
+                }
+                fields.add(field.toString());
+                if (fields.size() > 1 || !fields.get(0).isBlank()) {
+                    return fields;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * A top-level JSON array of objects with the fields of a user request. Each element
+     * is read as a tree on its own, so only one row is materialised at a time.
+     */
+    private static final class Json extends UserImportReader {
+
+        private final ObjectMapper objectMapper;
+        private final JsonParser parser;
+        private int row;
+
+        Json(ObjectMapper objectMapper, JsonParser parser) throws IOException {
+            this.objectMapper = objectMapper;
+            this.parser = parser;
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of users");
+            }
+        }
+
+        @Override
+        ImportRow next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            row++;
+            JsonNode node = objectMapper.readTree(parser);
+            if (node == null || !node.isObject()) {
+                return ImportRow.failed(row, null, "Expected an object");
+            }
+            List<String> roles = new ArrayList<>();
+            JsonNode roleNode = node.get("roles");
+            if (roleNode != null && roleNode.isArray()) {
+                roleNode.forEach(role -> roles.add(role.asText()));
+            } else if (roleNode != null && roleNode.isTextual()) {
+                roles.addAll(splitRoles(roleNode.asText()));
+            }
+            return new ImportRow(row, text(node, "username"), text(node, "password"), text(node, "name"),
+                    text(node, "email"), text(node, "phoneNumber"), roles, null);
+        }
+
+        private static String text(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            return value == null || value.isNull() ? null : blankToNull(value.asText());
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
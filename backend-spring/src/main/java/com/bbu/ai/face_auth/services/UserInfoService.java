@@ -4,30 +4,143 @@ package com.bbu.ai.face_auth.services;
 import com.bbu.ai.face_auth.configs.UserInfoDetails;
 import com.bbu.ai.face_auth.models.User;
 import com.bbu.ai.face_auth.repository.UserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Resolves the principal for every JWT-authenticated request. Resolved users (with
+ * their authorities) are cached for a short TTL so repeat calls skip the
+ * users/user_roles/roles query; {@link UserService} and {@link AuthenticationService}
+ * invalidate a username whenever they change that user, so role changes apply on the
+ * next request rather than after the TTL.
+ */
 @Service
 public class UserInfoService implements UserDetailsService {
 
-    @Autowired
-    private UserRepository repository;
+    private record CachedUser(UserInfoDetails details, long loadedAtNanos) {}
 
-    @Autowired
-    private PasswordEncoder encoder;
+    private final UserRepository repository;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final ConcurrentHashMap<String, CachedUser> users = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    // Bumped on every invalidation; a load that raced one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter expiredEvictions;
+    private final Counter sizeEvictions;
+    private final Counter invalidatedEvictions;
+
+    public UserInfoService(
+            UserRepository repository,
+            MeterRegistry meterRegistry,
+            @Value("${udemy.app.userCacheTtlMs:300000}") long ttlMs,
+            @Value("${udemy.app.userCacheMaxEntries:5000}") int maxEntries
+    ) {
+        this.repository = repository;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMs));
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("auth.user.cache.requests").tag("result", "hit")
+                .description("Principals resolved from the user cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("auth.user.cache.requests").tag("result", "miss")
+                .description("Principals loaded from the database")
+                .register(meterRegistry);
+        this.expiredEvictions = evictionCounter(meterRegistry, "expired");
+        this.sizeEvictions = evictionCounter(meterRegistry, "size");
+        this.invalidatedEvictions = evictionCounter(meterRegistry, "invalidated");
+        Gauge.builder("auth.user.cache.size", users, Map::size)
+                .register(meterRegistry);
+    }
+
+    private static Counter evictionCounter(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder("auth.user.cache.evictions").tag("cause", cause)
+                .description("Entries dropped from the user cache")
+                .register(meterRegistry);
+    }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        Optional<User> userDetail = repository.findByUsername(username); // Assuming 'email' is used as username
+        CachedUser cached = users.get(username);
+        if (cached != null) {
+            if (System.nanoTime() - cached.loadedAtNanos() < ttlNanos) {
+                hits.increment();
+                return cached.details();
+            }
+            if (users.remove(username, cached)) {
+                expiredEvictions.increment();
+            }
+        }
+        misses.increment();
+
+        long seenInvalidations = invalidations.get();
+        Optional<User> userDetail = repository.findByUsername(username);
 
         // Converting UserInfo to UserDetails
-        return userDetail.map(UserInfoDetails::new)
+        UserInfoDetails details = userDetail.map(UserInfoDetails::new)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        if (ttlNanos > 0 && invalidations.get() == seenInvalidations) {
+            CachedUser loaded = new CachedUser(details, System.nanoTime());
+            remember(username, loaded);
+            if (invalidations.get() != seenInvalidations) {
+                // An invalidation slipped in between the check and the put
+                users.remove(username, loaded);
+            }
+        }
+        return details;
+    }
+
+    /**
+     * Drops a user's cached principal; call after the change is committed.
+     */
+    public void invalidate(String username) {
+        invalidations.incrementAndGet();
+        if (username != null && users.remove(username) != null) {
+            invalidatedEvictions.increment();
+        }
+    }
+
+    // FIFO-bounded like the JWT and idempotency caches
+    private void remember(String username, CachedUser user) {
+        if (users.put(username, user) == null) {
+            insertionOrder.add(username);
+        }
+        while (users.size() > maxEntries) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            if (users.remove(oldest) != null) {
+                sizeEvictions.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${udemy.app.userCacheSweepIntervalMs:60000}")
+    public void sweepExpired() {
+        long now = System.nanoTime();
+        users.forEach((username, user) -> {
+            if (now - user.loadedAtNanos() >= ttlNanos && users.remove(username, user)) {
+                expiredEvictions.increment();
+            }
+        });
+        insertionOrder.removeIf(username -> !users.containsKey(username));
     }
 }
@@ -22,6 +22,7 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserInfoService userInfoService;
 
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -47,11 +48,14 @@ public class UserService {
 
     public User updateUser(Long id, UserRequest request) {
         return userRepository.findById(id).map(user -> {
+            String previousUsername = user.getUsername();
             user.setName(request.getName());
             user.setUsername(request.getUsername());
             user.setEmail(request.getEmail());
             user.setPhoneNumber(request.getPhoneNumber());
-            user.setPassword(request.getPassword());
+            if (request.getPassword() != null && !request.getPassword().isBlank()) {
+                user.setPassword(passwordEncoder.encode(request.getPassword()));
+            }
 
             if (request.getRoles() != null) {
                 user.setRoles(
@@ -63,12 +67,19 @@ public class UserService {
                 );
             }
 
-            return userRepository.save(user);
+            user.setSecurityVersion(user.getSecurityVersion() + 1);
+
+            User saved = userRepository.save(user);
+            userInfoService.invalidate(previousUsername);
+            userInfoService.invalidate(saved.getUsername());
+            return saved;
         }).orElseThrow(() -> new RuntimeException("User not found with id " + id));
     }
 
 
     public void deleteUser(Long id) {
+        Optional<User> user = userRepository.findById(id);
         userRepository.deleteById(id);
+        user.ifPresent(u -> userInfoService.invalidate(u.getUsername()));
     }
 }
@@ -0,0 +1,80 @@
+-- Schema as Hibernate's ddl-auto created it before migrations took over. Databases
+-- that already have it are baselined at this version (spring.flyway.baseline-on-migrate)
+-- and skip this script; constraint names are the ones Hibernate generated, so both
+-- paths end up identical.
+
+create table users (
+    id bigint generated by default as identity,
+    email varchar(255),
+    name varchar(255),
+    password varchar(255),
+    phone_number varchar(255),
+    username varchar(255),
+    primary key (id),
+    constraint ukr43af9ap4edm43mmtq01oddj6 unique (username),
+    constraint ukkwds03ohobcd8p6eowkw0f5bm unique (phone_number),
+    constraint uk6dotkott2kjsp8vw4d0m25fb7 unique (email)
+);
+
+create table roles (
+    id bigint generated by default as identity,
+    name varchar(20) not null
+        check (name in ('ROLE_USER','ROLE_MODERATOR','ROLE_ADMIN','ROLE_TEACHER','ROLE_STUDENT','ROLE_PARENT')),
+    primary key (id),
+    constraint ukofx66keruapi6vyqpv6f2or37 unique (name)
+);
+
+create table user_roles (
+    role_id bigint not null,
+    user_id bigint not null,
+    primary key (user_id, role_id),
+    constraint fkh8ciramu9cc9q3qcqiv4ue8a6 foreign key (role_id) references roles,
+    constraint fkhfh9dx7w3ubf1co1vdev94g3f foreign key (user_id) references users
+);
+
+create table employees (
+    id bigint generated by default as identity,
+    dob date,
+    created_at timestamp(6),
+    updated_at timestamp(6),
+    user_id bigint not null,
+    department varchar(255),
+    gender varchar(255) check (gender in ('MALE','FEMALE','OTHER')),
+    image_url varchar(255),
+    name varchar(255) not null,
+    primary key (id),
+    constraint ukj2dmgsma6pont6kf7nic9elpd unique (user_id),
+    constraint fk69x3vjuy1t5p18a5llb8h2fjx foreign key (user_id) references users
+);
+
+create table attendances (
+    id bigint generated by default as identity,
+    status smallint check (status between 0 and 3),
+    check_in timestamp(6),
+    check_out timestamp(6),
+    created_at timestamp(6),
+    updated_at timestamp(6),
+    employee_id bigint not null,
+    location varchar(255),
+    note TEXT,
+    over_time varchar(255),
+    primary key (id),
+    constraint fk2mia0pcnmy2nddwedvfrt0w08 foreign key (employee_id) references employees
+);
+
+create table categories (
+    id bigint generated by default as identity,
+    parent_id integer,
+    name varchar(255),
+    primary key (id)
+);
+
+create table profiles (
+    id bigint not null,
+    avatar varchar(255),
+    current_work_place varchar(255),
+    first_name varchar(255),
+    last_name varchar(255),
+    work_experience varchar(255),
+    primary key (id)
+);
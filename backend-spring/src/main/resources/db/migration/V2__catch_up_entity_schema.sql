@@ -0,0 +1,63 @@
+-- Tables, columns and indexes the entities gained while ddl-auto=update still managed
+-- the schema. Written to be a no-op where update had already applied them, so it runs
+-- the same on a fresh database, on one from before those changes and on a current one.
+
+alter table users add column if not exists security_version integer not null default 0;
+
+alter table attendances add column if not exists worked_minutes integer;
+alter table attendances add column if not exists overtime_minutes integer;
+
+create table if not exists revoked_tokens (
+    token_id varchar(64) not null,
+    username varchar(20),
+    expires_at timestamp(6) not null,
+    revoked_at timestamp(6),
+    primary key (token_id)
+);
+
+create table if not exists idempotency_keys (
+    idempotency_key varchar(200) not null,
+    status_code integer,
+    response_body TEXT,
+    created_at timestamp(6),
+    expires_at timestamp(6) not null,
+    primary key (idempotency_key)
+);
+
+create table if not exists face_templates (
+    employee_id bigint not null,
+    dimension integer not null,
+    embedding bytea not null,
+    created_at timestamp(6),
+    updated_at timestamp(6),
+    primary key (employee_id)
+);
+
+create table if not exists attendance_daily_summary (
+    employee_id bigint not null,
+    day date not null,
+    sessions integer not null,
+    completed_sessions integer not null,
+    worked_minutes bigint not null,
+    overtime_minutes bigint not null,
+    late_sessions integer not null,
+    primary key (day, employee_id)
+);
+
+create table if not exists department_monthly_summary (
+    department varchar(255) not null,
+    month date not null,
+    sessions integer not null,
+    completed_sessions integer not null,
+    worked_minutes bigint not null,
+    overtime_minutes bigint not null,
+    late_sessions integer not null,
+    primary key (department, month)
+);
+
+create index if not exists idx_attendance_daily_summary_day on attendance_daily_summary (day);
+create index if not exists idx_attendances_check_in_id on attendances (check_in, id);
+create index if not exists idx_attendances_employee_check_in_id on attendances (employee_id, check_in, id);
+create index if not exists idx_attendances_check_in_minutes
+    on attendances (check_in, employee_id, overtime_minutes, worked_minutes);
+create index if not exists idx_employees_name_id on employees (name, id);
@@ -0,0 +1,17 @@
+-- Indexes for the queries the application actually runs, beyond what the entity
+-- annotations can express.
+--
+-- Covered already, and not duplicated here:
+--   * employee history, newest first (employee_id = ? order by check_in desc, id desc):
+--     idx_attendances_employee_check_in_id, read backwards.
+--   * users by username, email and phone number: the unique constraints from V1.
+
+-- Open sessions: the per-employee check-out lookup and the open-session reconcile
+-- read only this small index, however many closed rows the table holds.
+create index if not exists idx_attendances_open on attendances (employee_id, check_in, id)
+    where check_out is null;
+
+-- Employee name search is a substring match (findByNameContaining, LIKE '%x%');
+-- trigrams let it use an index instead of scanning the table.
+create extension if not exists pg_trgm;
+create index if not exists idx_employees_name_trgm on employees using gin (name gin_trgm_ops);
@@ -0,0 +1,4 @@
+-- Typeahead prefix lookups (EmployeeSearchService) for queries too short to have a
+-- trigram. Under the "C" collation LIKE 'ab%' becomes a range scan whatever the
+-- database collation is, and the index also returns the matches already in order.
+create index if not exists idx_employees_name_prefix on employees ((lower(name) collate "C"), id);
@@ -0,0 +1,12 @@
+-- Write-behind marks that could not be written for a reason retrying will not fix
+-- (an employee deleted after the mark was queued, a constraint). AttendanceIngestQueue
+-- isolates them from the rest of their batch and parks them here for an operator.
+create table if not exists attendance_ingest_dead_letters (
+    id bigserial primary key,
+    attendance_id bigint not null,
+    employee_id bigint not null,
+    kind varchar(16) not null,
+    payload text not null, -- the journal form of the mark
+    error text,
+    failed_at timestamp not null default now()
+);
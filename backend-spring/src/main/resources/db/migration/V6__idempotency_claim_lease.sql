@@ -0,0 +1,5 @@
+-- An unfinished claim on an idempotency key now holds only until in_flight_until, so a
+-- claim left behind by a crashed node or a failed completion can be taken over
+-- instead of answering 409 until the key expires. Claims from before this column
+-- have no lease and count as lapsed.
+alter table idempotency_keys add column if not exists in_flight_until timestamp(6);
@@ -0,0 +1,6 @@
+-- Closed sessions whose worked/overtime minutes have not been filled yet. The startup
+-- backfill (AttendanceMinutesBackfill) looks for them in id order; with this index
+-- that is a probe of an index holding only those rows, empty once the backfill is
+-- done, instead of a walk of the whole primary key on every boot.
+create index if not exists idx_attendances_minutes_unfilled on attendances (id)
+    where check_out is not null and worked_minutes is null;
@@ -0,0 +1,124 @@
+-- Compares typical attendance queries on a plain table and on the same rows
+-- partitioned by month. Builds its own tables in the partition_bench schema and
+-- never touches attendances.
+--
+--     psql -v ON_ERROR_STOP=1 -c "set partition_bench.rows = '50000000'" -f benchmark_partitioning.sql
+-- (when run with -f alone, the default below applies). 50M rows spread over five
+-- years take roughly 10 GB per copy with indexes, so check free space first. Each
+-- EXPLAIN runs twice; read the second, warm-cache timing.
+-- Drop the schema afterwards: drop schema partition_bench cascade;
+
+select coalesce(nullif(current_setting('partition_bench.rows', true), ''), '50000000') as rows \gset bench_
+
+drop schema if exists partition_bench cascade;
+create schema partition_bench;
+set search_path = partition_bench;
+
+-- 5,000 employees with sessions spread evenly over 2021-01 .. 2025-11; each
+-- employee's latest session is still open
+create table flat (
+    id bigint primary key,
+    employee_id bigint not null,
+    check_in timestamp not null,
+    check_out timestamp,
+    status smallint,
+    worked_minutes integer,
+    overtime_minutes integer,
+    location varchar(255),
+    note text
+);
+
+insert into flat
+select g,
+       1 + g % 5000,
+       timestamp '2021-01-01 07:30' + (g / 5000) * (interval '1795 days' / (:bench_rows / 5000))
+           + (g % 97) * interval '1 minute',
+       case when g > :bench_rows - 5000 then null
+            else timestamp '2021-01-01 07:30' + (g / 5000) * (interval '1795 days' / (:bench_rows / 5000))
+                + (420 + g % 240) * interval '1 minute' end,
+       0,
+       case when g > :bench_rows - 5000 then null else 420 + (g % 240) - (g % 97) end,
+       case when g > :bench_rows - 5000 then null else greatest(420 + (g % 240) - (g % 97) - 480, 0) end,
+       'Phnom Penh',
+       null
+from generate_series(1, :bench_rows) g;
+
+create table part (like flat including defaults) partition by range (check_in);
+alter table part add primary key (id, check_in);
+create table part_default partition of part default;
+do $$
+declare
+    first_day date := date '2021-01-01';
+begin
+    while first_day < date '2026-01-01' loop
+        execute format('create table %I partition of partition_bench.part for values from (%L) to (%L)',
+                'part_p' || to_char(first_day, 'YYYYMM'), first_day, (first_day + interval '1 month')::date);
+        first_day := (first_day + interval '1 month')::date;
+    end loop;
+end $$;
+insert into part select * from flat;
+
+-- The indexes the application uses, on both layouts
+create index on flat (check_in, id);
+create index on flat (employee_id, check_in, id);
+create index on flat (check_in, employee_id, overtime_minutes, worked_minutes);
+create index on flat (employee_id, check_in, id) where check_out is null;
+create index on part (check_in, id);
+create index on part (employee_id, check_in, id);
+create index on part (check_in, employee_id, overtime_minutes, worked_minutes);
+create index on part (employee_id, check_in, id) where check_out is null;
+vacuum analyze flat;
+vacuum analyze part;
+
+select pg_size_pretty(pg_total_relation_size('flat')) as flat_size,
+       (select pg_size_pretty(sum(pg_total_relation_size(inhrelid))) from pg_inherits
+        where inhparent = 'part'::regclass) as part_size;
+
+-- 1. An employee's latest sessions (history page, keyset scroll)
+explain (analyze, buffers) select * from flat where employee_id = 4242 order by check_in desc, id desc limit 50;
+explain (analyze, buffers) select * from flat where employee_id = 4242 order by check_in desc, id desc limit 50;
+explain (analyze, buffers) select * from part where employee_id = 4242 order by check_in desc, id desc limit 50;
+explain (analyze, buffers) select * from part where employee_id = 4242 order by check_in desc, id desc limit 50;
+
+-- 2. Reading back an open session at check-out: by id alone, then with the check-in window
+select id, check_in from flat where check_out is null order by check_in desc limit 1 \gset open_
+explain (analyze, buffers) select * from part where id = :open_id;
+explain (analyze, buffers) select * from part where id = :open_id;
+explain (analyze, buffers) select * from flat
+    where id = :open_id and check_in between :'open_check_in'::timestamp - interval '1 second'
+                                         and :'open_check_in'::timestamp + interval '1 second';
+explain (analyze, buffers) select * from flat
+    where id = :open_id and check_in between :'open_check_in'::timestamp - interval '1 second'
+                                         and :'open_check_in'::timestamp + interval '1 second';
+explain (analyze, buffers) select * from part
+    where id = :open_id and check_in between :'open_check_in'::timestamp - interval '1 second'
+                                         and :'open_check_in'::timestamp + interval '1 second';
+explain (analyze, buffers) select * from part
+    where id = :open_id and check_in between :'open_check_in'::timestamp - interval '1 second'
+                                         and :'open_check_in'::timestamp + interval '1 second';
+
+-- 3. Overtime rollup for one month
+explain (analyze, buffers) select employee_id, sum(overtime_minutes) from flat
+    where check_in >= '2024-03-01' and check_in < '2024-04-01' group by employee_id;
+explain (analyze, buffers) select employee_id, sum(overtime_minutes) from flat
+    where check_in >= '2024-03-01' and check_in < '2024-04-01' group by employee_id;
+explain (analyze, buffers) select employee_id, sum(overtime_minutes) from part
+    where check_in >= '2024-03-01' and check_in < '2024-04-01' group by employee_id;
+explain (analyze, buffers) select employee_id, sum(overtime_minutes) from part
+    where check_in >= '2024-03-01' and check_in < '2024-04-01' group by employee_id;
+
+-- 4. Open sessions (index reconcile)
+explain (analyze, buffers) select employee_id, id, check_in from flat where check_out is null order by check_in;
+explain (analyze, buffers) select employee_id, id, check_in from flat where check_out is null order by check_in;
+explain (analyze, buffers) select employee_id, id, check_in from part where check_out is null order by check_in;
+explain (analyze, buffers) select employee_id, id, check_in from part where check_out is null order by check_in;
+
+-- 5. Retiring the oldest month
+\timing on
+begin;
+delete from flat where check_in < '2021-02-01';
+rollback;
+begin;
+alter table part detach partition part_p202101;
+rollback;
+\timing off
@@ -0,0 +1,86 @@
+-- Converts attendances into a table range-partitioned by check_in, one partition per
+-- month, plus a default partition for anything outside the created ranges.
+--
+-- This is not a versioned migration, because partitioning is a per-deployment
+-- choice. Run it once, during a maintenance window, with the application stopped:
+--     psql -v ON_ERROR_STOP=1 -f partition_attendances.sql
+-- Everything happens in one transaction, so a failure leaves the original table as it
+-- was. Rows are copied, which needs free disk space about the size of the table and
+-- its indexes.
+--
+-- What changes for the application:
+--   * the primary key becomes (id, check_in); Postgres requires the partition key in
+--     every unique constraint. Ids still come from attendances_id_seq, which is
+--     recreated as a plain sequence because PG 14 has no identity columns on
+--     partitioned tables.
+--   * check_in becomes NOT NULL.
+--   * the secondary indexes and the employee foreign key are recreated under their
+--     existing names, so schema validation still matches the entity.
+--   * idx_attendances_open, the partial index on still-open sessions from V3, is
+--     carried over like the others. It is created here if the database predates V3.
+--     It keeps the open-session reconcile cheap however many partitions there are.
+-- Run it on a database the db/migration scripts have brought up to date. Hibernate's
+-- ddl-auto=validate accepts the partitioned table.
+-- PartitionMaintenanceService then creates upcoming months and applies retention.
+-- Set attendance.partitioning.enabled=true to switch it on.
+
+begin;
+
+lock table attendances in access exclusive mode;
+
+create temporary table partitioning_saved_ddl on commit drop as
+select 'alter table attendances add constraint ' || quote_ident(conname) || ' ' || pg_get_constraintdef(oid) as ddl
+from pg_constraint where conrelid = 'attendances'::regclass and contype = 'f'
+union all
+select indexdef from pg_indexes
+where schemaname = current_schema() and tablename = 'attendances' and indexname <> 'attendances_pkey';
+
+create table attendances_partitioned (like attendances including defaults including constraints)
+    partition by range (check_in);
+alter table attendances_partitioned alter column check_in set not null;
+alter table attendances_partitioned add constraint attendances_partitioned_pkey primary key (id, check_in);
+create table attendances_default partition of attendances_partitioned default;
+
+-- From the month of the oldest row to three months ahead
+do $$
+declare
+    first_day date;
+    last_day date := (date_trunc('month', localtimestamp) + interval '3 months')::date;
+begin
+    select coalesce(date_trunc('month', min(check_in)), date_trunc('month', localtimestamp))::date
+    into first_day from attendances;
+    while first_day <= last_day loop
+        execute format('create table %I partition of attendances_partitioned for values from (%L) to (%L)',
+                'attendances_p' || to_char(first_day, 'YYYYMM'), first_day, (first_day + interval '1 month')::date);
+        first_day := (first_day + interval '1 month')::date;
+    end loop;
+end $$;
+
+insert into attendances_partitioned select * from attendances;
+
+-- Dropping the old table also drops its identity sequence
+create temporary table partitioning_next_id on commit drop as
+select coalesce(max(id), 0) + 1 as next_id from attendances;
+drop table attendances;
+alter table attendances_partitioned rename to attendances;
+alter table attendances rename constraint attendances_partitioned_pkey to attendances_pkey;
+
+create sequence attendances_id_seq owned by attendances.id;
+select setval('attendances_id_seq', next_id, false) from partitioning_next_id;
+alter table attendances alter column id set default nextval('attendances_id_seq');
+
+do $$
+declare
+    statement text;
+begin
+    for statement in select ddl from partitioning_saved_ddl loop
+        execute statement;
+    end loop;
+end $$;
+
+create index if not exists idx_attendances_open on attendances (employee_id, check_in, id)
+    where check_out is null;
+
+commit;
+
+analyze attendances;
@@ -0,0 +1,75 @@
+package com.bbu.ai.face_auth.configs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedPasswordEncoderTests {
+
+    @Test
+    void hashesOnPoolAndFlagsCostChanges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(registry, 5, 2, 8, 5000);
+        try {
+            String hash = encoder.encode("secret");
+            assertTrue(hash.startsWith("$2a$05$"));
+            assertTrue(encoder.matches("secret", hash));
+            assertFalse(encoder.matches("wrong", hash));
+
+            assertFalse(encoder.upgradeEncoding(hash));
+            assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+            assertFalse(encoder.upgradeEncoding("not-a-bcrypt-hash"));
+
+            assertEquals(1, registry.get("auth.password.hash").tag("operation", "encode").timer().count());
+            assertEquals(2, registry.get("auth.password.hash").tag("operation", "matches").timer().count());
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsWithServiceUnavailableWhenSaturated() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // One worker, one queue slot: at most two of the eight callers get through
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(registry, 12, 1, 1, 30_000);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> {
+                    try {
+                        encoder.encode("secret");
+                        return true;
+                    } catch (ResponseStatusException e) {
+                        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+                        return false;
+                    }
+                }));
+            }
+            int rejected = 0;
+            for (Future<Boolean> result : results) {
+                if (!result.get(60, TimeUnit.SECONDS)) {
+                    rejected++;
+                }
+            }
+            assertTrue(rejected >= 1, "A full pool must turn callers away instead of queueing them");
+            assertEquals(rejected, registry.get("auth.password.rejected").counter().count());
+        } finally {
+            callers.shutdownNow();
+            encoder.shutdown();
+        }
+    }
+}
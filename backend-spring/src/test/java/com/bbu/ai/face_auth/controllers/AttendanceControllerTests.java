@@ -0,0 +1,73 @@
+package com.bbu.ai.face_auth.controllers;
+
+import com.bbu.ai.face_auth.services.AttendanceExportService;
+import com.bbu.ai.face_auth.services.AttendanceService;
+import com.bbu.ai.face_auth.services.IdempotencyService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+class AttendanceControllerTests {
+
+    private static final String CSV = "attendanceId,employeeId\r\n1,7\r\n";
+
+    private final AttendanceExportService exportService = Mockito.mock(AttendanceExportService.class);
+    private final AttendanceController controller = new AttendanceController(
+            Mockito.mock(AttendanceService.class), Mockito.mock(IdempotencyService.class), exportService);
+
+    AttendanceControllerTests() {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(2).write(CSV.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).export(any(), eq(AttendanceExportService.Format.CSV), any());
+    }
+
+    @Test
+    void exportIsGzippedWhenTheClientAcceptsIt() throws IOException {
+        ResponseEntity<StreamingResponseBody> response = export("br, gzip;q=0.8");
+
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body(response)))) {
+            assertEquals(CSV, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void exportIsPlainOtherwise() throws IOException {
+        for (String acceptEncoding : new String[]{null, "identity", "br"}) {
+            ResponseEntity<StreamingResponseBody> response = export(acceptEncoding);
+
+            assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING), acceptEncoding);
+            assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+            assertEquals(CSV, new String(body(response), StandardCharsets.UTF_8));
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String acceptEncoding) {
+        return controller.export(LocalDate.of(2001, 4, 1), LocalDate.of(2001, 4, 30), null, null, "csv",
+                acceptEncoding);
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+}
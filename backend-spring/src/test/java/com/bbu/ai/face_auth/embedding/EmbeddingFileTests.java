@@ -0,0 +1,154 @@
+package com.bbu.ai.face_auth.embedding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.bbu.ai.face_auth.embedding.EmbeddingFixtures.randomUnit;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddingFileTests {
+
+    private static final int DIMENSION = 64;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void survivesReopenGrowthAndCompaction() throws Exception {
+        Path path = dir.resolve("templates.emb");
+        Random random = new Random(1);
+        float[][] vectors = new float[100][];
+        try (EmbeddingFile file = EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F32, 16)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = randomUnit(random, DIMENSION);
+                file.put(i, vectors[i]);
+            }
+            // Replace one, delete a block
+            vectors[5] = randomUnit(random, DIMENSION);
+            file.put(5, vectors[5]);
+            for (int i = 50; i < 80; i++) {
+                file.remove(i);
+            }
+            assertEquals(70, file.size());
+            assertEquals(31, file.tombstones());
+        }
+
+        try (EmbeddingFile file = EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F32, 16)) {
+            assertEquals(70, file.size());
+            assertArrayEquals(vectors[5], file.get(5));
+            assertNull(file.get(60));
+            assertEquals(5, file.topK(vectors[5], 1).get(0).employeeId());
+
+            assertTrue(file.needsCompaction(0.25));
+            long generation = file.generation();
+            file.replaceWith(file.writeCompacted());
+            assertEquals(generation + 1, file.generation());
+            assertEquals(0, file.tombstones());
+            assertEquals(70, file.size());
+            assertArrayEquals(vectors[99], file.get(99));
+            assertFalse(file.contains(79));
+        }
+    }
+
+    @Test
+    void float16StoreKeepsRankingAndConvertsExistingFile() throws Exception {
+        Path path = dir.resolve("templates.emb");
+        Random random = new Random(2);
+        float[][] vectors = new float[50][];
+        try (EmbeddingFile file = EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F32, 16)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = randomUnit(random, DIMENSION);
+                file.put(i, vectors[i]);
+            }
+        }
+        try (EmbeddingFile file = EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F16, 16)) {
+            assertEquals(EmbeddingFile.DataType.F16, file.dataType());
+            assertEquals(50, file.size());
+            for (int i = 0; i < vectors.length; i++) {
+                List<EmbeddingStore.Match> top = file.topK(vectors[i], 1);
+                assertEquals(i, top.get(0).employeeId());
+                assertEquals(1f, top.get(0).score(), 1e-3f);
+            }
+        }
+    }
+
+    @Test
+    void compactionPreparedBesideAGrowthRewriteKeepsItsOwnFile() throws Exception {
+        Path path = dir.resolve("templates.emb");
+        Random random = new Random(5);
+        float[][] vectors = new float[40][];
+        try (EmbeddingFile file = EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F32, 16)) {
+            for (int i = 0; i < 16; i++) {
+                vectors[i] = randomUnit(random, DIMENSION);
+                file.put(i, vectors[i]);
+            }
+            // As compactStore does, without the write lock
+            long seen = file.modifications();
+            Path compacted = file.writeCompacted();
+
+            // An enrollment that fills the capacity rewrites and swaps the file meanwhile
+            vectors[16] = randomUnit(random, DIMENSION);
+            file.put(16, vectors[16]);
+
+            assertTrue(Files.exists(compacted), "the growth rewrite must not take over the compaction's temp file");
+            assertTrue(file.modifications() != seen);
+            Files.delete(compacted);
+            assertEquals(17, file.size());
+            assertArrayEquals(vectors[16], file.get(16));
+
+            // A compaction that did not go stale still swaps in
+            for (int i = 0; i < 10; i++) {
+                file.remove(i);
+            }
+            file.replaceWith(file.writeCompacted());
+            assertEquals(7, file.size());
+        }
+        try (EmbeddingFile file = EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F32, 16)) {
+            assertEquals(7, file.size());
+            assertArrayEquals(vectors[15], file.get(15));
+            assertArrayEquals(vectors[16], file.get(16));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(path), files.toList(), "no temp files are left behind");
+        }
+    }
+
+    @Test
+    void rejectsUnknownDataType() throws Exception {
+        Path path = dir.resolve("corrupt.emb");
+        try (EmbeddingFile file = EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F32, 16)) {
+            file.put(1, randomUnit(new Random(3), DIMENSION));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 7), 8);
+        }
+
+        IOException e = assertThrows(IOException.class,
+                () -> EmbeddingFile.open(path, DIMENSION, EmbeddingFile.DataType.F32, 16));
+        assertTrue(e.getMessage().contains("unknown data type 7"), e.getMessage());
+    }
+
+    @Test
+    void halfPrecisionRoundTrip() {
+        for (float value : new float[]{0f, -0f, 1f, -2.5f, 0.1f, 65504f, 6.1e-5f, 3e-7f}) {
+            assertEquals(value, VectorMath.fromHalf(VectorMath.toHalf(value)), Math.abs(value) * 1e-3f + 1e-7f);
+        }
+        assertTrue(Float.isInfinite(VectorMath.fromHalf(VectorMath.toHalf(1e6f))));
+    }
+}
@@ -0,0 +1,61 @@
+package com.bbu.ai.face_auth.embedding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic embeddings shared by the store and index tests.
+ */
+final class EmbeddingFixtures {
+
+    /**
+     * Identities spread around a handful of "look-alike" centres, like real face
+     * embeddings, with queries that are half genuine (a fresh capture of an enrolled
+     * face) and half impostors. {@code exact} holds the enrolled set under ids 0..n-1.
+     */
+    record Clustered(List<float[]> enrolled, List<float[]> queries, EmbeddingMatrix exact) {}
+
+    private EmbeddingFixtures() {
+    }
+
+    static float[] randomUnit(Random random, int dimension) {
+        float[] v = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            v[i] = (float) random.nextGaussian();
+        }
+        return VectorMath.normalize(v);
+    }
+
+    // Adds isotropic noise whose total norm is roughly `scale` relative to the unit base
+    static float[] perturb(float[] base, float scale, Random random) {
+        float sigma = (float) (scale / Math.sqrt(base.length));
+        float[] v = new float[base.length];
+        for (int i = 0; i < base.length; i++) {
+            v[i] = base[i] + (float) random.nextGaussian() * sigma;
+        }
+        return v;
+    }
+
+    static Clustered clustered(Random random, int dimension, int identities, int queryCount) {
+        List<float[]> centres = new ArrayList<>();
+        for (int c = 0; c < 32; c++) {
+            centres.add(randomUnit(random, dimension));
+        }
+        EmbeddingMatrix exact = new EmbeddingMatrix(dimension, identities);
+        List<float[]> enrolled = new ArrayList<>();
+        for (int i = 0; i < identities; i++) {
+            float[] vector = VectorMath.normalize(perturb(centres.get(i % centres.size()), 1.2f, random));
+            enrolled.add(vector);
+            exact.put(i, vector);
+        }
+        List<float[]> queries = new ArrayList<>();
+        for (int q = 0; q < queryCount; q++) {
+            float[] base = q % 2 == 0
+                    ? enrolled.get(random.nextInt(identities))
+                    : perturb(centres.get(random.nextInt(centres.size())), 1.2f, random);
+            queries.add(VectorMath.normalize(perturb(base, 0.5f, random)));
+        }
+        return new Clustered(enrolled, queries, exact);
+    }
+}
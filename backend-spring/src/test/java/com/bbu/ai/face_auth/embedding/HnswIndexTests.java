@@ -0,0 +1,158 @@
+package com.bbu.ai.face_auth.embedding;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.bbu.ai.face_auth.embedding.EmbeddingFixtures.randomUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the HNSW graph makes the same 0.7 accept/reject decisions as the exact
+ * matrix scan. The recall-vs-latency benchmark prints one line per efSearch so
+ * parameters can be picked from the output; it is tagged "benchmark" and only runs
+ * with -Pbenchmark.
+ */
+class HnswIndexTests {
+
+    private static final int DIMENSION = 128;
+    private static final float THRESHOLD = 0.7f;
+
+    @Test
+    void matchesExactSearchDecisions() {
+        EmbeddingFixtures.Clustered data = EmbeddingFixtures.clustered(new Random(42), DIMENSION, 600, 100);
+        HnswIndex index = build(data, DIMENSION);
+
+        assertTrue(agreement(index, data, truth(data), 64) >= 0.98,
+                "Default efSearch should keep threshold decisions identical");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void recallAndLatencyAgainstExactScan() {
+        int dimension = 512;
+        int queries = 400;
+        EmbeddingFixtures.Clustered data = EmbeddingFixtures.clustered(new Random(42), dimension, 3000, queries);
+
+        long exactStart = System.nanoTime();
+        List<EmbeddingStore.Match> truth = truth(data);
+        double exactMicros = (System.nanoTime() - exactStart) / 1000.0 / queries;
+
+        long buildStart = System.nanoTime();
+        HnswIndex index = build(data, dimension);
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+        System.out.printf("HNSW build: %d vectors in %d ms; exact scan: %.1f us/query%n",
+                data.enrolled().size(), buildMillis, exactMicros);
+
+        double agreementAt64 = 0;
+        for (int ef : new int[]{16, 32, 64, 128}) {
+            int recalled = 0;
+            long start = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                List<HnswIndex.Result> results = index.search(data.queries().get(q), 1, ef);
+                if (!results.isEmpty() && results.get(0).id() == truth.get(q).employeeId()) {
+                    recalled++;
+                }
+            }
+            double micros = (System.nanoTime() - start) / 1000.0 / queries;
+            double agreement = agreement(index, data, truth, ef);
+            System.out.printf("efSearch=%3d recall@1=%.4f decisionAgreement=%.4f latency=%.1f us/query%n",
+                    ef, (double) recalled / queries, agreement, micros);
+            if (ef == 64) {
+                agreementAt64 = agreement;
+            }
+        }
+        assertTrue(agreementAt64 >= 0.99, "Default efSearch should keep threshold decisions identical");
+    }
+
+    @Test
+    void concurrentInsertsAndSearches() throws Exception {
+        Random random = new Random(7);
+        int total = 1000;
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            vectors.add(randomUnit(random, DIMENSION));
+        }
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 32);
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int offset = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = offset; i < total; i += 4) {
+                        index.insert(i, vectors.get(i));
+                    }
+                }));
+            }
+            for (int t = 0; t < 2; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        index.search(vectors.get(i % total), 5);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(total, index.size());
+        int found = 0;
+        for (int i = 0; i < total; i += 10) {
+            List<HnswIndex.Result> results = index.search(vectors.get(i), 1);
+            assertFalse(results.isEmpty());
+            if (results.get(0).id() == i) {
+                found++;
+            }
+        }
+        assertTrue(found >= total / 10 * 0.95, "Self-queries should find themselves after concurrent build");
+
+        index.remove(0);
+        assertTrue(index.search(vectors.get(0), 5).stream().noneMatch(r -> r.id() == 0));
+    }
+
+    private static HnswIndex build(EmbeddingFixtures.Clustered data, int dimension) {
+        HnswIndex index = new HnswIndex(dimension, 16, 200, 64);
+        for (int i = 0; i < data.enrolled().size(); i++) {
+            index.insert(i, data.enrolled().get(i));
+        }
+        return index;
+    }
+
+    private static List<EmbeddingStore.Match> truth(EmbeddingFixtures.Clustered data) {
+        List<EmbeddingStore.Match> truth = new ArrayList<>();
+        for (float[] query : data.queries()) {
+            truth.add(data.exact().topK(query, 1).get(0));
+        }
+        return truth;
+    }
+
+    // Share of queries where HNSW accepts the same identity, or rejects, as exact search
+    private static double agreement(HnswIndex index, EmbeddingFixtures.Clustered data,
+                                    List<EmbeddingStore.Match> truth, int ef) {
+        int sameDecision = 0;
+        for (int q = 0; q < truth.size(); q++) {
+            List<HnswIndex.Result> results = index.search(data.queries().get(q), 1, ef);
+            EmbeddingStore.Match expected = truth.get(q);
+            boolean exactAccepts = expected.score() >= THRESHOLD;
+            boolean hnswAccepts = !results.isEmpty() && results.get(0).score() >= THRESHOLD;
+            if (exactAccepts == hnswAccepts && (!exactAccepts || results.get(0).id() == expected.employeeId())) {
+                sameDecision++;
+            }
+        }
+        return (double) sameDecision / truth.size();
+    }
+}
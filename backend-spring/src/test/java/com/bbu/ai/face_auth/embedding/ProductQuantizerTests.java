@@ -0,0 +1,114 @@
+package com.bbu.ai.face_auth.embedding;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the PQ mode (ADC shortlist + exact re-rank) keeps the 0.7 accept/reject
+ * decisions of the uncompressed exact scan. The benchmark against the exact scan, which
+ * prints memory per template, throughput and recall, is tagged "benchmark" and only
+ * runs with -Pbenchmark.
+ */
+class ProductQuantizerTests {
+
+    private static final int RERANK = 64;
+    private static final float THRESHOLD = 0.7f;
+
+    private record Outcome(int adcRecall, int shortlistRecall, int rerankRecall, int sameDecision) {}
+
+    @Test
+    void rerankedShortlistKeepsExactDecisions() {
+        int dimension = 128;
+        EmbeddingFixtures.Clustered data = EmbeddingFixtures.clustered(new Random(11), dimension, 1000, 100);
+        ProductQuantizer quantizer = ProductQuantizer.train(data.enrolled(), 16, 8, 42);
+        PqCodes codes = encode(quantizer, data);
+
+        assertEquals(16, quantizer.codeBytes());
+        assertEquals(1000, codes.size());
+        assertTrue(compare(codes, data).sameDecision() >= 98, "Re-ranked PQ should keep threshold decisions identical");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void reportsMemoryThroughputAndRecallAgainstExactScan() {
+        int dimension = 512;
+        int identities = 5000;
+        int queries = 400;
+        EmbeddingFixtures.Clustered data = EmbeddingFixtures.clustered(new Random(11), dimension, identities, queries);
+
+        long trainStart = System.nanoTime();
+        // Trained on a sample, as FaceMatcherService does with face.match.pq.train-sample
+        ProductQuantizer quantizer = ProductQuantizer.train(data.enrolled().subList(0, 2048), 64, 12, 42);
+        PqCodes codes = encode(quantizer, data);
+        long trainMillis = (System.nanoTime() - trainStart) / 1_000_000;
+
+        long exactStart = System.nanoTime();
+        for (float[] query : data.queries()) {
+            data.exact().topK(query, 1);
+        }
+        long exactNanos = System.nanoTime() - exactStart;
+
+        long pqStart = System.nanoTime();
+        for (float[] query : data.queries()) {
+            for (EmbeddingStore.Match candidate : codes.topK(query, RERANK)) {
+                data.exact().score(query, candidate.employeeId());
+            }
+        }
+        long pqNanos = System.nanoTime() - pqStart;
+        Outcome outcome = compare(codes, data);
+
+        System.out.printf("Memory/template: float32=%d B, pq=%d B (codebooks %d KB shared); trained+encoded %d in %d ms%n",
+                dimension * Float.BYTES, quantizer.codeBytes(), quantizer.codebookBytes() / 1024, identities, trainMillis);
+        System.out.printf("Throughput: exact=%.0f q/s, pq+rerank(%d)=%.0f q/s%n",
+                queries / (exactNanos / 1e9), RERANK, queries / (pqNanos / 1e9));
+        System.out.printf("Recall@1: adc=%.4f shortlist@%d=%.4f reranked=%.4f decisionAgreement=%.4f%n",
+                (double) outcome.adcRecall() / queries, RERANK, (double) outcome.shortlistRecall() / queries,
+                (double) outcome.rerankRecall() / queries, (double) outcome.sameDecision() / queries);
+
+        assertTrue((double) outcome.sameDecision() / queries >= 0.99,
+                "Re-ranked PQ should keep threshold decisions identical");
+    }
+
+    private static PqCodes encode(ProductQuantizer quantizer, EmbeddingFixtures.Clustered data) {
+        PqCodes codes = new PqCodes(quantizer, data.enrolled().size());
+        for (int i = 0; i < data.enrolled().size(); i++) {
+            codes.put(i, data.enrolled().get(i));
+        }
+        return codes;
+    }
+
+    // Re-ranks each query's shortlist with exact scores and compares it with the exact scan
+    private static Outcome compare(PqCodes codes, EmbeddingFixtures.Clustered data) {
+        int adcRecall = 0;
+        int shortlistRecall = 0;
+        int rerankRecall = 0;
+        int sameDecision = 0;
+        for (float[] query : data.queries()) {
+            EmbeddingStore.Match truth = data.exact().topK(query, 1).get(0);
+            List<EmbeddingStore.Match> shortlist = codes.topK(query, RERANK);
+            EmbeddingStore.Match best = null;
+            for (EmbeddingStore.Match candidate : shortlist) {
+                float score = data.exact().score(query, candidate.employeeId());
+                if (best == null || score > best.score()) {
+                    best = new EmbeddingStore.Match(candidate.employeeId(), score);
+                }
+            }
+            long expected = truth.employeeId();
+            adcRecall += shortlist.get(0).employeeId() == expected ? 1 : 0;
+            shortlistRecall += shortlist.stream().anyMatch(m -> m.employeeId() == expected) ? 1 : 0;
+            rerankRecall += best.employeeId() == expected ? 1 : 0;
+            boolean exactAccepts = truth.score() >= THRESHOLD;
+            boolean pqAccepts = best.score() >= THRESHOLD;
+            if (exactAccepts == pqAccepts && (!exactAccepts || best.employeeId() == expected)) {
+                sameDecision++;
+            }
+        }
+        return new Outcome(adcRecall, shortlistRecall, rerankRecall, sameDecision);
+    }
+}
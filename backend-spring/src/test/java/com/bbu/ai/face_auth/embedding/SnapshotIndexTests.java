@@ -0,0 +1,136 @@
+package com.bbu.ai.face_auth.embedding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.bbu.ai.face_auth.embedding.EmbeddingFixtures.randomUnit;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotIndexTests {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void deltasMergeIntoNewGeneration() {
+        Random random = new Random(3);
+        float[][] vectors = new float[100][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = randomUnit(random, DIMENSION);
+        }
+        SnapshotIndex index = new SnapshotIndex(DIMENSION, 16);
+        index.replaceAll(new long[]{0, 1, 2, 3}, List.of(vectors[0], vectors[1], vectors[2], vectors[3]));
+        assertEquals(1, index.snapshot().generation());
+        assertEquals(4, index.snapshot().baseSize());
+
+        for (int i = 4; i < 40; i++) {
+            index.put(i, vectors[i]);
+        }
+        // 36 enrollments: two sealed deltas of 16 plus an open tail of 4
+        assertArrayEquals(new int[]{16, 16, 4}, index.snapshot().deltaSizes());
+
+        // Replace a base row and a sealed-delta row, delete from base, sealed delta and tail
+        vectors[1] = randomUnit(random, DIMENSION);
+        index.put(1, vectors[1]);
+        vectors[10] = randomUnit(random, DIMENSION);
+        index.put(10, vectors[10]);
+        assertTrue(index.remove(2));
+        assertTrue(index.remove(20));
+        assertTrue(index.remove(38));
+        assertFalse(index.remove(38));
+
+        assertEquals(37, index.size());
+        assertEquals(1, index.topK(vectors[1], 1).get(0).employeeId());
+        assertEquals(1f, index.score(vectors[10], 10), 1e-5f);
+        assertNull(index.get(20));
+        assertTrue(index.topK(vectors[20], 37).stream().noneMatch(m -> m.employeeId() == 20));
+
+        assertTrue(index.needsMerge(32, 0.25));
+        assertTrue(index.mergeDeltas());
+        SnapshotIndex.Snapshot merged = index.snapshot();
+        assertEquals(2, merged.generation());
+        assertEquals(37, merged.baseSize());
+        assertEquals(0, merged.deltaSizes().length);
+        assertFalse(index.mergeDeltas());
+
+        long[] ids = index.employeeIds();
+        Arrays.sort(ids);
+        assertEquals(37, ids.length);
+        for (long id : ids) {
+            assertArrayEquals(vectors[(int) id], index.get(id));
+        }
+    }
+
+    @Test
+    void readersSeeConsistentSnapshotsDuringWritesAndMerges() throws Exception {
+        Random random = new Random(11);
+        int stable = 200;
+        int churn = 2000;
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < stable + churn; i++) {
+            vectors.add(randomUnit(random, DIMENSION));
+        }
+        SnapshotIndex index = new SnapshotIndex(DIMENSION, 32);
+        for (int i = 0; i < stable; i++) {
+            index.put(i, vectors.get(i));
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(pool.submit(() -> {
+                for (int i = stable; i < stable + churn; i++) {
+                    index.put(i, vectors.get(i));
+                    if (i % 3 == 0) {
+                        index.remove(i - 1);
+                    }
+                }
+                done.set(true);
+            }));
+            futures.add(pool.submit(() -> {
+                while (!done.get()) {
+                    index.mergeDeltas();
+                }
+            }));
+            for (int t = 0; t < 2; t++) {
+                int offset = t;
+                futures.add(pool.submit(() -> {
+                    // Never-modified identities must always be found, whatever is being swapped
+                    for (int q = offset; !done.get() || q < stable; q += 2) {
+                        int id = q % stable;
+                        List<EmbeddingStore.Match> top = index.topK(vectors.get(id), 1);
+                        assertEquals(id, top.get(0).employeeId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        index.mergeDeltas();
+        int expected = stable;
+        for (int i = stable; i < stable + churn; i++) {
+            boolean removed = (i + 1) % 3 == 0 && i + 1 < stable + churn;
+            assertEquals(!removed, index.contains(i), "id " + i);
+            expected += removed ? 0 : 1;
+        }
+        assertEquals(expected, index.size());
+        assertEquals(expected, index.snapshot().baseSize());
+    }
+}
@@ -0,0 +1,124 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.models.EnumAttendanceStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Against the configured database, like FaceAuthApplicationTests; rolled back afterwards
+@SpringBootTest
+@Transactional
+class AttendanceExportServiceTests {
+
+    // A month no real attendance falls in, so the export only holds what the test wrote
+    private static final LocalDate MONTH = LocalDate.of(2001, 4, 1);
+    private static final String NOTE = "said \"hi\", then\nleft";
+
+    @Autowired
+    private AttendanceExportService attendanceExportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private long employeeId;
+    private String employee;
+    private long closed;
+    private long open;
+    private long noStatus;
+
+    @BeforeEach
+    void insertRows() {
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "select id, name, department from employees order by id limit 1");
+        employeeId = ((Number) row.get("id")).longValue();
+        employee = row.get("name") + "," + row.get("department");
+
+        LocalDateTime day = MONTH.plusDays(1).atStartOfDay();
+        closed = insert(day.plusHours(8), day.plusHours(17).plusMinutes(30), 2, 570, 90,
+                "Phnom Penh, Cambodia", NOTE);
+        open = insert(day.plusDays(1).plusHours(9), null, 0, null, null, null, null);
+        noStatus = insert(day.plusDays(1).plusHours(10), null, null, null, null, null, null);
+    }
+
+    @Test
+    void csvQuotesOnlyWhatNeedsItAndLeavesNullsEmpty() {
+        String csv = export(AttendanceExportService.Format.CSV);
+
+        assertEquals("attendanceId,employeeId,employeeName,department,checkIn,checkOut,status,"
+                + "workedMinutes,overtimeMinutes,location,note\r\n"
+                + closed + "," + employeeId + "," + employee + ",2001-04-02T08:00,2001-04-02T17:30,LATE,570,90,"
+                + "\"Phnom Penh, Cambodia\",\"said \"\"hi\"\", then\nleft\"\r\n"
+                + open + "," + employeeId + "," + employee + ",2001-04-03T09:00,,PRESENT,,,,\r\n"
+                + noStatus + "," + employeeId + "," + employee + ",2001-04-03T10:00,,,,,,\r\n", csv);
+    }
+
+    @Test
+    void ndjsonWritesEveryFieldWithExplicitNulls() throws Exception {
+        String[] lines = export(AttendanceExportService.Format.NDJSON).split("\n");
+        assertEquals(3, lines.length);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(closed, first.get("attendanceId").asLong());
+        assertEquals("2001-04-02T17:30", first.get("checkOut").asText());
+        assertEquals("LATE", first.get("status").asText());
+        assertEquals(570, first.get("workedMinutes").asInt());
+        assertEquals(90, first.get("overtimeMinutes").asInt());
+        assertEquals(NOTE, first.get("note").asText());
+
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertEquals(11, second.size());
+        assertEquals("PRESENT", second.get("status").asText());
+        for (String field : new String[]{"checkOut", "workedMinutes", "overtimeMinutes", "location", "note"}) {
+            assertTrue(second.get(field).isNull(), field);
+        }
+
+        assertTrue(objectMapper.readTree(lines[2]).get("status").isNull());
+    }
+
+    @Test
+    void statusIsTheNameOfTheStoredOrdinal() throws Exception {
+        EnumAttendanceStatus[] statuses = EnumAttendanceStatus.values();
+        LocalDateTime day = MONTH.plusDays(9).atStartOfDay();
+        for (int ordinal = 0; ordinal < statuses.length; ordinal++) {
+            insert(day.plusDays(ordinal), null, ordinal, null, null, null, null);
+        }
+
+        String[] lines = export(AttendanceExportService.Format.NDJSON).split("\n");
+        for (int ordinal = 0; ordinal < statuses.length; ordinal++) {
+            assertEquals(statuses[ordinal].name(), objectMapper.readTree(lines[3 + ordinal]).get("status").asText());
+        }
+    }
+
+    private String export(AttendanceExportService.Format format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        attendanceExportService.export(new AttendanceExportService.Filter(
+                MONTH, MONTH.plusMonths(1).minusDays(1), null, employeeId), format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private long insert(LocalDateTime checkIn, LocalDateTime checkOut, Integer status, Integer worked, Integer overtime,
+                        String location, String note) {
+        return jdbcTemplate.queryForObject("insert into attendances (employee_id, status, check_in, check_out, " +
+                        "worked_minutes, overtime_minutes, location, note) values (?, ?, ?, ?, ?, ?, ?, ?) returning id",
+                Long.class, employeeId, status, Timestamp.valueOf(checkIn),
+                checkOut == null ? null : Timestamp.valueOf(checkOut), worked, overtime, location, note);
+    }
+}
@@ -0,0 +1,28 @@
+package com.bbu.ai.face_auth.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AttendanceIngestQueueTests {
+
+    @Test
+    void retriesOnlyWhatCanClearUp() {
+        assertTrue(AttendanceIngestQueue.isTransient(new CannotCreateTransactionException("no connection",
+                new CannotGetJdbcConnectionException("refused"))));
+        assertTrue(AttendanceIngestQueue.isTransient(new CannotAcquireLockException("deadlock")));
+        assertTrue(AttendanceIngestQueue.isTransient(new RuntimeException(new SQLException("terminated", "57P01"))));
+
+        // A deleted employee or a violated constraint fails the same way every time
+        assertFalse(AttendanceIngestQueue.isTransient(new DataIntegrityViolationException("fk",
+                new SQLException("violates foreign key constraint", "23503"))));
+        assertFalse(AttendanceIngestQueue.isTransient(new IllegalStateException("bug")));
+    }
+}
@@ -0,0 +1,32 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.AttendanceResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AttendanceMinutesTests {
+
+    @Test
+    void truncatesAndClampsLikeTheSqlForm() {
+        LocalDateTime checkIn = LocalDateTime.of(2024, 3, 1, 8, 0);
+        Integer worked = AttendanceMinutes.worked(checkIn, checkIn.plusHours(10).plusMinutes(15).plusSeconds(59));
+        assertEquals(615, worked);
+        assertEquals(135, AttendanceMinutes.overtime(worked));
+
+        assertEquals(0, AttendanceMinutes.worked(checkIn, checkIn.minusMinutes(5)));
+        assertEquals(0, AttendanceMinutes.overtime(479));
+        assertNull(AttendanceMinutes.worked(checkIn, null));
+        assertNull(AttendanceMinutes.overtime(null));
+    }
+
+    @Test
+    void formatsOnlyAtTheEdge() {
+        assertEquals("2h 15m", AttendanceResponse.formatMinutes(135));
+        assertEquals("0h 0m", AttendanceResponse.formatMinutes(0));
+        assertNull(AttendanceResponse.formatMinutes((Integer) null));
+    }
+}
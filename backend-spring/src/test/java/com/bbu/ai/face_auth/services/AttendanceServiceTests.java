@@ -0,0 +1,50 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.repository.AttendanceRepository;
+import com.bbu.ai.face_auth.repository.EmployeeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AttendanceServiceTests {
+
+    private final EmployeeDirectory employeeDirectory = Mockito.mock(EmployeeDirectory.class);
+    private final TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+    private final AttendanceService service = new AttendanceService(
+            Mockito.mock(AttendanceRepository.class),
+            Mockito.mock(EmployeeRepository.class),
+            employeeDirectory,
+            Mockito.mock(OpenAttendanceIndex.class),
+            Mockito.mock(AttendanceIngestQueue.class),
+            new MarkDebouncer(new SimpleMeterRegistry(), 0, 16),
+            Mockito.mock(AttendanceSummaryService.class),
+            transactionTemplate);
+
+    @Test
+    void markForAnEmployeeDeletedElsewhereFailsAsNotFound() {
+        // Still cached here, already gone from the table
+        when(employeeDirectory.find(7L)).thenReturn(new EmployeeDirectory.Entry(7L, "Alice", "ENG"), (EmployeeDirectory.Entry) null);
+        when(transactionTemplate.execute(any())).thenThrow(new DataIntegrityViolationException("fk_attendances_employee"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.markAttendance(7L, null, null));
+        assertEquals("Employee not found with id: 7", e.getMessage());
+        verify(employeeDirectory).invalidate(7L);
+    }
+
+    @Test
+    void otherIntegrityViolationsAreNotHidden() {
+        when(employeeDirectory.find(7L)).thenReturn(new EmployeeDirectory.Entry(7L, "Alice", "ENG"));
+        when(transactionTemplate.execute(any())).thenThrow(new DataIntegrityViolationException("value too long"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> service.markAttendance(7L, null, null));
+    }
+}
@@ -0,0 +1,95 @@
+package com.bbu.ai.face_auth.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// Against the configured database, like FaceAuthApplicationTests; rolled back afterwards
+@SpringBootTest
+@Transactional
+class AttendanceSummaryServiceTests {
+
+    // A month no real attendance falls in, so the rebuild only recounts what the test wrote
+    private static final LocalDate MONTH = LocalDate.of(2001, 3, 1);
+
+    @Autowired
+    private AttendanceSummaryService attendanceSummaryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void incrementalTotalsMatchARebuild() {
+        long employeeId = jdbcTemplate.queryForObject("select min(id) from employees", Long.class);
+        LocalDateTime day1 = MONTH.plusDays(4).atStartOfDay();
+        LocalDateTime day2 = MONTH.plusDays(5).atStartOfDay();
+
+        // Check-in, then its check-out
+        long open = insert(employeeId, day1.plusHours(8), null);
+        apply(null, contribution(employeeId, day1.plusHours(8), null));
+        update(open, day1.plusHours(17).plusMinutes(30));
+        apply(contribution(employeeId, day1.plusHours(8), null),
+                contribution(employeeId, day1.plusHours(8), day1.plusHours(17).plusMinutes(30)));
+        // A late session, completed in one write
+        insert(employeeId, day2.plusHours(9).plusMinutes(40), day2.plusHours(12));
+        apply(null, contribution(employeeId, day2.plusHours(9).plusMinutes(40), day2.plusHours(12)));
+        // A session that is deleted again
+        long deleted = insert(employeeId, day2.plusHours(13), day2.plusHours(20));
+        apply(null, contribution(employeeId, day2.plusHours(13), day2.plusHours(20)));
+        jdbcTemplate.update("delete from attendances where id = ?", deleted);
+        apply(contribution(employeeId, day2.plusHours(13), day2.plusHours(20)), null);
+
+        List<Map<String, Object>> incrementalDaily = daily();
+        List<Map<String, Object>> incrementalMonthly = monthly();
+        assertEquals(2, incrementalDaily.size());
+        assertFalse(incrementalMonthly.isEmpty());
+
+        attendanceSummaryService.rebuild(MONTH, MONTH);
+
+        assertEquals(incrementalDaily, daily());
+        assertEquals(incrementalMonthly, monthly());
+    }
+
+    private void apply(AttendanceSummaryService.Contribution before, AttendanceSummaryService.Contribution after) {
+        attendanceSummaryService.apply(before == null ? AttendanceSummaryService.Contribution.NONE : before,
+                after == null ? AttendanceSummaryService.Contribution.NONE : after);
+    }
+
+    private static AttendanceSummaryService.Contribution contribution(long employeeId, LocalDateTime checkIn,
+                                                                      LocalDateTime checkOut) {
+        return new AttendanceSummaryService.Contribution(employeeId, checkIn, checkOut);
+    }
+
+    private long insert(long employeeId, LocalDateTime checkIn, LocalDateTime checkOut) {
+        return jdbcTemplate.queryForObject("insert into attendances (employee_id, status, check_in, check_out) " +
+                        "values (?, 0, ?, ?) returning id", Long.class, employeeId, Timestamp.valueOf(checkIn),
+                checkOut == null ? null : Timestamp.valueOf(checkOut));
+    }
+
+    private void update(long id, LocalDateTime checkOut) {
+        jdbcTemplate.update("update attendances set check_out = ? where id = ?", Timestamp.valueOf(checkOut), id);
+    }
+
+    private List<Map<String, Object>> daily() {
+        return jdbcTemplate.queryForList("select employee_id, day, sessions, completed_sessions, worked_minutes, " +
+                "overtime_minutes, late_sessions from attendance_daily_summary " +
+                "where day >= ? and day < ? order by employee_id, day", MONTH, MONTH.plusMonths(1));
+    }
+
+    private List<Map<String, Object>> monthly() {
+        return jdbcTemplate.queryForList("select department, sessions, completed_sessions, worked_minutes, " +
+                "overtime_minutes, late_sessions from department_monthly_summary " +
+                "where month = ? and sessions <> 0 order by department", MONTH);
+    }
+}
@@ -0,0 +1,68 @@
+package com.bbu.ai.face_auth.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmployeeDirectoryTests {
+
+    private final JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+
+    private EmployeeDirectory directory(int maxEntries) {
+        return new EmployeeDirectory(jdbcTemplate, new SimpleMeterRegistry(), maxEntries, 600000, false, 1, 32);
+    }
+
+    private void employee(long id, String name) {
+        when(jdbcTemplate.query(anyString(), Mockito.<RowMapper<EmployeeDirectory.Entry>>any(), eq(id)))
+                .thenReturn(List.of(new EmployeeDirectory.Entry(id, name, "ENG")));
+    }
+
+    @Test
+    void readsThroughOnceUntilInvalidated() {
+        EmployeeDirectory directory = directory(16);
+        employee(7L, "Alice");
+
+        assertEquals("Alice", directory.find(7L).name());
+        assertEquals("Alice", directory.find(7L).name());
+        verify(jdbcTemplate, times(1)).query(anyString(), Mockito.<RowMapper<EmployeeDirectory.Entry>>any(), eq(7L));
+
+        employee(7L, "Alice Renamed");
+        directory.invalidate(7L);
+        assertEquals("Alice Renamed", directory.find(7L).name());
+        verify(jdbcTemplate, times(2)).query(anyString(), Mockito.<RowMapper<EmployeeDirectory.Entry>>any(), eq(7L));
+    }
+
+    @Test
+    void unknownEmployeeIsNotCached() {
+        EmployeeDirectory directory = directory(16);
+        when(jdbcTemplate.query(anyString(), Mockito.<RowMapper<EmployeeDirectory.Entry>>any(), any(Object.class)))
+                .thenReturn(List.of());
+
+        assertNull(directory.find(42L));
+        assertEquals(0, directory.size());
+    }
+
+    @Test
+    void staysWithinItsSlots() {
+        EmployeeDirectory directory = directory(8);
+        for (long id = 1; id <= 100; id++) {
+            employee(id, "Employee " + id);
+            assertEquals("Employee " + id, directory.find(id).name());
+        }
+        assertTrue(directory.size() <= 8);
+    }
+}
@@ -0,0 +1,27 @@
+package com.bbu.ai.face_auth.services;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmployeeSearchServiceTests {
+
+    @Test
+    void likeWildcardsInTheQueryMatchLiterally() {
+        assertEquals("50\\%", EmployeeSearchService.escapeLike("50%"));
+        assertEquals("a\\_b\\\\c", EmployeeSearchService.escapeLike("a_b\\c"));
+        assertEquals("sophea", EmployeeSearchService.escapeLike("sophea"));
+    }
+
+    @Test
+    void blankQueryDoesNotTouchTheDatabase() {
+        JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        EmployeeSearchService service = new EmployeeSearchService(jdbcTemplate, 0.5);
+
+        assertTrue(service.search("   ", 10).isEmpty());
+        Mockito.verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,69 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.embedding.VectorMath;
+import com.bbu.ai.face_auth.mapper.FaceMatchResponse;
+import com.bbu.ai.face_auth.models.FaceTemplate;
+import com.bbu.ai.face_auth.repository.EmployeeRepository;
+import com.bbu.ai.face_auth.repository.FaceTemplateRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+class FaceMatcherServiceTests {
+
+    private static final int DIMENSION = 8;
+
+    private final FaceTemplateRepository faceTemplateRepository = Mockito.mock(FaceTemplateRepository.class);
+    private final EmployeeRepository employeeRepository = Mockito.mock(EmployeeRepository.class);
+
+    private FaceMatcherService hnswService() {
+        return new FaceMatcherService(faceTemplateRepository, employeeRepository, DIMENSION, 0.7f, 5, "hnsw",
+                16, 200, 64, "memory", "unused", "f32", 0.25,
+                4, 12, 16384, 1024, 64, 2.0, 256, 1024, 0.1);
+    }
+
+    private static float[] axis(int i) {
+        float[] v = new float[DIMENSION];
+        v[i] = 1f;
+        return v;
+    }
+
+    @Test
+    void hnswMatchesBeforeAndAfterTheGraphIsBuilt() {
+        when(employeeRepository.existsById(anyLong())).thenReturn(true);
+        when(faceTemplateRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(faceTemplateRepository.existsById(anyLong())).thenReturn(true);
+        FaceMatcherService service = hnswService();
+
+        // A request before ApplicationReady: no graph yet, so the exact scan answers
+        service.enroll(1L, axis(1));
+        FaceMatchResponse early = service.match(axis(1), null, null);
+        assertTrue(early.recognized());
+        assertEquals(1L, early.employeeId());
+
+        FaceTemplate template = new FaceTemplate();
+        template.setEmployeeId(1L);
+        template.setDimension(DIMENSION);
+        template.setEmbedding(VectorMath.toBytes(axis(1)));
+        when(faceTemplateRepository.findAllEmployeeIds()).thenReturn(List.of(1L));
+        when(faceTemplateRepository.findAll()).thenReturn(List.of(template));
+        service.load();
+
+        service.enroll(2L, axis(2));
+        assertEquals(2L, service.match(axis(2), null, null).employeeId());
+        assertEquals("hnsw", service.stats().get("index"));
+        assertEquals(0, service.stats().get("hnswTombstones"));
+
+        service.remove(2L);
+        assertFalse(service.match(axis(2), null, null).recognized());
+        assertEquals(1, service.stats().get("hnswTombstones"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTests {
+
+    private final IdempotencyRecordRepository repository = Mockito.mock(IdempotencyRecordRepository.class);
+    private final IdempotencyService service = new IdempotencyService(repository, new ObjectMapper(), 86400000, 30000, 16);
+
+    @Test
+    void claimsWithALeaseAndCompletesTheSameClaim() {
+        when(repository.claim(anyString(), any(), any(), any())).thenReturn(1);
+
+        service.execute("k1", "mark", () -> ResponseEntity.ok(Map.of("id", 1)));
+
+        ArgumentCaptor<LocalDateTime> expiresAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> leaseUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).claim(eq("mark:k1"), expiresAt.capture(), leaseUntil.capture(), now.capture());
+        assertEquals(now.getValue().plusSeconds(30), leaseUntil.getValue());
+        assertEquals(now.getValue().plusDays(1), expiresAt.getValue());
+        verify(repository).complete("mark:k1", now.getValue(), 200, "{\"id\":1}");
+        verify(repository, never()).release(anyString(), any());
+
+        // Replayed from memory, without claiming again
+        assertEquals("{\"id\":1}", service.execute("k1", "mark", () -> ResponseEntity.ok(Map.of("id", 2))).getBody());
+        verify(repository, times(1)).claim(anyString(), any(), any(), any());
+    }
+
+    @Test
+    void releasesTheClaimWhenStoringTheResponseFails() {
+        when(repository.claim(anyString(), any(), any(), any())).thenReturn(1);
+        when(repository.complete(anyString(), any(), anyInt(), anyString())).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class,
+                () -> service.execute("k2", "mark", () -> ResponseEntity.ok(Map.of("id", 1))));
+
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).claim(eq("mark:k2"), any(), any(), now.capture());
+        verify(repository).release("mark:k2", now.getValue());
+
+        // Not left in memory as in flight: the retry goes back to the table
+        Mockito.doReturn(1).when(repository).complete(anyString(), any(), anyInt(), anyString());
+        service.execute("k2", "mark", () -> ResponseEntity.ok(Map.of("id", 1)));
+        verify(repository, times(2)).claim(eq("mark:k2"), any(), any(), any());
+    }
+
+    @Test
+    void releasesTheClaimWhenTheActionFails() {
+        when(repository.claim(anyString(), any(), any(), any())).thenReturn(1);
+
+        assertThrows(IllegalArgumentException.class, () -> service.execute("k3", "mark", () -> {
+            throw new IllegalArgumentException("Employee not found");
+        }));
+        assertEquals(400, service.execute("k4", "mark", () -> ResponseEntity.badRequest().build()).getStatusCode().value());
+
+        verify(repository).release(eq("mark:k3"), any());
+        verify(repository).release(eq("mark:k4"), any());
+        verify(repository, never()).complete(anyString(), any(), anyInt(), anyString());
+    }
+}
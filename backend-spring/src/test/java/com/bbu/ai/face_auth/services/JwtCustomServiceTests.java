@@ -0,0 +1,95 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.models.EnumRole;
+import com.bbu.ai.face_auth.models.UserRole;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtCustomServiceTests {
+
+    private static final String SECRET = "00A0C0EB9EF56AB8DE4A9CCA224A59A130FF1B16D7E23FA8FAA437EC5EA215F5";
+
+    private final UserDetails admin = new User("admin", "x", List.of());
+
+    @Test
+    void verifiesSignatureOncePerToken() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtCustomService jwt = new JwtCustomService(registry, SECRET, 60_000, 100, "lookup", 900_000, 3_600_000);
+        String token = jwt.generateToken(admin);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("admin", jwt.extractUsername(token));
+            assertTrue(jwt.isTokenValid(token, admin));
+        }
+        assertFalse(jwt.isTokenValid(token, new User("someone", "x", List.of())));
+
+        assertEquals(1.0, registry.get("jwt.cache.requests").tag("result", "miss").counter().count());
+        assertEquals(1, registry.get("jwt.verify").timer().count());
+        assertTrue(registry.get("jwt.cache.hit.ratio").gauge().value() > 0.9);
+    }
+
+    @Test
+    void neverCachesTamperedOrExpiredTokens() {
+        JwtCustomService jwt = new JwtCustomService(new SimpleMeterRegistry(), SECRET, 60_000, 100, "lookup", 900_000, 3_600_000);
+        String token = jwt.generateToken(admin);
+        jwt.extractUsername(token);
+
+        String[] parts = token.split("\\.");
+        char last = parts[2].charAt(0);
+        String tampered = parts[0] + "." + parts[1] + "." + (last == 'A' ? 'B' : 'A') + parts[2].substring(1);
+        assertThrows(SignatureException.class, () -> jwt.extractUsername(tampered));
+
+        JwtCustomService shortLived = new JwtCustomService(new SimpleMeterRegistry(), SECRET, -1_000, 100, "lookup", 900_000, 3_600_000);
+        String expired = shortLived.generateToken(admin);
+        assertThrows(ExpiredJwtException.class, () -> shortLived.extractUsername(expired));
+    }
+
+    @Test
+    void cacheStaysBounded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        JwtCustomService jwt = new JwtCustomService(registry, SECRET, 60_000, 3, "lookup", 900_000, 3_600_000);
+        for (int i = 0; i < 10; i++) {
+            jwt.extractUsername(jwt.generateToken(new User("user" + i, "x", List.of())));
+        }
+        assertEquals(3.0, registry.get("jwt.cache.size").gauge().value());
+    }
+
+    @Test
+    void claimsModeCarriesAuthoritiesAndSecurityVersion() {
+        JwtCustomService jwt = new JwtCustomService(new SimpleMeterRegistry(), SECRET, 6_000_000, 100, "claims", 900_000, 3_600_000);
+        assertEquals(900_000, jwt.getExpirationTime());
+        com.bbu.ai.face_auth.models.User user = new com.bbu.ai.face_auth.models.User("alice", "hash", "000");
+        user.setRoles(Set.of(new UserRole(null, EnumRole.ROLE_ADMIN)));
+        user.setSecurityVersion(3);
+
+        String access = jwt.generateToken(user);
+        UserDetails principal = jwt.principalFromClaims(access);
+        assertEquals("alice", principal.getUsername());
+        assertEquals(List.of("ROLE_ADMIN"), principal.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        assertTrue(jwt.isTokenValid(access, principal));
+        assertThrows(MalformedJwtException.class, () -> jwt.extractRefreshClaims(access));
+
+        String refresh = jwt.generateRefreshToken(user);
+        Claims claims = jwt.extractRefreshClaims(refresh);
+        assertEquals(3, claims.get(JwtCustomService.CLAIM_SECURITY_VERSION, Integer.class));
+        // A refresh token is never accepted as a bearer token
+        assertNull(jwt.principalFromClaims(refresh));
+        assertFalse(jwt.isTokenValid(refresh, principal));
+    }
+}
@@ -0,0 +1,120 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.mapper.AttendanceResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarkDebouncerTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger marks = new AtomicInteger();
+
+    private Supplier<AttendanceResponse> marking(long id) {
+        return () -> response(id, marks.incrementAndGet());
+    }
+
+    private static AttendanceResponse response(long employeeId, long attendanceId) {
+        return new AttendanceResponse(attendanceId, employeeId, null, null, null, "PRESENT", null, null,
+                null, null, null, null, null);
+    }
+
+    private double suppressed() {
+        return meterRegistry.counter("attendance.mark.debounced").count();
+    }
+
+    @Test
+    void repeatInsideWindowGetsThePreviousResponse() {
+        MarkDebouncer debouncer = new MarkDebouncer(meterRegistry, 60000, 16);
+
+        AttendanceResponse first = debouncer.mark(7L, marking(7L));
+        AttendanceResponse repeat = debouncer.mark(7L, marking(7L));
+
+        assertSame(first, repeat);
+        assertEquals(1, marks.get());
+        assertEquals(1, suppressed());
+        assertEquals(2, debouncer.mark(8L, marking(8L)).id());
+    }
+
+    @Test
+    void concurrentFramesShareTheMarkInProgress() throws Exception {
+        MarkDebouncer debouncer = new MarkDebouncer(meterRegistry, 60000, 16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<AttendanceResponse> owner = pool.submit(() -> debouncer.mark(7L, () -> {
+                started.countDown();
+                await(release);
+                return marking(7L).get();
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<AttendanceResponse> repeat = pool.submit(() -> debouncer.mark(7L, marking(7L)));
+
+            // The second frame waits for the first mark instead of running its own
+            assertThrows(TimeoutException.class, () -> repeat.get(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+
+            assertSame(owner.get(10, TimeUnit.SECONDS), repeat.get(10, TimeUnit.SECONDS));
+            assertEquals(1, marks.get());
+            assertEquals(1, suppressed());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedMarkFreesTheSlot() {
+        MarkDebouncer debouncer = new MarkDebouncer(meterRegistry, 60000, 16);
+
+        assertThrows(IllegalArgumentException.class, () -> debouncer.mark(7L, () -> {
+            throw new IllegalArgumentException("Employee not found with id: 7");
+        }));
+
+        assertEquals(1, debouncer.mark(7L, marking(7L)).id());
+    }
+
+    @Test
+    void forgetLetsTheNextFrameMarkAgain() {
+        MarkDebouncer debouncer = new MarkDebouncer(meterRegistry, 60000, 16);
+        debouncer.mark(7L, marking(7L));
+        debouncer.mark(8L, marking(8L));
+
+        debouncer.forget(7L);
+
+        assertEquals(3, debouncer.mark(7L, marking(7L)).id());
+        assertEquals(2, debouncer.mark(8L, marking(8L)).id());
+    }
+
+    @Test
+    void zeroWindowMarksEveryFrame() {
+        MarkDebouncer debouncer = new MarkDebouncer(meterRegistry, 0, 16);
+
+        debouncer.mark(7L, marking(7L));
+        debouncer.mark(7L, marking(7L));
+
+        assertEquals(2, marks.get());
+        assertEquals(0, suppressed());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.bbu.ai.face_auth.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the client against a local stub of the FastAPI /verify endpoint.
+ */
+class MlServiceClientTests {
+
+    private HttpServer server;
+    private MlServiceClient client;
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+    private final AtomicReference<String> requestQuery = new AtomicReference<>();
+    private volatile int status = 200;
+    private volatile String responseJson;
+    private volatile long delayMs;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/verify", this::handle);
+        server.start();
+        client = new MlServiceClient(new ObjectMapper(),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/", 1000, 500, 2);
+    }
+
+    @AfterEach
+    void stopStub() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void mapsEmployeeKeyOnMatch() {
+        responseJson = "{\"status\":\"success\",\"employee_id\":\"employee:42\",\"score\":0.93}";
+        byte[] frame = "fake-jpeg-bytes".getBytes(StandardCharsets.UTF_8);
+
+        MlServiceClient.VerifyResult result = client.verify(frame, "gate.jpg", "image/jpeg", 0.75f);
+
+        assertTrue(result.matched());
+        assertEquals(42L, result.employeeId());
+        assertEquals(0.93, result.score(), 1e-9);
+        assertEquals("threshold=0.75", requestQuery.get());
+        String body = requestBody.get();
+        assertTrue(body.contains("name=\"file\"; filename=\"gate.jpg\""));
+        assertTrue(body.contains("Content-Type: image/jpeg"));
+        assertTrue(body.contains("fake-jpeg-bytes"));
+    }
+
+    @Test
+    void reportsNoMatch() {
+        responseJson = "{\"status\":\"fail\",\"score\":0.41,\"message\":\"Face not recognized\"}";
+
+        MlServiceClient.VerifyResult result = client.verify(new byte[]{1, 2, 3}, null, null, 0.7f);
+
+        assertFalse(result.matched());
+        assertNull(result.employeeId());
+        assertEquals("Face not recognized", result.message());
+    }
+
+    @Test
+    void surfacesServiceFailuresAsGatewayErrors() {
+        status = 500;
+        responseJson = "{\"detail\":\"boom\"}";
+        ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                () -> client.verify(new byte[]{1}, "f.jpg", "image/jpeg", 0.7f));
+        assertEquals(HttpStatus.BAD_GATEWAY, error.getStatusCode());
+
+        status = 200;
+        responseJson = "{\"status\":\"success\",\"employee_id\":\"visitor:abc\",\"score\":0.9}";
+        error = assertThrows(ResponseStatusException.class,
+                () -> client.verify(new byte[]{1}, "f.jpg", "image/jpeg", 0.7f));
+        assertEquals(HttpStatus.BAD_GATEWAY, error.getStatusCode());
+
+        delayMs = 2000;
+        responseJson = "{\"status\":\"fail\",\"score\":0.0}";
+        error = assertThrows(ResponseStatusException.class,
+                () -> client.verify(new byte[]{1}, "f.jpg", "image/jpeg", 0.7f));
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, error.getStatusCode());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestQuery.set(exchange.getRequestURI().getQuery());
+        requestBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1));
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = responseJson.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException ignored) {
+            // Client already gave up (timeout case)
+        } finally {
+            exchange.close();
+        }
+    }
+}
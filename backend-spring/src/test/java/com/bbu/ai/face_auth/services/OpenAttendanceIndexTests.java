@@ -0,0 +1,111 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.repository.AttendanceRepository;
+import com.bbu.ai.face_auth.repository.OpenAttendanceView;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+class OpenAttendanceIndexTests {
+
+    private static final LocalDateTime MORNING = LocalDateTime.of(2024, 5, 6, 8, 0);
+
+    private final AttendanceRepository attendanceRepository = Mockito.mock(AttendanceRepository.class);
+    private final AttendanceIngestQueue attendanceIngestQueue = Mockito.mock(AttendanceIngestQueue.class);
+    private final OpenAttendanceIndex index = new OpenAttendanceIndex(attendanceRepository, attendanceIngestQueue);
+
+    private static OpenAttendanceView row(long employeeId, long attendanceId, LocalDateTime checkIn) {
+        return new OpenAttendanceView() {
+            @Override
+            public Long getEmployeeId() {
+                return employeeId;
+            }
+
+            @Override
+            public Long getAttendanceId() {
+                return attendanceId;
+            }
+
+            @Override
+            public LocalDateTime getCheckIn() {
+                return checkIn;
+            }
+        };
+    }
+
+    @Test
+    void reconcileRepairsStaleEntries() {
+        index.open(1L, 10L, MORNING);           // closed elsewhere, reopened as 11
+        index.open(2L, 20L, MORNING);           // closed elsewhere
+        index.open(3L, 30L, MORNING);           // still right
+        when(attendanceRepository.findOpenSessions()).thenReturn(List.of(
+                row(1L, 11L, MORNING.plusHours(1)),
+                row(3L, 30L, MORNING),
+                row(4L, 40L, MORNING)));         // opened on another node
+
+        assertEquals(3, index.reconcile());
+
+        assertEquals(11L, index.get(1L).attendanceId());
+        assertNull(index.get(2L));
+        assertEquals(30L, index.get(3L).attendanceId());
+        assertEquals(40L, index.get(4L).attendanceId());
+        assertEquals(0, index.reconcile());
+    }
+
+    @Test
+    void reconcileLeavesMarksMadeWhileItQueried() {
+        index.open(1L, 10L, MORNING);
+        index.open(3L, 30L, MORNING);
+        // Each repair below would undo a mark that landed while the table was being read
+        when(attendanceRepository.findOpenSessions()).thenAnswer(invocation -> {
+            index.close(1L, 10L);                        // 1 checks out and straight back in
+            index.open(1L, 12L, MORNING.plusHours(2));
+            index.open(2L, 21L, MORNING.plusHours(2));   // 2 checks in here
+            index.close(3L, 30L);                        // 3 checks out here
+            return List.of(
+                    row(2L, 20L, MORNING),               // opened on another node
+                    row(3L, 31L, MORNING.plusHours(1))); // reopened on another node
+        });
+
+        assertEquals(0, index.reconcile());
+
+        assertEquals(12L, index.get(1L).attendanceId());
+        assertEquals(21L, index.get(2L).attendanceId());
+        assertNull(index.get(3L));
+    }
+
+    @Test
+    void closeOnlyRemovesTheSessionItNames() {
+        index.open(1L, 10L, MORNING);
+        index.open(1L, 11L, MORNING.plusHours(1));
+        // The check-out of 10 arrives after 11 was opened
+        index.close(1L, 10L);
+        assertEquals(11L, index.get(1L).attendanceId());
+
+        // An older open arriving late does not replace the newer one
+        index.open(1L, 10L, MORNING);
+        assertEquals(11L, index.get(1L).attendanceId());
+
+        index.closeAttendance(11L);
+        assertNull(index.get(1L));
+    }
+
+    @Test
+    void reconcileSkipsSessionsStillInTheWriteBehindQueue() {
+        index.open(1L, 10L, MORNING);
+        index.open(2L, 20L, MORNING);
+        when(attendanceIngestQueue.isPending(10L)).thenReturn(true);
+        when(attendanceRepository.findOpenSessions()).thenReturn(List.of());
+
+        assertEquals(1, index.reconcile());
+
+        assertEquals(10L, index.get(1L).attendanceId());
+        assertNull(index.get(2L));
+    }
+}
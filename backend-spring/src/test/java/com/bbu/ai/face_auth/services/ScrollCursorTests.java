@@ -0,0 +1,39 @@
+package com.bbu.ai.face_auth.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ScrollCursorTests {
+
+    @Test
+    void roundTripsKeysIncludingSeparators() {
+        LocalDateTime checkIn = LocalDateTime.of(2024, 3, 1, 8, 30, 15, 123_456_000);
+        ScrollCursor.Key key = ScrollCursor.decode(ScrollCursor.ATTENDANCE,
+                ScrollCursor.encode(ScrollCursor.ATTENDANCE, checkIn, 42));
+        assertEquals(42, key.id());
+        assertEquals(checkIn, key.asDateTime());
+
+        ScrollCursor.Key name = ScrollCursor.decode(ScrollCursor.EMPLOYEE,
+                ScrollCursor.encode(ScrollCursor.EMPLOYEE, "Dara | Sok", 7));
+        assertEquals("Dara | Sok", name.value());
+        assertEquals(7, name.id());
+
+        assertNull(ScrollCursor.decode(ScrollCursor.EMPLOYEE, ""));
+    }
+
+    @Test
+    void rejectsForeignOrMangledCursors() {
+        String employeeCursor = ScrollCursor.encode(ScrollCursor.EMPLOYEE, "Dara", 7);
+        assertThrows(ResponseStatusException.class, () -> ScrollCursor.decode(ScrollCursor.ATTENDANCE, employeeCursor));
+        assertThrows(ResponseStatusException.class, () -> ScrollCursor.decode(ScrollCursor.ATTENDANCE, "not base64!"));
+        String badDate = ScrollCursor.encode(ScrollCursor.ATTENDANCE, "yesterday", 1);
+        assertThrows(ResponseStatusException.class,
+                () -> ScrollCursor.decode(ScrollCursor.ATTENDANCE, badDate).asDateTime());
+    }
+}
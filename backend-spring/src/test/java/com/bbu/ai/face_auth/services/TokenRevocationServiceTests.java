@@ -0,0 +1,71 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.models.RevokedToken;
+import com.bbu.ai.face_auth.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationServiceTests {
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndMeetsItsRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("revoked-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("revoked-" + i));
+        }
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        double observed = (double) falsePositives / probes;
+        System.out.printf("Bloom filter: %d bits, expected fpp=%.4f observed fpp=%.4f%n",
+                filter.bitCount(), filter.expectedFalsePositiveRate(), observed);
+        assertTrue(observed < 0.02, "False-positive rate should be near the 1% target");
+    }
+
+    @Test
+    void revokesUntilExpiryAndRebuildsFromTable() {
+        RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenRevocationService service = new TokenRevocationService(repository, registry, 0.001, 64);
+
+        Date inAnHour = new Date(System.currentTimeMillis() + 3_600_000);
+        service.revoke("jti-1", "alice", inAnHour);
+        // Already expired tokens are not worth storing
+        service.revoke("jti-old", "alice", new Date(System.currentTimeMillis() - 1000));
+
+        assertTrue(service.isRevoked("jti-1"));
+        assertFalse(service.isRevoked("jti-old"));
+        assertFalse(service.isRevoked("jti-2"));
+        assertFalse(service.isRevoked(null));
+
+        // Another node revoked jti-2; the rebuild picks it up and keeps the local jti-1
+        when(repository.findActive(any())).thenReturn(List.of(
+                new RevokedToken("jti-2", "bob", LocalDateTime.now().plusHours(1), LocalDateTime.now())));
+        service.rebuild();
+        assertTrue(service.isRevoked("jti-1"));
+        assertTrue(service.isRevoked("jti-2"));
+
+        assertEquals(3.0, registry.get("auth.revocation.checks").tag("result", "revoked").counter().count());
+        assertEquals(2.0, registry.get("auth.revocation.size").gauge().value());
+    }
+}
@@ -0,0 +1,57 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.repository.RoleRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UserBulkImportServiceTests {
+
+    private final UserBulkImportService service = new UserBulkImportService(
+            Mockito.mock(JdbcTemplate.class),
+            Mockito.mock(TransactionTemplate.class),
+            Mockito.mock(RoleRepository.class),
+            Mockito.mock(UserInfoService.class),
+            new ObjectMapper(),
+            new SimpleMeterRegistry(),
+            4, 1, 10);
+
+    @Test
+    void oneImportAtATimeAndTheSlotIsFreedFromAnyThread() throws Exception {
+        UserBulkImportService.ImportSlot slot = service.reserve();
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, service::reserve);
+        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+        assertThrows(ResponseStatusException.class, () -> service.importUsers(
+                new ByteArrayInputStream(new byte[0]), true, true, result -> {}));
+
+        // As a streamed import does: reserved on the request thread, finished on another
+        CompletableFuture.runAsync(() -> {
+            try {
+                service.importUsers(slot, new ByteArrayInputStream("username,password\n".getBytes(StandardCharsets.UTF_8)),
+                        true, true, result -> {});
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }).get();
+
+        service.reserve().close();
+        // Closing twice does not free a second slot
+        slot.close();
+        UserBulkImportService.ImportSlot next = service.reserve();
+        assertThrows(ResponseStatusException.class, service::reserve);
+        next.close();
+    }
+}
@@ -0,0 +1,70 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.services.UserImportReader.ImportRow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UserImportReaderTests {
+
+    @Test
+    void readsQuotedCsvByHeaderName() throws IOException {
+        String csv = "\uFEFFPhone_Number,username,name,password,roles\r\n"
+                + "555-1,alice,\"Doe, Alice\",secret,admin|user\r\n"
+                + "\r\n"
+                + "555-2,bob,\"Say \"\"hi\"\"\nand bye\",pw,\n";
+        List<ImportRow> rows = readAll(UserImportReader.csv(stream(csv)));
+
+        assertEquals(2, rows.size());
+        ImportRow alice = rows.get(0);
+        assertEquals(1, alice.row());
+        assertEquals("alice", alice.username());
+        assertEquals("Doe, Alice", alice.name());
+        assertEquals("555-1", alice.phoneNumber());
+        assertEquals(List.of("admin", "user"), alice.roles());
+        assertNull(alice.email());
+
+        ImportRow bob = rows.get(1);
+        assertEquals(2, bob.row());
+        assertEquals("Say \"hi\"\nand bye", bob.name());
+        assertEquals(List.of(), bob.roles());
+    }
+
+    @Test
+    void readsJsonArrayRowByRow() throws IOException {
+        String json = "[{\"username\":\"alice\",\"password\":\"pw\",\"phoneNumber\":\"1\",\"roles\":[\"ROLE_ADMIN\"]},"
+                + "42,"
+                + "{\"username\":\" bob \",\"email\":\"\",\"roles\":\"user;admin\"}]";
+        List<ImportRow> rows = readAll(UserImportReader.json(stream(json), new ObjectMapper()));
+
+        assertEquals(3, rows.size());
+        assertEquals(List.of("ROLE_ADMIN"), rows.get(0).roles());
+        assertEquals("Expected an object", rows.get(1).error());
+        assertEquals("bob", rows.get(2).username());
+        assertNull(rows.get(2).email());
+        assertEquals(List.of("user", "admin"), rows.get(2).roles());
+    }
+
+    private static List<ImportRow> readAll(UserImportReader reader) throws IOException {
+        List<ImportRow> rows = new ArrayList<>();
+        try (reader) {
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
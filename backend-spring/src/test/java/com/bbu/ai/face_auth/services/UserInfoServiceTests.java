@@ -0,0 +1,81 @@
+package com.bbu.ai.face_auth.services;
+
+import com.bbu.ai.face_auth.models.EnumRole;
+import com.bbu.ai.face_auth.models.User;
+import com.bbu.ai.face_auth.models.UserRole;
+import com.bbu.ai.face_auth.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserInfoServiceTests {
+
+    @Test
+    void cachesPrincipalsUntilInvalidated() {
+        UserRepository repository = mock(UserRepository.class);
+        User alice = user("alice", EnumRole.ROLE_USER);
+        when(repository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UserInfoService service = new UserInfoService(repository, registry, 60_000, 100);
+
+        service.loadUserByUsername("alice");
+        UserDetails cached = service.loadUserByUsername("alice");
+        assertEquals(Set.of("ROLE_USER"), authorities(cached));
+        verify(repository, times(1)).findByUsername("alice");
+
+        // Promotion takes effect on the next request once the change is invalidated
+        when(repository.findByUsername("alice")).thenReturn(Optional.of(user("alice", EnumRole.ROLE_ADMIN)));
+        service.invalidate("alice");
+        assertEquals(Set.of("ROLE_ADMIN"), authorities(service.loadUserByUsername("alice")));
+        verify(repository, times(2)).findByUsername("alice");
+
+        assertEquals(1.0, registry.get("auth.user.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2.0, registry.get("auth.user.cache.requests").tag("result", "miss").counter().count());
+        assertEquals(1.0, registry.get("auth.user.cache.evictions").tag("cause", "invalidated").counter().count());
+    }
+
+    @Test
+    void expiresAndStaysBounded() {
+        UserRepository repository = mock(UserRepository.class);
+        for (int i = 0; i < 5; i++) {
+            when(repository.findByUsername("user" + i)).thenReturn(Optional.of(user("user" + i, EnumRole.ROLE_USER)));
+        }
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UserInfoService bounded = new UserInfoService(repository, registry, 60_000, 2);
+        for (int i = 0; i < 5; i++) {
+            bounded.loadUserByUsername("user" + i);
+        }
+        assertEquals(2.0, registry.get("auth.user.cache.size").gauge().value());
+        assertEquals(3.0, registry.get("auth.user.cache.evictions").tag("cause", "size").counter().count());
+
+        UserInfoService uncached = new UserInfoService(repository, new SimpleMeterRegistry(), 0, 100);
+        uncached.loadUserByUsername("user0");
+        uncached.loadUserByUsername("user0");
+        verify(repository, times(3)).findByUsername("user0");
+
+        assertThrows(UsernameNotFoundException.class, () -> uncached.loadUserByUsername("nobody"));
+    }
+
+    private static User user(String username, EnumRole role) {
+        User user = new User(username, "{noop}secret", "000");
+        user.setRoles(Set.of(new UserRole(null, role)));
+        return user;
+    }
+
+    private static Set<String> authorities(UserDetails details) {
+        return details.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet());
+    }
+}
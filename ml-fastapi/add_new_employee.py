@@ -3,11 +3,16 @@ from PIL import Image
 from insightface.app import FaceAnalysis
 import redis
 import pickle
+import asyncio
 from io import BytesIO
+from backend_client import push_template, SENT, RETRY, REJECTED
 
 # Redis connection
 r = redis.Redis(host='localhost', port=6379, db=0)
 
+# Employee ids whose current template has not reached the backend yet
+PENDING_KEY = "backend:pending_templates"
+
 # Initialize ArcFace model
 app = FaceAnalysis(name="buffalo_l", providers=['CPUExecutionProvider'])
 app.prepare(ctx_id=0)
@@ -15,8 +20,11 @@ app.prepare(ctx_id=0)
 
 async def enroll_new_faces_from_upload(emp_id: str, files: list):
     """
-    Enroll new faces for a single employee from uploaded images
-    and store/update embeddings in Redis.
+    Enroll new faces for a single employee from uploaded images,
+    store/update embeddings in Redis and send the result to the backend,
+    which does the matching. A template the backend rejects fails the
+    enrollment; one it cannot take right now is queued for
+    retry_pending_templates.
     
     Args:
         emp_id: Employee ID
@@ -53,11 +61,40 @@ async def enroll_new_faces_from_upload(emp_id: str, files: list):
     # If employee exists, average new embedding with existing
     if r.exists(emp_id_key):
         existing_emb = pickle.loads(r.get(emp_id_key))
-        combined_emb = (existing_emb + new_mean_emb) / 2
-        combined_emb /= np.linalg.norm(combined_emb)
-        r.set(emp_id_key, pickle.dumps(combined_emb))
+        stored_emb = (existing_emb + new_mean_emb) / 2
+        stored_emb /= np.linalg.norm(stored_emb)
     else:
-        r.set(emp_id_key, pickle.dumps(new_mean_emb))
+        stored_emb = new_mean_emb
+
+    status = await asyncio.to_thread(push_template, emp_id, stored_emb)
+    if status == REJECTED:
+        print(f"⚠️ Enrollment for {emp_id} not saved: the backend rejected it")
+        return False
+    r.set(emp_id_key, pickle.dumps(stored_emb))
+    if status == RETRY:
+        r.sadd(PENDING_KEY, emp_id)
+        print(f"⚠️ Template for {emp_id} queued until the backend takes it")
+    else:
+        r.srem(PENDING_KEY, emp_id)
 
     print(f"✅ Enrolled/Updated embeddings for {emp_id_key}")
     return True
+
+
+def retry_pending_templates():
+    """
+    Send the queued templates to the backend, each as currently stored in Redis.
+
+    Returns:
+        Number of templates still queued
+    """
+    for member in r.smembers(PENDING_KEY):
+        emp_id = member.decode()
+        stored = r.get(f"employee:{emp_id}")
+        status = push_template(emp_id, pickle.loads(stored)) if stored is not None else SENT
+        if status == RETRY:
+            break  # backend still unavailable; the rest waits for the next round
+        if status == REJECTED:
+            print(f"⚠️ Dropping queued template for {emp_id}: the backend rejected it")
+        r.srem(PENDING_KEY, emp_id)
+    return r.scard(PENDING_KEY)
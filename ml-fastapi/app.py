@@ -5,7 +5,8 @@ from insightface.app import FaceAnalysis
 import redis
 import pickle
 import asyncio
-from add_new_employee import enroll_new_faces_from_upload
+import os
+from add_new_employee import enroll_new_faces_from_upload, retry_pending_templates
 from fastapi.middleware.cors import CORSMiddleware
 
 app = FastAPI(title="Face Recognition Attendance System")
@@ -25,6 +26,26 @@ app.add_middleware(
     allow_methods=["*"],
     allow_headers=["*"],
 )
+
+# Templates the backend could not take at enrollment are retried this often
+BACKEND_RETRY_SECONDS = float(os.getenv("BACKEND_RETRY_SECONDS", "60"))
+
+
+@app.on_event("startup")
+async def start_template_retry():
+    async def loop():
+        while True:
+            try:
+                remaining = await asyncio.to_thread(retry_pending_templates)
+                if remaining:
+                    print(f"⚠️ {remaining} face templates still waiting for the backend")
+            except Exception as e:
+                print(f"⚠️ Template retry failed: {e}")
+            await asyncio.sleep(BACKEND_RETRY_SECONDS)
+
+    asyncio.create_task(loop())
+
+
 # Initialize ArcFace model for verificatixon
 app_model = FaceAnalysis(name="buffalo_l", providers=['CPUExecutionProvider'])
 app_model.prepare(ctx_id=-1, det_size=(640, 640))
@@ -33,13 +54,13 @@ app_model.prepare(ctx_id=-1, det_size=(640, 640))
 @app.post("/enroll")
 async def enroll(emp_id: str = Form(...), files: list[UploadFile] = File(...), background_tasks: BackgroundTasks = None):
     async def task():
-        enroll_new_faces_from_upload(emp_id, files)
+        await enroll_new_faces_from_upload(emp_id, files)
     
     if background_tasks:
         background_tasks.add_task(task)
         return {"status": "scheduled", "message": f"Enrollment started for {emp_id}"}
     else:
-        success = enroll_new_faces_from_upload(emp_id, files)
+        success = await enroll_new_faces_from_upload(emp_id, files)
         return {"status": "success" if success else "fail", "message": f"Enrollment completed for {emp_id}"}
     
 
@@ -75,6 +96,23 @@ async def verify(file: UploadFile = File(...), threshold: float = 0.7):
         return {"status": "fail", "score": float(best_score), "message": "Face not recognized"}
 
 
+@app.post("/embed")
+async def embed(file: UploadFile = File(...)):
+    """
+    Extract the normalized face embedding only; matching is done by the
+    Spring backend (POST /api/attendance/match).
+    """
+    img = np.array(Image.open(file.file).convert("RGB"))
+
+    faces = app_model.get(img)
+    if not faces:
+        return {"status": "fail", "message": "No face detected"}
+
+    embedding = faces[0].embedding
+    embedding = embedding / np.linalg.norm(embedding)
+    return {"status": "success", "embedding": embedding.astype(float).tolist()}
+
+
 if __name__ == "__main__":
     import uvicorn
     uvicorn.run(app, host="0.0.0.0", port=8000)
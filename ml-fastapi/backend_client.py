@@ -0,0 +1,107 @@
+import json
+import os
+import threading
+import time
+import urllib.error
+import urllib.request
+
+import numpy as np
+
+# Spring backend that matches faces; it keeps its templates in face_templates
+BACKEND_URL = os.getenv("BACKEND_URL", "http://localhost:8080")
+# Service account with the ADMIN role: PUT /api/attendance/embeddings/** is admin only.
+# The client logs in itself and renews its token, so nothing here expires.
+BACKEND_USERNAME = os.getenv("BACKEND_USERNAME", "")
+BACKEND_PASSWORD = os.getenv("BACKEND_PASSWORD", "")
+
+# Outcomes of push_template
+SENT = "sent"
+RETRY = "retry"        # backend unreachable, login failing or server error: try again later
+REJECTED = "rejected"  # the backend refused this template (unknown employee, wrong dimension)
+
+_session_lock = threading.Lock()
+_session = {"token": None, "refresh_token": None, "expires_at": 0.0}
+
+
+class BackendError(Exception):
+    def __init__(self, status, message):
+        super().__init__(f"{status} {message}")
+        self.status = status
+
+
+def _call(method, path, payload, token=None, timeout=10):
+    headers = {"Content-Type": "application/json"}
+    if token:
+        headers["Authorization"] = f"Bearer {token}"
+    request = urllib.request.Request(f"{BACKEND_URL.rstrip('/')}{path}", method=method, headers=headers,
+                                     data=json.dumps(payload).encode("utf-8"))
+    try:
+        with urllib.request.urlopen(request, timeout=timeout) as response:
+            body = response.read()
+            return json.loads(body) if body else {}
+    except urllib.error.HTTPError as e:
+        raise BackendError(e.code, e.read().decode("utf-8", "replace")) from e
+
+
+def _access_token(renew=False):
+    """
+    Returns a valid access token: the cached one while it has a minute left, else one
+    from the refresh token, else from a fresh login. renew=True skips the cached token,
+    for when the backend has just turned it down (expired early, or revoked).
+    """
+    with _session_lock:
+        if not renew and _session["token"] and time.time() < _session["expires_at"] - 60:
+            return _session["token"]
+        response = None
+        if _session["refresh_token"]:
+            try:
+                response = _call("POST", "/api/auth/refresh", {"refreshToken": _session["refresh_token"]})
+            except BackendError:
+                response = None  # refresh token expired or revoked: log in again
+        if response is None:
+            if not BACKEND_USERNAME or not BACKEND_PASSWORD:
+                raise BackendError(0, "BACKEND_USERNAME and BACKEND_PASSWORD are not set")
+            response = _call("POST", "/api/auth/login",
+                             {"username": BACKEND_USERNAME, "password": BACKEND_PASSWORD})
+        _session["token"] = response["token"]
+        _session["refresh_token"] = response.get("refreshToken") or _session["refresh_token"]
+        _session["expires_at"] = time.time() + response.get("expiresIn", 0) / 1000
+        return _session["token"]
+
+
+def push_template(emp_id, embedding):
+    """
+    Save an employee's face template in the backend
+    (PUT /api/attendance/embeddings/{emp_id}).
+
+    Args:
+        emp_id: Employee ID, the backend's employees.id
+        embedding: Face embedding; the backend normalizes it again
+    Returns:
+        SENT, RETRY or REJECTED (the reason is printed)
+    """
+    if not str(emp_id).isdigit():
+        print(f"⚠️ Backend cannot take template for {emp_id}: it expects a numeric employee id")
+        return REJECTED
+
+    vector = np.asarray(embedding, dtype=np.float64)
+    payload = {"embedding": (vector / np.linalg.norm(vector)).tolist()}
+    path = f"/api/attendance/embeddings/{emp_id}"
+    try:
+        try:
+            _call("PUT", path, payload, _access_token())
+        except BackendError as e:
+            # The backend answers an expired token with 400 and a revoked one with 403,
+            # so those are retried once with a new token before being believed
+            if e.status not in (400, 401, 403):
+                raise
+            _call("PUT", path, payload, _access_token(renew=True))
+        return SENT
+    except BackendError as e:
+        if e.status in (400, 404, 422):
+            print(f"⚠️ Backend rejected template for {emp_id}: {e}")
+            return REJECTED
+        print(f"⚠️ Could not send template for {emp_id}, will retry: {e}")
+    except (urllib.error.URLError, OSError, ValueError, KeyError) as e:
+        print(f"⚠️ Could not reach backend for {emp_id}, will retry: {e}")
+    return RETRY
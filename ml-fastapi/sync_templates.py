@@ -0,0 +1,34 @@
+"""
+One-time import of the face templates enrolled in Redis (employee:<id>) into the
+Spring backend's face_templates table, so its matcher starts with every employee.
+Run it once when switching matching to the backend; /enroll keeps both in step after
+that. Safe to re-run: each template replaces the employee's previous one.
+
+    BACKEND_URL=http://localhost:8080 BACKEND_USERNAME=<admin> BACKEND_PASSWORD=<password> \
+        python sync_templates.py
+"""
+import os
+import pickle
+
+import redis
+
+from backend_client import push_template, SENT
+
+r = redis.Redis(host=os.getenv("REDIS_HOST", "localhost"), port=int(os.getenv("REDIS_PORT", "6379")),
+                db=int(os.getenv("REDIS_DB", "0")))
+
+
+def sync_all():
+    sent, failed = 0, 0
+    for key in r.scan_iter("employee:*"):
+        emp_id = key.decode().split(":", 1)[1]
+        if push_template(emp_id, pickle.loads(r.get(key))) == SENT:
+            sent += 1
+        else:
+            failed += 1
+    print(f"✅ Sent {sent} templates to the backend, {failed} failed")
+    return failed == 0
+
+
+if __name__ == "__main__":
+    raise SystemExit(0 if sync_all() else 1)